@@ -0,0 +1,101 @@
+package sysmon;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary framing spoken between `--agent` and `--dashboard`.
+ * <p>
+ * Every frame is a 2 byte big-endian length, a type byte and a payload; the length counts the type byte and
+ * the payload. A connection starts with one {@link #HELLO} frame naming the host, followed by one
+ * {@link #SAMPLE} frame per second. A sample carries the recording channels (see {@link RecordingFile}) in the
+ * same form as a recorded record, as zigzag varint differences to the previous sample of the connection, so a
+ * steady sample of all channels takes around 25 bytes on the wire.
+ */
+final class AgentProtocol {
+
+    static final byte HELLO = 1;
+    static final byte SAMPLE = 2;
+
+    static final int VERSION = 1;
+    static final int MAX_NAME = 64;
+    static final int MAX_FRAME = 512;
+
+    private static final byte[] MAGIC = "SYSMONAG".getBytes(StandardCharsets.US_ASCII);
+
+    private AgentProtocol() {
+    }
+
+    // ========================= Encoding Functions ========================= //
+
+    /**
+     * Encodes the hello frame that opens a connection.
+     *
+     * @param out       The buffer receiving the frame, at least {@link #MAX_FRAME} bytes.
+     * @param name      The host name shown by the dashboard, truncated to {@link #MAX_NAME} bytes.
+     * @param hostFacts The facts of the sampled host.
+     * @return The length of the frame.
+     */
+    static int putHello(byte[] out, String name, HostFacts hostFacts) {
+        ByteBuffer frame = ByteBuffer.wrap(out);
+        frame.position(2);
+        frame.put(HELLO).put(MAGIC).put((byte) VERSION).put((byte) RecordingFile.CHANNEL_COUNT);
+        frame.putInt(hostFacts.getCpuCount()).putLong(hostFacts.getTotalMemory());
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(nameBytes.length, MAX_NAME);
+        frame.put((byte) nameLength).put(nameBytes, 0, nameLength);
+        frame.putShort(0, (short) (frame.position() - 2));
+        return frame.position();
+    }
+
+    /**
+     * Encodes a sample frame.
+     *
+     * @param out      The buffer receiving the frame, at least {@link #MAX_FRAME} bytes.
+     * @param values   The {@link RecordingFile#CHANNEL_COUNT} channel values of the sample.
+     * @param previous The values of the previous sample on this connection, updated to the new ones.
+     * @return The length of the frame.
+     */
+    static int putSample(byte[] out, long[] values, long[] previous) {
+        out[2] = SAMPLE;
+        int end = RecordingFile.encode(values, previous, out, 3);
+        out[0] = (byte) ((end - 2) >>> 8);
+        out[1] = (byte) (end - 2);
+        return end;
+    }
+
+    // ========================= Decoding Functions ========================= //
+
+    /**
+     * Checks the magic and version of a hello payload.
+     *
+     * @param in  The buffer holding the frame.
+     * @param pos The position just after the type byte.
+     * @return True if the peer speaks this protocol.
+     */
+    static boolean isHello(ByteBuffer in, int pos) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (in.get(pos + i) != MAGIC[i]) return false;
+        }
+        return in.get(pos + MAGIC.length) == VERSION;
+    }
+
+    static int helloChannels(ByteBuffer in, int pos) {
+        return in.get(pos + MAGIC.length + 1) & 0xFF;
+    }
+
+    static int helloCpuCount(ByteBuffer in, int pos) {
+        return in.getInt(pos + MAGIC.length + 2);
+    }
+
+    static long helloTotalMemory(ByteBuffer in, int pos) {
+        return in.getLong(pos + MAGIC.length + 6);
+    }
+
+    static String helloName(ByteBuffer in, int pos) {
+        int namePos = pos + MAGIC.length + 14;
+        byte[] name = new byte[Math.min(in.get(namePos) & 0xFF, MAX_NAME)];
+        for (int i = 0; i < name.length; i++) name[i] = in.get(namePos + 1 + i);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package sysmon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Streams one sample per second of the local collectors to a dashboard, for `--agent`.
+ * <p>
+ * The sender runs on its own thread with a blocking socket: it connects, introduces the host with a hello
+ * frame and then writes a sample frame every second. When the dashboard is unreachable or the connection
+ * drops, it reconnects with an exponential backoff of up to 30 seconds, starting each connection with a
+ * fresh delta base so the dashboard never needs the samples it missed.
+ */
+public final class AgentSender {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final InetSocketAddress dashboard;
+    private final String name;
+    private final HostFacts hostFacts;
+    private final Supplier<SystemSnapshot> snapshots;
+    private final long pageSize;
+    private final Thread thread;
+
+    // Frame buffer, channel values and the delta base of the current connection, only touched by the thread
+    private final byte[] frame = new byte[AgentProtocol.MAX_FRAME];
+    private final ByteBuffer frameBuffer = ByteBuffer.wrap(frame);
+    private final long[] values = new long[RecordingFile.CHANNEL_COUNT];
+    private final long[] previous = new long[RecordingFile.CHANNEL_COUNT];
+
+    private volatile boolean running = true;
+
+    private AgentSender(InetSocketAddress dashboard, String name, HostFacts hostFacts,
+                        Supplier<SystemSnapshot> snapshots, long pageSize) {
+        this.dashboard = dashboard;
+        this.name = name;
+        this.hostFacts = hostFacts;
+        this.snapshots = snapshots;
+        this.pageSize = pageSize;
+        this.thread = new Thread(this::run, "agent-sender");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts streaming to a dashboard.
+     *
+     * @param dashboard The address of the dashboard, possibly unresolved.
+     * @param name      The name the dashboard shows for this host.
+     * @param hostFacts The host facts sent in the hello frame.
+     * @param snapshots The source of the latest snapshot, e.g. the scheduler.
+     * @param pageSize  The system page size, used to convert memory statistics to bytes.
+     * @return The running sender.
+     */
+    public static AgentSender start(InetSocketAddress dashboard, String name, HostFacts hostFacts,
+                                    Supplier<SystemSnapshot> snapshots, long pageSize) {
+        AgentSender sender = new AgentSender(dashboard, name, hostFacts, snapshots, pageSize);
+        sender.thread.start();
+        return sender;
+    }
+
+    /**
+     * Stops streaming and closes the connection.
+     */
+    public void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    // ========================= Streaming Functions ========================= //
+
+    private void run() {
+        long backoff = 1000;
+        boolean reported = false;
+        while (running) {
+            try (SocketChannel channel = SocketChannel.open()) {
+                // resolved on every attempt, so a dashboard that moved is found again
+                InetSocketAddress address = new InetSocketAddress(dashboard.getHostString(), dashboard.getPort());
+                channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                channel.socket().setTcpNoDelay(true);
+                System.err.println("Streaming to dashboard " + target());
+                backoff = 1000;
+                reported = false;
+                stream(channel);
+            } catch (IOException e) {
+                if (!running) return;
+                if (!reported) {
+                    System.err.println("Dashboard " + target() + " unavailable, retrying: " + e.getMessage());
+                    reported = true;
+                }
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Writes the hello frame and then one sample per second until the connection fails or the sender stops.
+     *
+     * @param channel The connected channel.
+     * @throws IOException If a write fails.
+     */
+    private void stream(SocketChannel channel) throws IOException {
+        write(channel, AgentProtocol.putHello(frame, name, hostFacts));
+        Arrays.fill(previous, 0);
+        Ticker ticker = new Ticker(1000);
+        while (running) {
+            try {
+                ticker.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            RecordingFile.toValues(snapshots.get(), System.currentTimeMillis(), pageSize, values);
+            write(channel, AgentProtocol.putSample(frame, values, previous));
+        }
+    }
+
+    private String target() {
+        return dashboard.getHostString() + ":" + dashboard.getPort();
+    }
+
+    private void write(SocketChannel channel, int length) throws IOException {
+        frameBuffer.clear().limit(length);
+        while (frameBuffer.hasRemaining()) channel.write(frameBuffer);
+    }
+}
@@ -0,0 +1,279 @@
+package sysmon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Evaluates a set of {@link AlertRule}s against every sample and acts when one fires or resolves.
+ * <p>
+ * Live, the engine listens to the scheduler's snapshots: every snapshot a collector publishes folds the
+ * collector's new sample into the rules on its metrics, read straight from the snapshot, so each sample is
+ * seen once at whatever interval it is taken. The cost is a constant per rule and thousands of rules take
+ * microseconds. Only a state change does any real work:
+ * it appends a line to the alert log, starts the alert command with the alert in its environment and
+ * republishes the firing rules for the renderer. Commands run in the background with their output
+ * discarded; while {@link #MAX_RUNNING_COMMANDS} are still running, further ones are skipped.
+ */
+public final class AlertEngine {
+
+    private static final int MAX_RUNNING_COMMANDS = 8;
+
+    private final AlertRule[] rules;
+    private final long pageSize;
+    private final BufferedWriter log;
+    private final String command;
+    private final boolean echo;
+    private final List<Process> commands = new ArrayList<>();
+
+    private volatile AlertRule[] firing = new AlertRule[0];
+    private volatile boolean running;
+
+    // The snapshot last folded in by observe, to tell which sources have a new sample, by rule source
+    private SystemSnapshot observed;
+    private final boolean[] sampled = new boolean[AlertRule.NET + 1];
+
+    /**
+     * Creates an engine; rules are evaluated by {@link #start} or by calling {@link #evaluate} directly.
+     *
+     * @param rules    The rules.
+     * @param pageSize The system page size, used to report memory statistics in bytes.
+     * @param logFile  The file every state change is appended to, or null.
+     * @param command  The shell command run on every state change, or null.
+     * @param echo     Whether to also print state changes to stderr, e.g. when there is no terminal UI.
+     * @throws IOException If the log file cannot be opened.
+     */
+    public AlertEngine(List<AlertRule> rules, long pageSize, Path logFile, String command, boolean echo)
+            throws IOException {
+        this.rules = rules.toArray(new AlertRule[0]);
+        this.pageSize = pageSize;
+        this.log = logFile == null ? null : Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.command = command;
+        this.echo = echo;
+    }
+
+    /**
+     * Reads a rules file with one rule per line; blank lines and lines starting with '#' are skipped.
+     *
+     * @param path The rules file.
+     * @return The rules, in file order.
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If a line is not a valid rule, naming the line.
+     */
+    public static List<AlertRule> readRules(Path path) throws IOException {
+        List<AlertRule> rules = new ArrayList<>();
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                rules.add(AlertRule.parse(line));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(path + ":" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Starts evaluating every snapshot the scheduler publishes.
+     *
+     * @param scheduler The scheduler of the live collectors.
+     */
+    public void start(CollectorScheduler scheduler) {
+        running = true;
+        scheduler.addListener(this::observe);
+    }
+
+    /**
+     * Stops evaluating published snapshots and closes the alert log.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                // nothing left to write
+            }
+        }
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    /**
+     * Returns the rules that are firing, in rule order.
+     *
+     * @return The rules; the array is replaced, never modified, when a rule changes state.
+     */
+    public AlertRule[] getFiring() {
+        return firing;
+    }
+
+    // ========================= Evaluation Functions ========================= //
+
+    /**
+     * Folds one sample into every rule, e.g. a record of a replayed recording.
+     *
+     * @param snapshot The sample.
+     * @param now      The time of the sample in milliseconds, e.g. a recording's time when replaying.
+     */
+    public synchronized void evaluate(SystemSnapshot snapshot, long now) {
+        fold(snapshot, now, null);
+    }
+
+    /**
+     * Folds a published snapshot into the rules whose source it has a new sample of, i.e. a new object from its
+     * collector. The CPU usage of the MXBean comes without a breakdown, so there a new value marks a new sample.
+     *
+     * @param snapshot The snapshot a collector just published.
+     */
+    private synchronized void observe(SystemSnapshot snapshot) {
+        if (!running) return;
+        SystemSnapshot last = observed;
+        observed = snapshot;
+        sampled[AlertRule.CPU] = last == null || snapshot.getCpuBreakdown() != last.getCpuBreakdown()
+                || snapshot.getCpuLoad() != last.getCpuLoad();
+        sampled[AlertRule.CPU_MODE] = sampled[AlertRule.CPU];
+        sampled[AlertRule.MEMORY] = last == null || snapshot.getMemStats() != last.getMemStats();
+        sampled[AlertRule.MEMORY_BYTES] = sampled[AlertRule.MEMORY];
+        sampled[AlertRule.DISK] = last == null || snapshot.getDiskRates() != last.getDiskRates();
+        sampled[AlertRule.NET] = last == null || snapshot.getNetRates() != last.getNetRates();
+        fold(snapshot, System.currentTimeMillis(), sampled);
+    }
+
+    /**
+     * Folds a snapshot into the rules on the given sources.
+     *
+     * @param snapshot The snapshot.
+     * @param now      The time of the sample in milliseconds.
+     * @param sampled  Whether a source has a new sample, by {@link AlertRule} source; null for all of them.
+     */
+    private void fold(SystemSnapshot snapshot, long now, boolean[] sampled) {
+        boolean changed = false;
+        for (AlertRule rule : rules) {
+            if (sampled != null && !sampled[rule.source]) continue;
+            int transition = rule.update(value(snapshot, rule), now);
+            if (transition != AlertRule.UNCHANGED) {
+                changed = true;
+                report(rule, transition, now);
+            }
+        }
+        if (changed) publishFiring();
+    }
+
+    /**
+     * Reads the metric of a rule from a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @param rule     The rule.
+     * @return The value, or NaN if the snapshot does not have it, e.g. a device that is gone.
+     */
+    private double value(SystemSnapshot snapshot, AlertRule rule) {
+        switch (rule.source) {
+            case AlertRule.CPU:
+                return snapshot.getCpuLoad();
+            case AlertRule.CPU_MODE:
+                CpuBreakdown breakdown = snapshot.getCpuBreakdown();
+                return breakdown != null ? breakdown.getTotal(rule.field) : Double.NaN;
+            case AlertRule.MEMORY:
+                return snapshot.getMemoryUsage();
+            case AlertRule.MEMORY_BYTES:
+                return (double) snapshot.getMemStats().get(rule.field) * pageSize;
+            case AlertRule.DISK:
+                return deviceValue(snapshot.getDiskRates(), rule);
+            default:
+                return deviceValue(snapshot.getNetRates(), rule);
+        }
+    }
+
+    static double deviceValue(DeviceRates rates, AlertRule rule) {
+        if (rates == null) return Double.NaN;
+        if (rule.device == null) {
+            if (rule.field != DeviceRates.UTILIZATION || rates.getFieldCount() <= DeviceRates.UTILIZATION) {
+                return rule.field < rates.getFieldCount() ? rates.getTotal(rule.field) : Double.NaN;
+            }
+            // utilization does not add up across disks; use the busiest one
+            double busiest = 0;
+            for (int d = 0; d < rates.getDeviceCount(); d++) busiest = Math.max(busiest, rates.get(d, rule.field));
+            return busiest;
+        }
+        int index = rule.deviceIndex;
+        if (index < 0 || index >= rates.getDeviceCount() || !rates.getName(index).equals(rule.device)) {
+            index = rates.indexOf(rule.device);
+            rule.deviceIndex = index;
+        }
+        return index >= 0 ? rates.get(index, rule.field) : Double.NaN;
+    }
+
+    // ========================= Action Functions ========================= //
+
+    private void publishFiring() {
+        List<AlertRule> now = new ArrayList<>();
+        for (AlertRule rule : rules) {
+            if (rule.isFiring()) now.add(rule);
+        }
+        firing = now.toArray(new AlertRule[0]);
+    }
+
+    /**
+     * Logs a state change and runs the alert command for it.
+     *
+     * @param rule       The rule that changed state.
+     * @param transition {@link AlertRule#FIRED} or {@link AlertRule#RESOLVED}.
+     * @param now        The time of the sample in milliseconds.
+     */
+    private void report(AlertRule rule, int transition, long now) {
+        String state = transition == AlertRule.FIRED ? "firing" : "resolved";
+        String line = String.format("%tFT%<tT%<tz %s %s %s=%s (%s)", new Date(now), state, rule.getName(),
+                rule.getMetric(), formatValue(rule.getValue()), rule.getCondition());
+        if (echo) System.err.println("Alert " + line);
+        if (log != null) {
+            try {
+                log.write(line);
+                log.newLine();
+                log.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing alert log: " + e.getMessage());
+            }
+        }
+        if (command != null) runCommand(rule, state, now);
+    }
+
+    private void runCommand(AlertRule rule, String state, long now) {
+        commands.removeIf(process -> !process.isAlive());
+        if (commands.size() >= MAX_RUNNING_COMMANDS) {
+            System.err.println("Skipped alert command for " + rule.getName() + ": " + commands.size()
+                    + " still running");
+            return;
+        }
+        ProcessBuilder builder = new ProcessBuilder("sh", "-c", command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD);
+        builder.environment().put("SYSMON_ALERT", rule.getName());
+        builder.environment().put("SYSMON_STATE", state);
+        builder.environment().put("SYSMON_METRIC", rule.getMetric());
+        builder.environment().put("SYSMON_VALUE", formatValue(rule.getValue()));
+        builder.environment().put("SYSMON_CONDITION", rule.getCondition());
+        builder.environment().put("SYSMON_TIME", Long.toString(now));
+        try {
+            commands.add(builder.start());
+        } catch (IOException e) {
+            System.err.println("Error running alert command: " + e.getMessage());
+        }
+    }
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : String.format("%.2f", value);
+    }
+}
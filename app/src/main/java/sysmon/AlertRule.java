@@ -0,0 +1,325 @@
+package sysmon;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * One alerting rule and its incremental state: a metric, a condition on it and whether the rule is firing.
+ * <p>
+ * Rules are written one per line as {@code <name> <metric> <condition> [options]}, e.g.
+ * <pre>
+ * cpu_hot    cpu > 90 clear 80 for 30s
+ * low_free   mem_free &lt; 512M for 1m
+ * sda_busy   disk_util:sda > 90 for 2m
+ * net_spike  net_rx ewma 4 alpha 0.05 for 5s
+ * </pre>
+ * A threshold condition ({@code >} or {@code <}) compares the value itself; {@code ewma <k>} compares its
+ * distance from an exponentially weighted moving average, in exponentially weighted standard deviations.
+ * {@code clear} sets the level the value must cross back over before the alert resolves (hysteresis), and
+ * {@code for} how long the condition must hold without interruption before it fires. Values accept K, M, G
+ * and T suffixes (powers of 1024) and durations s, m and h.
+ * <p>
+ * Every sample updates a rule in constant time and without allocating: the moving average and variance are
+ * folded in place, and a sustained condition only remembers when it started to hold.
+ */
+public final class AlertRule {
+
+    // Metric sources
+    static final int CPU = 0;
+    static final int CPU_MODE = 1;
+    static final int MEMORY = 2;
+    static final int MEMORY_BYTES = 3;
+    static final int DISK = 4;
+    static final int NET = 5;
+
+    // Conditions
+    static final int ABOVE = 0;
+    static final int BELOW = 1;
+    static final int DEVIATION = 2;
+
+    // Transitions returned by update
+    static final int UNCHANGED = 0;
+    static final int FIRED = 1;
+    static final int RESOLVED = 2;
+
+    private static final double DEFAULT_ALPHA = 0.1;
+
+    private static final String[] DISK_FIELDS = {"read", "write", "read_ops", "write_ops", "util"};
+    private static final String[] NET_FIELDS = {"rx", "tx", "rx_packets", "tx_packets"};
+
+    // Definition
+    private final String name;
+    private final String metric;
+    private final String condition;
+    final int source;
+    final int field;
+    final String device;
+    private final int kind;
+    private final double threshold;
+    private final double clear;
+    private final long forMillis;
+    private final double alpha;
+
+    // Device index of the last sample, so a per-device rule does not search the devices every time
+    int deviceIndex = -1;
+
+    // Incremental state, updated by the evaluating thread and read by the renderer
+    private double mean;
+    private double variance;
+    private long samples;
+    private long breachSince = -1;
+    private volatile double value = Double.NaN;
+    private volatile boolean firing;
+    private volatile long firingSince;
+
+    private AlertRule(String name, String metric, String condition, int source, int field, String device, int kind,
+                      double threshold, double clear, long forMillis, double alpha) {
+        this.name = name;
+        this.metric = metric;
+        this.condition = condition;
+        this.source = source;
+        this.field = field;
+        this.device = device;
+        this.kind = kind;
+        this.threshold = threshold;
+        this.clear = clear;
+        this.forMillis = forMillis;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Parses a rule.
+     *
+     * @param line The rule, e.g. "cpu_hot cpu > 90 clear 80 for 30s".
+     * @return The rule, not firing.
+     * @throws IllegalArgumentException If the line is not a valid rule.
+     */
+    public static AlertRule parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length < 4 || tokens.length % 2 != 0) {
+            throw new IllegalArgumentException("expected <name> <metric> <condition> [options]: " + line);
+        }
+        String name = tokens[0];
+        String metric = tokens[1];
+
+        int colon = metric.indexOf(':');
+        String base = colon < 0 ? metric : metric.substring(0, colon);
+        String device = colon < 0 ? null : metric.substring(colon + 1);
+        int source;
+        int field = 0;
+        if (base.equals("cpu")) {
+            source = CPU;
+        } else if (base.equals("memory")) {
+            source = MEMORY;
+        } else if (base.startsWith("cpu_") && (field = cpuField(base.substring(4))) >= 0) {
+            source = CPU_MODE;
+        } else if (base.startsWith("mem_") && (field = memoryField(base.substring(4))) >= 0) {
+            source = MEMORY_BYTES;
+        } else if (base.startsWith("disk_") && (field = indexOf(DISK_FIELDS, base.substring(5))) >= 0) {
+            source = DISK;
+        } else if (base.startsWith("net_") && (field = indexOf(NET_FIELDS, base.substring(4))) >= 0) {
+            source = NET;
+        } else {
+            throw new IllegalArgumentException("unknown metric '" + metric + "' in rule " + name);
+        }
+        if (device != null && source != DISK && source != NET) {
+            throw new IllegalArgumentException("only disk_ and net_ metrics take a device: " + metric);
+        }
+
+        int kind;
+        switch (tokens[2]) {
+            case ">": kind = ABOVE; break;
+            case "<": kind = BELOW; break;
+            case "ewma": kind = DEVIATION; break;
+            default: throw new IllegalArgumentException("expected >, < or ewma in rule " + name + ": " + tokens[2]);
+        }
+        double threshold = parseValue(tokens[3]);
+        double clear = threshold;
+        long forMillis = 0;
+        double alpha = DEFAULT_ALPHA;
+        for (int i = 4; i < tokens.length; i += 2) {
+            switch (tokens[i]) {
+                case "clear": clear = parseValue(tokens[i + 1]); break;
+                case "for": forMillis = parseDuration(tokens[i + 1]); break;
+                case "alpha": alpha = Double.parseDouble(tokens[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option '" + tokens[i] + "' in rule " + name);
+            }
+        }
+        if (kind == BELOW ? clear < threshold : clear > threshold) {
+            throw new IllegalArgumentException("clear level must not be beyond the threshold in rule " + name);
+        }
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1] in rule " + name);
+        }
+        String condition = String.join(" ", Arrays.copyOfRange(tokens, 2, tokens.length));
+        return new AlertRule(name, metric, condition, source, field, device, kind, threshold, clear, forMillis,
+                alpha);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * Returns the condition as written, e.g. "> 90 clear 80 for 30s".
+     *
+     * @return The condition.
+     */
+    public String getCondition() {
+        return condition;
+    }
+
+    /**
+     * Returns the value of the latest sample.
+     *
+     * @return The value, or NaN before the metric was first available.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    public boolean isFiring() {
+        return firing;
+    }
+
+    /**
+     * Returns when the rule last fired.
+     *
+     * @return The sample time in milliseconds, or 0 if it never fired.
+     */
+    public long getFiringSince() {
+        return firingSince;
+    }
+
+    /**
+     * Checks whether the metric is a byte count or rate, for formatting its value.
+     *
+     * @return True for memory statistics and disk and network byte rates.
+     */
+    boolean isBytes() {
+        // the read and write fields share their index with rx and tx
+        return source == MEMORY_BYTES || (source == DISK || source == NET)
+                && (field == DeviceRates.READ_BYTES || field == DeviceRates.WRITE_BYTES);
+    }
+
+    // ========================= Evaluation Functions ========================= //
+
+    /**
+     * Folds one sample into the rule.
+     *
+     * @param value The metric's value, or NaN if the sample does not have it, which leaves the rule as it is.
+     * @param now   The time of the sample in milliseconds.
+     * @return {@link #FIRED} or {@link #RESOLVED} if the rule changed state, else {@link #UNCHANGED}.
+     */
+    int update(double value, long now) {
+        if (Double.isNaN(value)) return UNCHANGED;
+        this.value = value;
+
+        double level = value;
+        if (kind == DEVIATION) {
+            // compare against the average before this sample, then fold it in; wait until the average settled
+            boolean settled = samples >= (long) Math.ceil(1 / alpha);
+            level = Math.abs(value - mean) / deviationUnit();
+            double delta = value - mean;
+            double increment = alpha * delta;
+            mean = samples == 0 ? value : mean + increment;
+            variance = samples == 0 ? 0 : (1 - alpha) * (variance + delta * increment);
+            samples++;
+            if (!settled) return UNCHANGED;
+        }
+
+        boolean breached = kind == BELOW ? level < threshold : level > threshold;
+        if (!firing) {
+            if (!breached) {
+                breachSince = -1;
+                return UNCHANGED;
+            }
+            if (breachSince < 0) breachSince = now;
+            if (now - breachSince < forMillis) return UNCHANGED;
+            firingSince = now;
+            firing = true;
+            return FIRED;
+        }
+        boolean cleared = kind == BELOW ? level >= clear : level <= clear;
+        if (!cleared) return UNCHANGED;
+        breachSince = -1;
+        firing = false;
+        return RESOLVED;
+    }
+
+    /**
+     * Returns the unit deviations are measured in: the moving standard deviation, but at least 1% of the
+     * moving average, so a flat series does not fire on the first wobble.
+     */
+    private double deviationUnit() {
+        return Math.max(Math.sqrt(variance), Math.max(Math.abs(mean) * 0.01, 1e-9));
+    }
+
+    // ========================= Parse Functions ========================= //
+
+    private static int cpuField(String label) {
+        for (int f = CpuBreakdown.USER; f < CpuBreakdown.FIELD_COUNT; f++) {
+            if (CpuBreakdown.fieldLabel(f).equals(label)) return f;
+        }
+        return -1;
+    }
+
+    private static int memoryField(String label) {
+        for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+            if (MemoryStats.fieldLabel(f).equals(label)) return f;
+        }
+        return -1;
+    }
+
+    private static int indexOf(String[] labels, String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a value with an optional binary suffix, e.g. "512M" or "90".
+     */
+    private static double parseValue(String s) {
+        String upper = s.toUpperCase(Locale.ROOT);
+        double scale = 1;
+        int end = upper.length();
+        switch (upper.charAt(end - 1)) {
+            case 'K': scale = 1L << 10; end--; break;
+            case 'M': scale = 1L << 20; end--; break;
+            case 'G': scale = 1L << 30; end--; break;
+            case 'T': scale = 1L << 40; end--; break;
+            case '%': end--; break;
+            default: break;
+        }
+        try {
+            return Double.parseDouble(upper.substring(0, end)) * scale;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + s);
+        }
+    }
+
+    /**
+     * Parses a duration, e.g. "30s", "5m" or "1h"; a bare number is seconds.
+     */
+    private static long parseDuration(String s) {
+        long scale = 1000;
+        int end = s.length();
+        switch (s.charAt(end - 1)) {
+            case 's': end--; break;
+            case 'm': scale = 60_000; end--; break;
+            case 'h': scale = 3_600_000; end--; break;
+            default: break;
+        }
+        try {
+            return (long) (Double.parseDouble(s.substring(0, end)) * scale);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a duration: " + s);
+        }
+    }
+}
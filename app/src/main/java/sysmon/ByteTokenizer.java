@@ -0,0 +1,331 @@
+package sysmon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reusable buffer for the text output of stats sources, with position-based helpers that scan numbers and
+ * tokens straight out of the bytes.
+ * <p>
+ * A file, a command's output or a single line of a stream is read into one byte array that is only grown,
+ * never reallocated per read. The helpers take a position and return a value or the next position, so a
+ * parser walks the fields of a line without creating substrings, and numbers land in primitives. Fields
+ * are separated by spaces or tabs and lines by '\n'; everything is treated as ASCII.
+ */
+public final class ByteTokenizer {
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private int limit;
+
+    // Chunked reads: the file position of the next chunk and the end of the bytes read; the bytes between the
+    // limit and the end are the start of a line cut off by the chunk
+    private long chunkPosition;
+    private int chunkEnd;
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param capacity The initial buffer size, e.g. the usual size of the file it reads.
+     */
+    public ByteTokenizer(int capacity) {
+        bytes = new byte[capacity];
+        buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Returns the buffer; only the bytes before {@link #limit()} are valid, and the array may be replaced
+     * by the next read.
+     *
+     * @return The buffer.
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    // ========================= Read Functions ========================= //
+
+    /**
+     * Reads a whole file from offset 0, e.g. an open procfs file that is re-read every tick.
+     *
+     * @param channel The channel to read.
+     * @throws IOException If the channel cannot be read.
+     */
+    public void read(FileChannel channel) throws IOException {
+        buffer.clear();
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) > 0) {
+            position += n;
+            if (!buffer.hasRemaining()) grow();
+        }
+        limit = buffer.position();
+    }
+
+    /**
+     * Reads the next chunk of a file too large to hold at once, e.g. a socket table with thousands of lines.
+     * Only whole lines end up before {@link #limit()}; a line cut off at the end of a chunk is carried over to
+     * the next one, so a parser walks every chunk like a whole file. Chunks are read in order, which lets procfs
+     * continue where the previous read stopped instead of formatting the file from the start again.
+     *
+     * @param channel The channel to read.
+     * @param first   True to start over at offset 0, false to continue after the previous chunk.
+     * @return False once the whole file was handed out.
+     * @throws IOException If the channel cannot be read.
+     */
+    public boolean readChunk(FileChannel channel, boolean first) throws IOException {
+        int carried = first ? 0 : chunkEnd - limit;
+        if (first) chunkPosition = 0;
+        else System.arraycopy(bytes, limit, bytes, 0, carried);
+        buffer.clear();
+        buffer.position(carried);
+        if (!buffer.hasRemaining()) grow(); // a single line longer than the buffer
+        int n = channel.read(buffer, chunkPosition);
+        chunkEnd = buffer.position();
+        if (n <= 0) {
+            // end of file: hand out a last line without a line break, if any
+            limit = chunkEnd;
+            return limit > 0;
+        }
+        chunkPosition += n;
+        int end = chunkEnd;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        limit = end;
+        return true;
+    }
+
+    /**
+     * Opens and reads a whole file.
+     *
+     * @param path The file to read.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public void read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel);
+        }
+    }
+
+    /**
+     * Reads a stream until its end, e.g. the output of a command.
+     *
+     * @param in The stream to read.
+     * @throws IOException If the stream cannot be read.
+     */
+    public void read(InputStream in) throws IOException {
+        limit = 0;
+        int n;
+        while ((n = in.read(bytes, limit, bytes.length - limit)) >= 0) {
+            limit += n;
+            if (limit == bytes.length) grow();
+        }
+    }
+
+    /**
+     * Reads the next line of a stream, without its line break, e.g. one report of a command that keeps
+     * running. The stream should be buffered, since it is read a byte at a time.
+     *
+     * @param in The stream to read.
+     * @return False at the end of the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public boolean readLine(InputStream in) throws IOException {
+        limit = 0;
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (limit == bytes.length) grow();
+            bytes[limit++] = (byte) b;
+        }
+        return b >= 0 || limit > 0;
+    }
+
+    // ========================= Scan Functions ========================= //
+
+    /**
+     * Checks whether the buffer contains the given bytes at a position.
+     *
+     * @param pos    The position in the buffer.
+     * @param prefix The bytes to compare.
+     * @return True if the bytes match.
+     */
+    public boolean startsWith(int pos, byte[] prefix) {
+        if (pos + prefix.length > limit) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[pos + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the bytes between two positions spell a string.
+     *
+     * @param start The position of the first byte.
+     * @param end   The position just after the last byte.
+     * @param s     The ASCII string to compare.
+     * @return True if they match.
+     */
+    public boolean equals(int start, int end, String s) {
+        if (s.length() != end - start) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (bytes[start + i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses an unsigned decimal number at a position, ignoring everything from the first non-digit on,
+     * e.g. the trailing dot of a `vm_stat` count.
+     *
+     * @param pos The position of the first digit.
+     * @return The parsed value, or 0 if there are no digits.
+     */
+    public long parseLong(int pos) {
+        long value = 0;
+        while (pos < limit) {
+            byte b = bytes[pos++];
+            if (b < '0' || b > '9') break;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses a decimal number with an optional sign and fraction at a position, e.g. "1.71".
+     * With up to 15 significant digits the result is the same as {@link Double#parseDouble}.
+     *
+     * @param pos The position of the sign or first digit.
+     * @return The parsed value, or 0 if there are no digits.
+     */
+    public double parseDouble(int pos) {
+        boolean negative = pos < limit && bytes[pos] == '-';
+        if (negative) pos++;
+        long mantissa = 0;
+        int scale = 0;
+        boolean fraction = false;
+        while (pos < limit) {
+            byte b = bytes[pos++];
+            if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) scale++;
+            } else {
+                break;
+            }
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[Math.min(scale, POWERS_OF_TEN.length - 1)];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Skips the field separators at a position.
+     *
+     * @param pos The position.
+     * @return The position of the next non-separator byte, or the line break.
+     */
+    public int skipSpaces(int pos) {
+        while (pos < limit && (bytes[pos] == ' ' || bytes[pos] == '\t')) pos++;
+        return pos;
+    }
+
+    /**
+     * Skips the token at a position.
+     *
+     * @param pos The position of the token.
+     * @return The position just after the token.
+     */
+    public int skipToken(int pos) {
+        while (pos < limit && bytes[pos] != ' ' && bytes[pos] != '\t' && bytes[pos] != '\n') pos++;
+        return pos;
+    }
+
+    /**
+     * Moves to the start of the next line.
+     *
+     * @param pos A position in the current line.
+     * @return The position after the line break, or past the limit on the last line.
+     */
+    public int nextLine(int pos) {
+        while (pos < limit && bytes[pos] != '\n') pos++;
+        return pos + 1;
+    }
+
+    /**
+     * Finds a byte in the rest of the line.
+     *
+     * @param pos The position to start at.
+     * @param b   The byte to find.
+     * @return Its position, or -1 if the line does not contain it.
+     */
+    public int indexOf(int pos, byte b) {
+        while (pos < limit && bytes[pos] != '\n') {
+            if (bytes[pos] == b) return pos;
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last occurrence of a byte in the buffer, e.g. the ')' closing a command name that may
+     * contain parentheses itself.
+     *
+     * @param b The byte to find.
+     * @return Its position, or -1.
+     */
+    public int lastIndexOf(byte b) {
+        for (int pos = limit - 1; pos >= 0; pos--) {
+            if (bytes[pos] == b) return pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the tokens from a position to the end of the line.
+     *
+     * @param pos The position to start at.
+     * @return The token count.
+     */
+    public int countTokens(int pos) {
+        int count = 0;
+        pos = skipSpaces(pos);
+        while (pos < limit && bytes[pos] != '\n') {
+            count++;
+            pos = skipSpaces(skipToken(pos));
+        }
+        return count;
+    }
+
+    /**
+     * Copies the bytes between two positions into a string, for the rare values that must outlive the buffer.
+     *
+     * @param start The position of the first byte.
+     * @param end   The position just after the last byte.
+     * @return The string.
+     */
+    public String toString(int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    private void grow() {
+        byte[] grown = new byte[bytes.length * 2];
+        System.arraycopy(bytes, 0, grown, 0, bytes.length);
+        int position = buffer.position();
+        bytes = grown;
+        buffer = ByteBuffer.wrap(bytes);
+        buffer.position(position);
+    }
+}
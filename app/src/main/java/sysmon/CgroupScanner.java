@@ -0,0 +1,426 @@
+package sysmon;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples CPU, memory, I/O and throttling of every workload in a cgroup v2 hierarchy, e.g. one per container
+ * or systemd service, and selects the busiest ones.
+ * <p>
+ * Workloads are the leaf cgroups below `/sys/fs/cgroup`; the tree is re-listed every 10 seconds, so containers
+ * that come and go show up or drop out without walking the tree on every tick. The `cpu.stat`,
+ * `memory.current`, `memory.stat` and `io.stat` channels of every leaf are opened once and re-read from offset 0
+ * into one reused buffer; a read that fails because the cgroup was removed drops it at the next listing.
+ * <p>
+ * The cgroup the monitor runs in is sampled as well, together with the tightest CPU and memory limits on its
+ * path. Inside a container with its own cgroup namespace that is the root of the mount, so the monitor
+ * reports the container's limits rather than the host's.
+ */
+public final class CgroupScanner {
+
+    private static final Path CGROUP = Paths.get("/sys/fs/cgroup");
+    private static final Path PROC_SELF_CGROUP = Paths.get("/proc/self/cgroup");
+    private static final long RESCAN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_DEPTH = 8;
+    private static final int MAX_CGROUPS = 512; // four open channels each
+    private static final String[] UNIT_SUFFIXES = {".scope", ".service", ".slice"};
+
+    private static final byte[] USAGE_USEC = ascii("usage_usec ");
+    private static final byte[] NR_THROTTLED = ascii("nr_throttled ");
+    private static final byte[] INACTIVE_FILE = ascii("inactive_file ");
+    private static final byte[] RBYTES = ascii("rbytes=");
+    private static final byte[] WBYTES = ascii("wbytes=");
+    private static final byte[] MAX = ascii("max");
+
+    private final Path root;
+    private final Path ownDir;
+    private final int topN;
+
+    // Leaf cgroups by path relative to the root, rebuilt at every listing to drop removed ones
+    private Map<String, Entry> entries = new HashMap<>();
+    private Entry own;
+    private long listedAt;
+    private boolean listed = false;
+
+    // Reused read buffer
+    private final ByteTokenizer tok = new ByteTokenizer(4096);
+
+    /**
+     * State of a single cgroup between samples.
+     */
+    private static final class Entry {
+        final String path;
+        final String name;
+        final Path dir;
+        final FileChannel cpuStat;
+        final FileChannel memoryCurrent;
+        final FileChannel memoryStat;
+        final FileChannel ioStat;
+        boolean removed = false;
+
+        double cpuLimit = 0;
+        long memoryLimit = 0;
+
+        long sampledAt = 0;
+        long usageUsec = 0;
+        long throttledCount = 0;
+        long readBytes = 0;
+        long writeBytes = 0;
+
+        double cpuPercent = 0;
+        long memoryBytes = 0;
+        double readRate = 0;
+        double writeRate = 0;
+        double throttledRate = 0;
+
+        Entry(String path, Path dir) {
+            this.path = path;
+            this.name = shortName(path);
+            this.dir = dir;
+            // files of controllers that are not enabled for the cgroup stay null
+            this.cpuStat = open(dir.resolve("cpu.stat"));
+            this.memoryCurrent = open(dir.resolve("memory.current"));
+            this.memoryStat = open(dir.resolve("memory.stat"));
+            this.ioStat = open(dir.resolve("io.stat"));
+        }
+
+        void close() {
+            for (FileChannel channel : new FileChannel[]{cpuStat, memoryCurrent, memoryStat, ioStat}) {
+                try {
+                    if (channel != null) channel.close();
+                } catch (IOException e) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a scanner below a root directory.
+     *
+     * @param root    `/sys/fs/cgroup`, or a directory laid out like a cgroup v2 hierarchy.
+     * @param ownPath The path of the monitor's own cgroup relative to the root, e.g. "/", or null if unknown.
+     * @param topN    The number of cgroups kept per sort key.
+     */
+    CgroupScanner(Path root, String ownPath, int topN) {
+        this.root = root;
+        this.topN = topN;
+        Path dir = ownPath == null ? null : resolve(root, ownPath);
+        this.ownDir = dir != null && Files.isDirectory(dir) ? dir : null;
+    }
+
+    /**
+     * Opens the scanner if the host mounts a unified cgroup v2 hierarchy.
+     *
+     * @param topN The number of cgroups kept per sort key.
+     * @return A scanner, or null on cgroup v1 hosts and on macOS.
+     */
+    public static CgroupScanner openIfAvailable(int topN) {
+        if (!Files.isReadable(CGROUP.resolve("cgroup.controllers"))) return null;
+        return new CgroupScanner(CGROUP, readOwnPath(), topN);
+    }
+
+    /**
+     * Samples every known cgroup, re-listing the hierarchy when the last listing is 10 seconds old.
+     *
+     * @return The busiest cgroups by CPU, memory, I/O and throttling.
+     */
+    public synchronized CgroupTable scan() {
+        long now = System.nanoTime();
+        if (!listed || now - listedAt >= RESCAN_NANOS) list(now);
+
+        for (Entry e : entries.values()) sample(e, now);
+        if (own != null && own.sampledAt != now) sample(own, now);
+        return selectTop();
+    }
+
+    // ========================= Scanning Functions ========================= //
+
+    /**
+     * Lists the leaf cgroups, keeping the entries and open channels of the ones that still exist.
+     *
+     * @param now The time of this tick in nanoseconds.
+     */
+    private void list(long now) {
+        Map<String, Entry> next = new HashMap<>();
+        collectLeaves(root, 0, 0, 0, next);
+        for (Entry e : entries.values()) {
+            if (e != own) e.close();
+        }
+        entries = next;
+
+        if (ownDir != null) {
+            String path = relativePath(ownDir);
+            Entry e = next.get(path);
+            if (e == null && own != null && own.path.equals(path) && !own.removed) e = own;
+            if (e == null) {
+                if (own != null) own.close();
+                e = new Entry(path, ownDir);
+            }
+            own = e;
+            // the own cgroup need not be a leaf, so its limits are collected on the way up
+            double cpuLimit = 0;
+            long memoryLimit = 0;
+            for (Path d = ownDir; d != null && d.startsWith(root); d = d.getParent()) {
+                cpuLimit = tighter(cpuLimit, readCpuLimit(d));
+                memoryLimit = (long) tighter(memoryLimit, readMemoryLimit(d));
+            }
+            own.cpuLimit = cpuLimit;
+            own.memoryLimit = memoryLimit;
+        }
+        listedAt = now;
+        listed = true;
+    }
+
+    /**
+     * Walks the hierarchy depth-first and collects the cgroups without children, each with the tightest limits
+     * on its path; a root without children is a leaf itself, e.g. inside a container.
+     *
+     * @param dir         The cgroup's directory.
+     * @param depth       The depth below the root.
+     * @param cpuLimit    The tightest CPU limit of the ancestors in cores, 0 for none.
+     * @param memoryLimit The tightest memory limit of the ancestors in bytes, 0 for none.
+     * @param next        The entries of the new listing, by path.
+     */
+    private void collectLeaves(Path dir, int depth, double cpuLimit, long memoryLimit, Map<String, Entry> next) {
+        if (next.size() >= MAX_CGROUPS) return;
+        cpuLimit = tighter(cpuLimit, readCpuLimit(dir));
+        memoryLimit = (long) tighter(memoryLimit, readMemoryLimit(dir));
+        boolean leaf = true;
+        if (depth < MAX_DEPTH) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                for (Path child : children) {
+                    leaf = false;
+                    collectLeaves(child, depth + 1, cpuLimit, memoryLimit, next);
+                }
+            } catch (IOException e) {
+                // removed while listing, or not readable
+            }
+        }
+        if (!leaf || next.size() >= MAX_CGROUPS) return;
+
+        String path = relativePath(dir);
+        Entry e = entries.remove(path);
+        if (e == null || e.removed) {
+            if (e != null && e != own) e.close();
+            e = new Entry(path, dir);
+        }
+        e.cpuLimit = cpuLimit;
+        e.memoryLimit = memoryLimit;
+        next.put(path, e);
+    }
+
+    /**
+     * Reads a cgroup's `cpu.max`, "$MAX $PERIOD" where $MAX is "max" without a quota.
+     *
+     * @param dir The cgroup's directory.
+     * @return The quota in cores, or 0 without a quota or cpu controller.
+     */
+    private double readCpuLimit(Path dir) {
+        try {
+            tok.read(dir.resolve("cpu.max"));
+            if (tok.startsWith(0, MAX)) return 0;
+            long period = tok.parseLong(tok.skipSpaces(tok.skipToken(0)));
+            return period > 0 ? (double) tok.parseLong(0) / period : 0;
+        } catch (IOException e) {
+            return 0; // no cpu controller, or the root
+        }
+    }
+
+    /**
+     * Reads a cgroup's `memory.max`, a byte count or "max".
+     *
+     * @param dir The cgroup's directory.
+     * @return The limit in bytes, or 0 without a limit or memory controller.
+     */
+    private long readMemoryLimit(Path dir) {
+        try {
+            tok.read(dir.resolve("memory.max"));
+            return tok.startsWith(0, MAX) ? 0 : tok.parseLong(0);
+        } catch (IOException e) {
+            return 0; // no memory controller, or the root
+        }
+    }
+
+    /**
+     * Samples one cgroup, updating its rates over the time since its previous sample.
+     *
+     * @param e   The cgroup entry.
+     * @param now The time of this tick in nanoseconds.
+     */
+    private void sample(Entry e, long now) {
+        if (e.removed) return;
+        try {
+            // cpu.stat: "usage_usec N", ..., and with the cpu controller "nr_throttled N"
+            long usageUsec = e.usageUsec;
+            long throttledCount = e.throttledCount;
+            if (e.cpuStat != null) {
+                tok.read(e.cpuStat);
+                for (int line = 0; line < tok.limit(); line = tok.nextLine(line)) {
+                    if (tok.startsWith(line, USAGE_USEC)) usageUsec = tok.parseLong(line + USAGE_USEC.length);
+                    else if (tok.startsWith(line, NR_THROTTLED)) throttledCount = tok.parseLong(line + NR_THROTTLED.length);
+                }
+            }
+
+            // the working set: everything charged to the cgroup but the page cache it could drop first
+            if (e.memoryCurrent != null) {
+                tok.read(e.memoryCurrent);
+                long memoryBytes = tok.parseLong(0);
+                if (e.memoryStat != null) {
+                    tok.read(e.memoryStat);
+                    for (int line = 0; line < tok.limit(); line = tok.nextLine(line)) {
+                        if (tok.startsWith(line, INACTIVE_FILE)) {
+                            memoryBytes -= tok.parseLong(line + INACTIVE_FILE.length);
+                            break;
+                        }
+                    }
+                }
+                e.memoryBytes = Math.max(0, memoryBytes);
+            }
+
+            // io.stat: one line per device, "8:0 rbytes=N wbytes=N rios=N wios=N dbytes=N dios=N"
+            long readBytes = e.readBytes;
+            long writeBytes = e.writeBytes;
+            if (e.ioStat != null) {
+                tok.read(e.ioStat);
+                readBytes = 0;
+                writeBytes = 0;
+                for (int line = 0; line < tok.limit(); line = tok.nextLine(line)) {
+                    for (int pos = tok.skipSpaces(tok.skipToken(line)); pos < tok.limit() && tok.bytes()[pos] != '\n';
+                         pos = tok.skipSpaces(tok.skipToken(pos))) {
+                        if (tok.startsWith(pos, RBYTES)) readBytes += tok.parseLong(pos + RBYTES.length);
+                        else if (tok.startsWith(pos, WBYTES)) writeBytes += tok.parseLong(pos + WBYTES.length);
+                    }
+                }
+            }
+
+            if (e.sampledAt != 0) {
+                double seconds = (now - e.sampledAt) / 1_000_000_000.0;
+                if (seconds > 0) {
+                    e.cpuPercent = Math.max(0, usageUsec - e.usageUsec) / 10_000.0 / seconds;
+                    e.throttledRate = Math.max(0, throttledCount - e.throttledCount) / seconds;
+                    e.readRate = Math.max(0, readBytes - e.readBytes) / seconds;
+                    e.writeRate = Math.max(0, writeBytes - e.writeBytes) / seconds;
+                }
+            }
+            e.usageUsec = usageUsec;
+            e.throttledCount = throttledCount;
+            e.readBytes = readBytes;
+            e.writeBytes = writeBytes;
+            e.sampledAt = now;
+        } catch (IOException ex) {
+            e.removed = true; // the cgroup is gone, drop it at the next listing
+        }
+    }
+
+    /**
+     * Sorts the sampled cgroups by every key; there are a few hundred at most, unlike processes.
+     *
+     * @return The published table.
+     */
+    private CgroupTable selectTop() {
+        List<CgroupTable.Row> rows = new ArrayList<>(entries.size());
+        int count = 0;
+        for (Entry e : entries.values()) {
+            if (e.removed) continue;
+            count++;
+            if (e.sampledAt != 0) rows.add(toRow(e));
+        }
+
+        CgroupTable.Row[][] top = new CgroupTable.Row[CgroupTable.SORT_KEY_COUNT][];
+        CgroupTable.Row[] sorted = rows.toArray(new CgroupTable.Row[0]);
+        for (int k = 0; k < CgroupTable.SORT_KEY_COUNT; k++) {
+            int key = k;
+            Arrays.sort(sorted, Comparator.comparingDouble((CgroupTable.Row r) -> r.key(key)).reversed());
+            int n = 0;
+            while (n < Math.min(topN, sorted.length) && sorted[n].key(key) > 0) n++; // idle ones never rank
+            top[k] = Arrays.copyOf(sorted, n);
+        }
+
+        boolean limited = own != null && !own.removed && (own.cpuLimit > 0 || own.memoryLimit > 0);
+        return new CgroupTable(top, count, limited ? toRow(own) : null);
+    }
+
+    private static CgroupTable.Row toRow(Entry e) {
+        return new CgroupTable.Row(e.path, e.name, e.cpuPercent, e.cpuLimit, e.memoryBytes, e.memoryLimit,
+                e.readRate, e.writeRate, e.throttledRate, e.throttledCount);
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    /**
+     * Reads the monitor's own cgroup from the unified "0::/path" line of `/proc/self/cgroup`.
+     *
+     * @return The path, or null if the process is not in a cgroup v2 hierarchy.
+     */
+    private static String readOwnPath() {
+        try {
+            for (String line : Files.readAllLines(PROC_SELF_CGROUP, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("0::")) return line.substring(3);
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return null;
+    }
+
+    private static double tighter(double limit, double other) {
+        return other > 0 && (limit == 0 || other < limit) ? other : limit;
+    }
+
+    private String relativePath(Path dir) {
+        String path = root.relativize(dir).toString();
+        return path.isEmpty() ? "/" : "/" + path;
+    }
+
+    private static Path resolve(Path root, String path) {
+        String relative = path.startsWith("/") ? path.substring(1) : path;
+        return relative.isEmpty() ? root : root.resolve(relative);
+    }
+
+    /**
+     * Shortens a cgroup path to its last component without the systemd unit suffix. Container runtimes name
+     * the scope after the 64-digit container id, e.g. "docker-&lt;id&gt;.scope", which is cut to the 12 digits
+     * `docker ps` shows.
+     *
+     * @param path The path relative to the root.
+     * @return The short name.
+     */
+    static String shortName(String path) {
+        if (path.equals("/")) return path;
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        for (String suffix : UNIT_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+                break;
+            }
+        }
+        String id = name.substring(name.lastIndexOf('-') + 1);
+        return id.length() == 64 && id.chars().allMatch(c -> Character.digit(c, 16) >= 0) ? id.substring(0, 12) : name;
+    }
+
+    private static FileChannel open(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
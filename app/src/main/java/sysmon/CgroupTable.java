@@ -0,0 +1,103 @@
+package sysmon;
+
+/**
+ * Immutable result of a {@link CgroupScanner} pass: the busiest cgroups by CPU, memory, I/O and throttling,
+ * plus the limits of the cgroup the monitor itself runs in.
+ */
+public final class CgroupTable {
+
+    public static final int BY_CPU = 0;
+    public static final int BY_MEMORY = 1;
+    public static final int BY_IO = 2;
+    public static final int BY_THROTTLED = 3;
+    public static final int SORT_KEY_COUNT = 4;
+
+    private static final String[] SORT_KEY_LABELS = {"cpu", "mem", "i/o", "thr"};
+
+    private final Row[][] top;
+    private final int cgroupCount;
+    private final Row own;
+
+    /**
+     * A single cgroup row. Limits are 0 where the cgroup has none.
+     */
+    public static final class Row {
+        public final String path;
+        public final String name;
+        public final double cpuPercent;
+        public final double cpuLimit;
+        public final long memoryBytes;
+        public final long memoryLimit;
+        public final double readRate;
+        public final double writeRate;
+        public final double throttledRate;
+        public final long throttledCount;
+
+        Row(String path, String name, double cpuPercent, double cpuLimit, long memoryBytes, long memoryLimit,
+            double readRate, double writeRate, double throttledRate, long throttledCount) {
+            this.path = path;
+            this.name = name;
+            this.cpuPercent = cpuPercent;
+            this.cpuLimit = cpuLimit;
+            this.memoryBytes = memoryBytes;
+            this.memoryLimit = memoryLimit;
+            this.readRate = readRate;
+            this.writeRate = writeRate;
+            this.throttledRate = throttledRate;
+            this.throttledCount = throttledCount;
+        }
+
+        double key(int sortKey) {
+            switch (sortKey) {
+                case BY_CPU: return cpuPercent;
+                case BY_MEMORY: return memoryBytes;
+                case BY_IO: return readRate + writeRate;
+                default: return throttledRate;
+            }
+        }
+    }
+
+    CgroupTable(Row[][] top, int cgroupCount, Row own) {
+        this.top = top;
+        this.cgroupCount = cgroupCount;
+        this.own = own;
+    }
+
+    /**
+     * Returns the busiest cgroups for a sort key, highest first.
+     *
+     * @param sortKey The sort key, e.g. {@link #BY_CPU}.
+     * @return The rows, at most the scanner's top-N.
+     */
+    public Row[] getTop(int sortKey) {
+        return top[sortKey];
+    }
+
+    /**
+     * Returns the number of workload cgroups known to the scanner.
+     *
+     * @return The cgroup count.
+     */
+    public int getCgroupCount() {
+        return cgroupCount;
+    }
+
+    /**
+     * Returns the cgroup the monitor runs in, e.g. its container, with the tightest limits on its path.
+     *
+     * @return The row, or null when no cgroup on the path is limited, e.g. on a host outside any container.
+     */
+    public Row getOwn() {
+        return own;
+    }
+
+    /**
+     * Returns the short label of a sort key, such as "mem".
+     *
+     * @param sortKey The sort key.
+     * @return The label.
+     */
+    public static String sortKeyLabel(int sortKey) {
+        return SORT_KEY_LABELS[sortKey];
+    }
+}
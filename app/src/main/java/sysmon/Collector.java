@@ -0,0 +1,58 @@
+package sysmon;
+
+import java.util.concurrent.Callable;
+import java.util.function.UnaryOperator;
+
+/**
+ * A single stats source run by the {@link CollectorScheduler}.
+ * <p>
+ * The task does the (possibly slow or blocking) sampling work and returns an update that writes the
+ * sampled values into a {@link SystemSnapshot}. The update must be a pure function, since publishing
+ * may retry it against a newer snapshot. How often it runs is up to the scheduler's {@link SamplingPolicy},
+ * but never more often than the collector's minimum interval, e.g. for sources that fork a command.
+ */
+public final class Collector {
+
+    private final String name;
+    private final long minIntervalMillis;
+    private final long timeoutMillis;
+    private final Callable<UnaryOperator<SystemSnapshot>> task;
+
+    /**
+     * Creates a collector.
+     *
+     * @param name              The short name shown when the collector is stale.
+     * @param minIntervalMillis The shortest interval between two samples, in milliseconds.
+     * @param timeoutMillis     How long a single sample may take before the last good value is kept.
+     * @param task              The sampling task, returning the snapshot update to publish.
+     */
+    public Collector(String name, long minIntervalMillis, long timeoutMillis,
+                     Callable<UnaryOperator<SystemSnapshot>> task) {
+        this.name = name;
+        this.minIntervalMillis = minIntervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.task = task;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Runs one sample.
+     *
+     * @return The update that publishes the sampled values.
+     * @throws Exception If sampling fails.
+     */
+    public UnaryOperator<SystemSnapshot> collect() throws Exception {
+        return task.call();
+    }
+}
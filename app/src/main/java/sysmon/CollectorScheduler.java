@@ -0,0 +1,239 @@
+package sysmon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs each {@link Collector} on its own thread at its own cadence and publishes into a shared snapshot.
+ * <p>
+ * Each loop keeps fixed-rate deadlines on {@link System#nanoTime()}, so the cadence does not drift by the
+ * time a sample takes. Collectors sample at the interval of the {@link SamplingPolicy}, or their own minimum
+ * if that is longer; the policy sees every published snapshot, and when it shortens the interval, sleeping
+ * loops are woken to pick it up. Listeners, e.g. the alert engine, also see every published snapshot, on the
+ * thread of the collector that published it.
+ * <p>
+ * Every sample runs on a worker thread and is awaited with the collector's timeout. A sample that times out
+ * or fails leaves the last good value in the snapshot and marks the collector stale; a worker that is still
+ * stuck (e.g. a blocked `iostat` read) is not started again until it returns, so a hung source never piles
+ * up threads or delays the other collectors and the renderer.
+ */
+public final class CollectorScheduler {
+
+    private final AtomicReference<SystemSnapshot> snapshot = new AtomicReference<>(SystemSnapshot.empty());
+    private final List<Collector> collectors = new ArrayList<>();
+    private final List<CollectorState> states = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final ThreadFactory threadFactory = newThreadFactory();
+    private final ExecutorService workers = Executors.newCachedThreadPool(threadFactory);
+    private final SamplingPolicy policy;
+    private final List<Consumer<SystemSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * Tracks the health of a single collector; written by its loop thread, read by the renderer.
+     */
+    private static final class CollectorState {
+        final AtomicBoolean busy = new AtomicBoolean(false);
+        final Histogram latency = new Histogram();
+        volatile boolean stale = false;
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param policy The sampling interval of the collectors.
+     */
+    public CollectorScheduler(SamplingPolicy policy) {
+        this.policy = policy;
+    }
+
+    public SamplingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Registers a collector. Must be called before {@link #start()}.
+     *
+     * @param collector The collector to run.
+     */
+    public void register(Collector collector) {
+        collectors.add(collector);
+        states.add(new CollectorState());
+    }
+
+    /**
+     * Adds a listener called with every published snapshot, concurrently from the collector threads; it must
+     * return quickly, as it delays the next sample of the collector that published.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<SystemSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts one loop thread per registered collector.
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < collectors.size(); i++) {
+            Collector collector = collectors.get(i);
+            CollectorState state = states.get(i);
+            Thread t = threadFactory.newThread(() -> runLoop(collector, state));
+            t.setName("collector-" + collector.getName());
+            threads.add(t);
+        }
+        // the loops read the thread list to wake each other, so it is complete before the first one runs
+        for (Thread t : threads) t.start();
+    }
+
+    /**
+     * Stops all collector loops. Workers stuck in blocking calls are abandoned.
+     */
+    public void stop() {
+        running = false;
+        for (Thread t : threads) t.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns the latest published snapshot without blocking.
+     *
+     * @return The current snapshot.
+     */
+    public SystemSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Lists the collectors whose last sample timed out or failed.
+     *
+     * @return The names of the stale collectors, empty if all are healthy.
+     */
+    public List<String> getStaleCollectors() {
+        List<String> stale = new ArrayList<>();
+        for (int i = 0; i < collectors.size(); i++) {
+            if (states.get(i).stale) stale.add(collectors.get(i).getName());
+        }
+        return stale;
+    }
+
+    public int getCollectorCount() {
+        return collectors.size();
+    }
+
+    public String getCollectorName(int index) {
+        return collectors.get(index).getName();
+    }
+
+    /**
+     * Returns how long the samples of a collector took, including those that timed out or failed,
+     * measured on the worker until the sample returned.
+     *
+     * @param index The collector index, in registration order.
+     * @return The sample durations in nanoseconds.
+     */
+    public Histogram getLatency(int index) {
+        return states.get(index).latency;
+    }
+
+    // ========================= Scheduling Functions ========================= //
+
+    /**
+     * Samples a collector at its cadence until the scheduler is stopped.
+     *
+     * @param collector The collector to run.
+     * @param state     The collector's health state.
+     */
+    private void runLoop(Collector collector, CollectorState state) {
+        Ticker ticker = new Ticker(intervalMillis(collector));
+        while (running) {
+            ticker.advance();
+            state.stale = !sampleOnce(collector, state);
+
+            // wait for the next deadline; a policy that sped up wakes the loop to move it in
+            long wait;
+            while (running && (wait = ticker.nanosUntilNext()) > 0) {
+                LockSupport.parkNanos(this, wait);
+                if (Thread.currentThread().isInterrupted()) return;
+                ticker.setPeriodMillis(intervalMillis(collector));
+            }
+            ticker.setPeriodMillis(intervalMillis(collector));
+        }
+    }
+
+    private long intervalMillis(Collector collector) {
+        return Math.max(policy.getIntervalMillis(), collector.getMinIntervalMillis());
+    }
+
+    /**
+     * Runs one sample on a worker thread and publishes it if it completes within the timeout.
+     *
+     * @param collector The collector to sample.
+     * @param state     The collector's health state.
+     * @return True if a fresh value was published.
+     */
+    private boolean sampleOnce(Collector collector, CollectorState state) {
+        if (!state.busy.compareAndSet(false, true)) return false; // previous worker is still stuck
+
+        Future<UnaryOperator<SystemSnapshot>> future = workers.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return collector.collect();
+            } finally {
+                state.latency.record(System.nanoTime() - start);
+                state.busy.set(false);
+            }
+        });
+
+        try {
+            UnaryOperator<SystemSnapshot> update = future.get(collector.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            SystemSnapshot published = snapshot.updateAndGet(update);
+            if (policy.observe(published, System.nanoTime())) {
+                for (Thread t : threads) LockSupport.unpark(t);
+            }
+            for (Consumer<SystemSnapshot> listener : listeners) listener.accept(published);
+            return true;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+        } catch (ExecutionException e) {
+            System.err.println("Error in " + collector.getName() + " collector: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Creates a factory for virtual threads when the runtime supports them (JDK 21+), falling back to
+     * daemon platform threads on older runtimes.
+     *
+     * @return The thread factory.
+     */
+    private static ThreadFactory newThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package sysmon;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes passed through to the terminal.
+ */
+public final class CountingOutputStream extends FilterOutputStream {
+
+    private volatile long count = 0;
+
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return The byte count.
+     */
+    public long getCount() {
+        return count;
+    }
+}
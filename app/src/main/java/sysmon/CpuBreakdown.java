@@ -0,0 +1,118 @@
+package sysmon;
+
+/**
+ * Per-core CPU time breakdown computed from two consecutive `/proc/stat` snapshots.
+ * <p>
+ * Values are percentages of each core's elapsed ticks, stored in one flat primitive array
+ * (core-major, {@link #FIELD_COUNT} fields per core), filled by {@link ProcfsCollector}.
+ */
+public final class CpuBreakdown {
+
+    public static final int BUSY = 0;
+    public static final int USER = 1;
+    public static final int SYSTEM = 2;
+    public static final int IOWAIT = 3;
+    public static final int IRQ = 4;
+    public static final int STEAL = 5;
+    public static final int FIELD_COUNT = 6;
+
+    private static final String[] FIELD_LABELS = {"busy", "user", "system", "iowait", "irq", "steal"};
+
+    // Raw /proc/stat columns: user nice system idle iowait irq softirq steal
+    static final int TICK_COLUMNS = 8;
+
+    private final double[] total = new double[FIELD_COUNT];
+    private double[] cores;
+    private int coreCount;
+
+    CpuBreakdown(int capacity) {
+        this.cores = new double[capacity * FIELD_COUNT];
+    }
+
+    /**
+     * Returns the number of cores in the breakdown.
+     *
+     * @return The core count.
+     */
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    /**
+     * Returns a field of a single core.
+     *
+     * @param core  The core index, as in `cpuN`.
+     * @param field The field, e.g. {@link #IOWAIT}.
+     * @return The percentage of the core's time.
+     */
+    public double get(int core, int field) {
+        return cores[core * FIELD_COUNT + field];
+    }
+
+    /**
+     * Returns a field of the aggregate `cpu` line.
+     *
+     * @param field The field, e.g. {@link #STEAL}.
+     * @return The percentage of all cores' time.
+     */
+    public double getTotal(int field) {
+        return total[field];
+    }
+
+    /**
+     * Returns the short label of a field, such as "iowait".
+     *
+     * @param field The field.
+     * @return The label.
+     */
+    public static String fieldLabel(int field) {
+        return FIELD_LABELS[field];
+    }
+
+    /**
+     * Computes the breakdown of every core from the previous and current tick counters.
+     *
+     * @param prev      The previous counters, {@link #TICK_COLUMNS} per line, aggregate line first.
+     * @param cur       The current counters in the same layout.
+     * @param coreCount The number of per-core lines after the aggregate line.
+     */
+    void compute(long[] prev, long[] cur, int coreCount) {
+        if (cores.length < coreCount * FIELD_COUNT) cores = new double[coreCount * FIELD_COUNT];
+        this.coreCount = coreCount;
+        fill(prev, cur, 0, total, 0);
+        for (int core = 0; core < coreCount; core++) {
+            fill(prev, cur, (core + 1) * TICK_COLUMNS, cores, core * FIELD_COUNT);
+        }
+    }
+
+    /**
+     * Computes the fields of one `/proc/stat` line from its tick deltas.
+     *
+     * @param prev   The previous counters.
+     * @param cur    The current counters.
+     * @param in     The offset of the line in the counter arrays.
+     * @param out    The array receiving the percentages.
+     * @param outPos The offset in the output array.
+     */
+    private static void fill(long[] prev, long[] cur, int in, double[] out, int outPos) {
+        long user = cur[in] - prev[in] + cur[in + 1] - prev[in + 1];
+        long system = cur[in + 2] - prev[in + 2];
+        long idle = cur[in + 3] - prev[in + 3];
+        long iowait = cur[in + 4] - prev[in + 4];
+        long irq = cur[in + 5] - prev[in + 5] + cur[in + 6] - prev[in + 6];
+        long steal = cur[in + 7] - prev[in + 7];
+        long elapsed = user + system + idle + iowait + irq + steal;
+        if (elapsed <= 0) {
+            for (int f = 0; f < FIELD_COUNT; f++) out[outPos + f] = 0.0;
+            return;
+        }
+
+        double scale = 100.0 / elapsed;
+        out[outPos + BUSY] = (user + system + irq + steal) * scale;
+        out[outPos + USER] = user * scale;
+        out[outPos + SYSTEM] = system * scale;
+        out[outPos + IOWAIT] = iowait * scale;
+        out[outPos + IRQ] = irq * scale;
+        out[outPos + STEAL] = steal * scale;
+    }
+}
@@ -0,0 +1,316 @@
+package sysmon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Receives the samples of many `--agent` processes for `--dashboard`.
+ * <p>
+ * A single thread multiplexes the listening socket and every agent connection on one NIO selector. Each
+ * connection reads into its own small buffer and decodes whole frames as they complete, so hundreds of
+ * agents cost one thread and a few kilobytes each. Hosts are keyed by the name in their hello frame and
+ * outlive their connection, so an agent that restarts or reconnects continues its row and its histories.
+ * The decoded samples are published to the render thread through volatile fields of {@link Host}.
+ */
+public final class DashboardServer {
+
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int HELLO_SIZE = 24; // type, magic, version, channels, cpus, memory, name length
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final long pageSize;
+
+    // Hosts by name, only touched by the selector thread, and the array published to the renderer
+    private final Map<String, Host> hostsByName = new HashMap<>();
+    private volatile Host[] hosts = new Host[0];
+
+    /**
+     * One agent as seen by the dashboard: the facts from its hello frame and its latest sample.
+     * <p>
+     * The volatile fields are written by the selector thread; the histories are only touched by the render thread.
+     */
+    public static final class Host {
+        public static final int CPU = 0;
+        public static final int MEMORY = 1;
+        public static final int DISK_READ = 2;
+        public static final int DISK_WRITE = 3;
+        public static final int NET_IN = 4;
+        public static final int NET_OUT = 5;
+        public static final int HISTORY_COUNT = 6;
+
+        private final String name;
+        private volatile String address = "";
+        private volatile int cpuCount;
+        private volatile long totalMemory;
+        private volatile boolean connected;
+        private volatile SystemSnapshot snapshot = SystemSnapshot.empty();
+        private volatile long sampleTime;
+        private volatile long receivedAt;
+
+        final MetricHistory[] histories = new MetricHistory[HISTORY_COUNT];
+        long historyTime;
+
+        // Percentile windows, only allocated once the host is drilled into
+        QuantileWindows[] quantiles;
+
+        Host(String name) {
+            this.name = name;
+            for (int i = 0; i < HISTORY_COUNT; i++) histories[i] = new MetricHistory();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public int getCpuCount() {
+            return cpuCount;
+        }
+
+        public long getTotalMemory() {
+            return totalMemory;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        public SystemSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Returns the agent's wall-clock time of the latest sample.
+         *
+         * @return The time in milliseconds, or 0 before the first sample.
+         */
+        public long getSampleTime() {
+            return sampleTime;
+        }
+
+        /**
+         * Returns the local time the latest frame arrived, for spotting agents that stopped sending.
+         *
+         * @return The time in milliseconds, or 0 before the first frame.
+         */
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+    }
+
+    /**
+     * Decoding state of one agent connection.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long[] values;
+        int channels;
+        Host host;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private DashboardServer(ServerSocketChannel server, Selector selector, long pageSize) {
+        this.server = server;
+        this.selector = selector;
+        this.pageSize = pageSize;
+        this.thread = new Thread(this::run, "dashboard-selector");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting agents on all interfaces.
+     *
+     * @param port     The TCP port.
+     * @param pageSize The page size of this host, used to convert memory statistics back to pages.
+     * @return The running server.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static DashboardServer start(int port, long pageSize) throws IOException {
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port), 256);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        DashboardServer dashboard = new DashboardServer(server, selector, pageSize);
+        dashboard.thread.start();
+        return dashboard;
+    }
+
+    /**
+     * Returns every host that ever said hello, in order of arrival.
+     *
+     * @return The hosts; the array is replaced, never modified, when a host joins.
+     */
+    public Host[] getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Stops accepting and closes every connection.
+     */
+    public void stop() {
+        try {
+            selector.close();
+            server.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    // ========================= Selector Functions ========================= //
+
+    private void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        Connection connection = (Connection) key.attachment();
+                        if (!read(connection)) close(key, connection);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (selector.isOpen()) System.err.println("Dashboard stopped: " + e.getMessage());
+        }
+        for (Host host : hosts) host.connected = false;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    /**
+     * Reads what arrived on a connection and decodes every complete frame.
+     *
+     * @param connection The connection.
+     * @return False if the connection ended or broke the protocol.
+     */
+    private boolean read(Connection connection) {
+        ByteBuffer buffer = connection.buffer;
+        try {
+            if (connection.channel.read(buffer) < 0) return false;
+        } catch (IOException e) {
+            return false;
+        }
+
+        buffer.flip();
+        int pos = 0;
+        while (buffer.limit() - pos >= 2) {
+            int length = buffer.getShort(pos) & 0xFFFF;
+            if (length == 0 || length > AgentProtocol.MAX_FRAME) return false;
+            if (buffer.limit() - pos - 2 < length) break; // wait for the rest of the frame
+            if (!frame(connection, buffer, pos + 2, length)) return false;
+            pos += 2 + length;
+        }
+        buffer.position(pos);
+        buffer.compact();
+        return true;
+    }
+
+    /**
+     * Decodes one frame.
+     *
+     * @param connection The connection it arrived on.
+     * @param buffer     The read buffer.
+     * @param pos        The position of the type byte.
+     * @param length     The length of the frame, type byte included.
+     * @return False if the frame breaks the protocol.
+     */
+    private boolean frame(Connection connection, ByteBuffer buffer, int pos, int length) {
+        byte type = buffer.get(pos);
+        if (type == AgentProtocol.HELLO) {
+            if (connection.host != null || length < HELLO_SIZE || !AgentProtocol.isHello(buffer, pos + 1)) return false;
+            if (HELLO_SIZE + (buffer.get(pos + HELLO_SIZE - 1) & 0xFF) > length) return false;
+            String name = AgentProtocol.helloName(buffer, pos + 1);
+            Host host = hostsByName.get(name);
+            if (host == null) {
+                host = new Host(name);
+                hostsByName.put(name, host);
+                Host[] grown = new Host[hosts.length + 1];
+                System.arraycopy(hosts, 0, grown, 0, hosts.length);
+                grown[hosts.length] = host;
+                hosts = grown;
+            }
+            connection.host = host;
+            connection.channels = AgentProtocol.helloChannels(buffer, pos + 1);
+            connection.values = new long[Math.max(connection.channels, RecordingFile.CHANNEL_COUNT)];
+            host.cpuCount = AgentProtocol.helloCpuCount(buffer, pos + 1);
+            host.totalMemory = AgentProtocol.helloTotalMemory(buffer, pos + 1);
+            host.address = String.valueOf(connection.channel.socket().getRemoteSocketAddress());
+            host.connected = true;
+            host.receivedAt = System.currentTimeMillis();
+            return true;
+        }
+        if (type == AgentProtocol.SAMPLE && connection.host != null) {
+            try {
+                int end = RecordingFile.decode(buffer, pos + 1, connection.channels, connection.values);
+                if (end != pos + length) return false;
+            } catch (IndexOutOfBoundsException e) {
+                return false; // a varint ran past the frame
+            }
+            Host host = connection.host;
+            host.snapshot = RecordingFile.toSnapshot(connection.values, pageSize);
+            host.sampleTime = connection.values[RecordingFile.TIME];
+            host.receivedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    private void close(SelectionKey key, Connection connection) {
+        key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // already broken
+        }
+        // a host that reconnected already has a newer connection
+        if (connection.host != null && !hasOtherConnection(connection)) connection.host.connected = false;
+    }
+
+    private boolean hasOtherConnection(Connection closed) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment != closed && attachment instanceof Connection
+                    && ((Connection) attachment).host == closed.host && key.isValid()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
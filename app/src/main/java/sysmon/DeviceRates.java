@@ -0,0 +1,138 @@
+package sysmon;
+
+/**
+ * Per-device rates of one sample, e.g. the received and transmitted bytes per second of every interface.
+ * <p>
+ * Rates are stored in one flat primitive array (device-major, {@link #getFieldCount()} fields per device)
+ * together with their sum over all devices, filled by {@link RateEngine}.
+ */
+public final class DeviceRates {
+
+    // Network fields
+    public static final int RX_BYTES = 0;
+    public static final int TX_BYTES = 1;
+    public static final int RX_PACKETS = 2;
+    public static final int TX_PACKETS = 3;
+    public static final int RX_ERRORS = 4;
+    public static final int RX_DROPS = 5;
+    public static final int TX_ERRORS = 6;
+    public static final int TX_DROPS = 7;
+    public static final int NET_FIELD_COUNT = 8;
+
+    // Disk fields; utilization is the share of time the device had I/O in flight, in percent
+    public static final int READ_BYTES = 0;
+    public static final int WRITE_BYTES = 1;
+    public static final int READ_OPS = 2;
+    public static final int WRITE_OPS = 3;
+    public static final int UTILIZATION = 4;
+    public static final int DISK_FIELD_COUNT = 5;
+
+    private final int fieldCount;
+    private final double[] totals;
+    private final String[] names;
+    private final double[] rates;
+    private int deviceCount;
+
+    DeviceRates(int fieldCount, int deviceCount) {
+        this.fieldCount = fieldCount;
+        this.totals = new double[fieldCount];
+        this.names = new String[deviceCount];
+        this.rates = new double[deviceCount * fieldCount];
+        this.deviceCount = deviceCount;
+    }
+
+    /**
+     * Creates rates that only carry totals, e.g. for a replayed recording.
+     *
+     * @param totals The total of every field.
+     * @return The rates, without devices.
+     */
+    static DeviceRates ofTotals(double... totals) {
+        DeviceRates rates = new DeviceRates(totals.length, 0);
+        System.arraycopy(totals, 0, rates.totals, 0, totals.length);
+        return rates;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    /**
+     * Returns the name of a device, such as "eth0" or "nvme0n1".
+     *
+     * @param device The device index.
+     * @return The name.
+     */
+    public String getName(int device) {
+        return names[device];
+    }
+
+    /**
+     * Returns the index of a device.
+     *
+     * @param name The device name.
+     * @return The index, or -1 if the device is not in this sample.
+     */
+    public int indexOf(String name) {
+        for (int d = 0; d < deviceCount; d++) {
+            if (names[d].equals(name)) return d;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a field of a single device.
+     *
+     * @param device The device index.
+     * @param field  The field, e.g. {@link #TX_BYTES}.
+     * @return The rate per second, or the percentage for {@link #UTILIZATION}.
+     */
+    public double get(int device, int field) {
+        return rates[device * fieldCount + field];
+    }
+
+    /**
+     * Returns a field summed over all devices.
+     *
+     * @param field The field, e.g. {@link #WRITE_OPS}.
+     * @return The total.
+     */
+    public double getTotal(int field) {
+        return totals[field];
+    }
+
+    // ========================= Fill Functions ========================= //
+
+    /**
+     * Sets how many of the devices the instance was created with are in the sample, e.g. fewer when an `iostat`
+     * line has fewer columns than its header.
+     *
+     * @param count The number of devices, at most the number the instance was created with.
+     */
+    void setDeviceCount(int count) {
+        deviceCount = count;
+    }
+
+    void setName(int device, String name) {
+        names[device] = name;
+    }
+
+    void set(int device, int field, double rate) {
+        rates[device * fieldCount + field] = rate;
+    }
+
+    /**
+     * Sums the device rates into the totals once all devices are set.
+     */
+    void sumTotals() {
+        for (int f = 0; f < fieldCount; f++) {
+            double total = 0;
+            for (int d = 0; d < deviceCount; d++) total += rates[d * fieldCount + f];
+            totals[f] = total;
+        }
+    }
+}
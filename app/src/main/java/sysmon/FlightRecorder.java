@@ -0,0 +1,278 @@
+package sysmon;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Samples CPU, disk and network at a high rate into a fixed-size in-memory ring and, when a trigger fires,
+ * dumps the seconds before and after it to a recording, so the sub-second spikes that one-second samples smear
+ * out can be looked at afterwards with `--replay` at 100ms resolution.
+ * <p>
+ * The sampler runs on a thread of its own with a procfs collector of its own, so its short intervals leave the
+ * rates of the regular collectors alone. Every sample is kept as the channel values of a {@link RecordingFile}
+ * record, with the memory channels copied from the latest regular snapshot. The ring holds the window before
+ * and after a trigger plus some slack and is shared without locks: the sampler fills a slot and then publishes
+ * it by advancing a volatile sequence, and the dump thread copies the slots and afterwards drops the ones the
+ * sampler may have overwritten meanwhile. A trigger is an {@link AlertRule} on a cpu, disk or net metric,
+ * evaluated on every sample, or a key press. The dump is written once the window after the trigger has been
+ * sampled; triggers while one is pending are ignored.
+ */
+public final class FlightRecorder {
+
+    // Room in the ring beyond the two windows, for the time it takes the dump thread to copy them
+    private static final long SLACK_MILLIS = 2000;
+
+    private final ProcfsCollector procfs;
+    private final long pageSize;
+    private final AlertRule[] triggers;
+    private final Path directory;
+    private final long intervalMillis;
+    private final long windowMillis;
+    private final boolean echo;
+
+    // Ring of samples, CHANNEL_COUNT values per slot; written is the sequence number of the next slot
+    private final int capacity;
+    private final long[] ring;
+    private final long[] scratch = new long[RecordingFile.CHANNEL_COUNT];
+    private volatile long written = 0;
+
+    // Time of the pending trigger, -1 when there is none; set by any thread, cleared by the dump thread
+    private final AtomicLong triggeredAt = new AtomicLong(-1);
+    private volatile String triggerReason = "";
+    private long dumpStartedFor = -1;
+    private boolean primed = false;
+
+    private Supplier<SystemSnapshot> snapshots;
+    private volatile String status;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates a recorder; sampling starts with {@link #start}.
+     *
+     * @param procfs         A procfs collector used by nothing else, so its rates span exactly one interval.
+     * @param pageSize       The system page size, used to store memory statistics in bytes.
+     * @param triggers       The rules that dump the ring when they fire, see {@link #parseTrigger}.
+     * @param directory      The directory the dumps are written to.
+     * @param intervalMillis The sampling interval in milliseconds, e.g. 10.
+     * @param windowMillis   How much to dump before and after a trigger, in milliseconds.
+     * @param echo           Whether to also print triggers and dumps to stderr, e.g. when there is no terminal UI.
+     */
+    public FlightRecorder(ProcfsCollector procfs, long pageSize, List<AlertRule> triggers, Path directory,
+                          long intervalMillis, long windowMillis, boolean echo) {
+        this.procfs = procfs;
+        this.pageSize = pageSize;
+        this.triggers = triggers.toArray(new AlertRule[0]);
+        this.directory = directory;
+        this.intervalMillis = intervalMillis;
+        this.windowMillis = windowMillis;
+        this.echo = echo;
+        this.capacity = (int) ((2 * windowMillis + SLACK_MILLIS) / intervalMillis) + 1;
+        this.ring = new long[capacity * RecordingFile.CHANNEL_COUNT];
+        this.status = "flight " + intervalMillis + "ms";
+    }
+
+    /**
+     * Parses a trigger, an alert rule on a metric the recorder samples.
+     *
+     * @param line The rule, e.g. "cpu_spike cpu > 90".
+     * @return The rule.
+     * @throws IllegalArgumentException If the line is not a valid rule or its metric is not a cpu, disk or net one.
+     */
+    public static AlertRule parseTrigger(String line) {
+        AlertRule rule = AlertRule.parse(line);
+        if (rule.source == AlertRule.MEMORY || rule.source == AlertRule.MEMORY_BYTES) {
+            throw new IllegalArgumentException("flight triggers take cpu, disk and net metrics: " + rule.getMetric());
+        }
+        return rule;
+    }
+
+    /**
+     * Starts sampling on a thread of its own.
+     *
+     * @param snapshots The source of the latest regular snapshot, e.g. the scheduler.
+     */
+    public void start(Supplier<SystemSnapshot> snapshots) {
+        this.snapshots = snapshots;
+        running = true;
+        thread = new Thread(() -> {
+            Ticker ticker = new Ticker(intervalMillis);
+            while (running) {
+                try {
+                    ticker.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    sample(System.currentTimeMillis());
+                } catch (IOException e) {
+                    status = "flight: " + e.getMessage();
+                }
+            }
+        }, "flight-recorder");
+        thread.setDaemon(true);
+        thread.start();
+        if (echo) {
+            System.err.println("Flight recorder sampling every " + intervalMillis + "ms, dumping to " + directory);
+        }
+    }
+
+    /**
+     * Stops sampling; a dump that is being written is finished.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Fires the recorder by hand, e.g. on a key press.
+     */
+    public void trigger() {
+        trigger(System.currentTimeMillis(), "key");
+    }
+
+    /**
+     * Returns what the recorder is doing, for the status line.
+     *
+     * @return The status, e.g. "flight 10ms" or "dumped " and the name of the last dump.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    // ========================= Sampling Functions ========================= //
+
+    /**
+     * Takes one sample into the ring, evaluates the triggers on it and starts the dump when the window after
+     * a trigger is complete.
+     *
+     * @param now The time of the sample in milliseconds.
+     * @throws IOException If procfs cannot be read.
+     */
+    private void sample(long now) throws IOException {
+        CpuBreakdown cpu = procfs.sampleCpu();
+        DeviceRates disk = procfs.sampleDisk();
+        DeviceRates net = procfs.sampleNetwork();
+        if (!primed) {
+            primed = true; // the first rates cover the time since boot
+            return;
+        }
+
+        long[] values = scratch;
+        RecordingFile.toValues(snapshots.get(), now, pageSize, values);
+        values[RecordingFile.CPU] = Math.round(cpu.getTotal(CpuBreakdown.BUSY) * 100);
+        values[RecordingFile.DISK_READ] = (long) disk.getTotal(DeviceRates.READ_BYTES);
+        values[RecordingFile.DISK_WRITE] = (long) disk.getTotal(DeviceRates.WRITE_BYTES);
+        values[RecordingFile.DISK_READ_OPS] = Math.round(disk.getTotal(DeviceRates.READ_OPS));
+        values[RecordingFile.DISK_WRITE_OPS] = Math.round(disk.getTotal(DeviceRates.WRITE_OPS));
+        values[RecordingFile.NET_IN] = (long) net.getTotal(DeviceRates.RX_BYTES);
+        values[RecordingFile.NET_OUT] = (long) net.getTotal(DeviceRates.TX_BYTES);
+        values[RecordingFile.NET_RX_PACKETS] = Math.round(net.getTotal(DeviceRates.RX_PACKETS));
+        values[RecordingFile.NET_TX_PACKETS] = Math.round(net.getTotal(DeviceRates.TX_PACKETS));
+
+        // fill the slot, then publish it
+        long sequence = written;
+        System.arraycopy(values, 0, ring, (int) (sequence % capacity) * RecordingFile.CHANNEL_COUNT,
+                RecordingFile.CHANNEL_COUNT);
+        written = sequence + 1;
+        // the stores into the next slot must not become visible before this one is published, see dump
+        VarHandle.storeStoreFence();
+
+        for (AlertRule rule : triggers) {
+            if (rule.update(value(rule, cpu, disk, net), now) == AlertRule.FIRED) trigger(now, rule.getName());
+        }
+
+        long at = triggeredAt.get();
+        if (at >= 0 && at != dumpStartedFor && now >= at + windowMillis) {
+            dumpStartedFor = at;
+            Thread dumper = new Thread(() -> dump(at), "flight-dump");
+            dumper.setDaemon(true);
+            dumper.start();
+        }
+    }
+
+    /**
+     * Reads the metric of a trigger from the latest sample.
+     */
+    private static double value(AlertRule rule, CpuBreakdown cpu, DeviceRates disk, DeviceRates net) {
+        switch (rule.source) {
+            case AlertRule.CPU:
+                return cpu.getTotal(CpuBreakdown.BUSY);
+            case AlertRule.CPU_MODE:
+                return cpu.getTotal(rule.field);
+            case AlertRule.DISK:
+                return AlertEngine.deviceValue(disk, rule);
+            default:
+                return AlertEngine.deviceValue(net, rule);
+        }
+    }
+
+    private void trigger(long now, String reason) {
+        if (!triggeredAt.compareAndSet(-1, now)) return;
+        triggerReason = reason;
+        status = "flight: " + reason + " fired, capturing";
+        if (echo) System.err.println("Flight recorder triggered by " + reason);
+    }
+
+    // ========================= Dump Functions ========================= //
+
+    /**
+     * Copies the window around a trigger out of the ring and writes it to a new recording in the dump directory.
+     *
+     * @param at The time of the trigger in milliseconds.
+     */
+    private void dump(long at) {
+        int channels = RecordingFile.CHANNEL_COUNT;
+        long end = written;
+        long start = Math.max(0, end - capacity);
+        long[] copy = new long[(int) (end - start) * channels];
+        for (long s = start; s < end; s++) {
+            System.arraycopy(ring, (int) (s % capacity) * channels, copy, (int) (s - start) * channels, channels);
+        }
+        // the sampler may have overwritten the oldest slots while they were copied, up to the one it is filling;
+        // the fence keeps the plain reads of the copy before the second read of written, as StampedLock.validate
+        VarHandle.acquireFence();
+        long firstValid = Math.max(start, written + 1 - capacity);
+
+        long[] values = new long[channels];
+        int records = 0;
+        try {
+            Path path = dumpPath(at);
+            try (RecordingFile.Writer writer = RecordingFile.Writer.open(path)) {
+                for (long s = firstValid; s < end; s++) {
+                    System.arraycopy(copy, (int) (s - start) * channels, values, 0, channels);
+                    long time = values[RecordingFile.TIME];
+                    if (time < at - windowMillis || time > at + windowMillis) continue;
+                    writer.append(values);
+                    records++;
+                }
+            }
+            status = "dumped " + path.getFileName();
+            if (echo) System.err.println("Flight recorder dumped " + records + " samples around " + triggerReason
+                    + " to " + path);
+        } catch (IOException e) {
+            status = "flight: dump failed, " + e.getMessage();
+            if (echo) System.err.println("Error writing flight recorder dump: " + e.getMessage());
+        } finally {
+            triggeredAt.compareAndSet(at, -1);
+        }
+    }
+
+    /**
+     * Names a dump after the time of its trigger, e.g. "flight-20250101-120000.rec", without reusing a name.
+     */
+    private Path dumpPath(long at) throws IOException {
+        Files.createDirectories(directory);
+        String name = String.format("flight-%tY%<tm%<td-%<tH%<tM%<tS", new Date(at));
+        Path path = directory.resolve(name + ".rec");
+        for (int i = 2; Files.exists(path); i++) path = directory.resolve(name + "-" + i + ".rec");
+        return path;
+    }
+}
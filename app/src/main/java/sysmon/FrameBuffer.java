@@ -0,0 +1,143 @@
+package sysmon;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.screen.Screen;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Cell cache in front of a Lanterna {@link Screen} that only forwards cells whose glyph or color changed.
+ * <p>
+ * Static chrome is drawn once after {@link #reset()}; every later frame re-issues the dynamic widgets and
+ * the buffer drops the writes that would not change anything. Changed cells are counted per frame, and
+ * {@link #flush()} skips the screen refresh entirely when nothing changed. A space is treated as unchanged
+ * regardless of its foreground color, since only the (fixed) background is visible.
+ */
+public final class FrameBuffer {
+
+    private final Screen screen;
+    private final TextColor background;
+    private TextGraphics tg;
+    private TextColor foreground;
+
+    private int columns;
+    private int rows;
+    private char[] chars;
+    private TextColor[] colors;
+
+    // Cells changed since the last flush
+    private int changedCells = 0;
+    private boolean fullRefresh = true;
+
+    /**
+     * Creates a frame buffer for a started screen.
+     *
+     * @param screen     The screen to draw on.
+     * @param background The background color of every cell.
+     */
+    public FrameBuffer(Screen screen, TextColor background) {
+        this.screen = screen;
+        this.background = background;
+        reset();
+    }
+
+    /**
+     * Clears the screen and forgets all cached cells, e.g. after a resize. Static chrome must be drawn again.
+     */
+    public void reset() {
+        screen.clear();
+        TerminalSize size = screen.getTerminalSize();
+        columns = size.getColumns();
+        rows = size.getRows();
+        chars = new char[columns * rows];
+        colors = new TextColor[columns * rows];
+        Arrays.fill(chars, ' ');
+        tg = screen.newTextGraphics();
+        tg.setBackgroundColor(background);
+        foreground = null;
+        changedCells = 0;
+        fullRefresh = true;
+    }
+
+    /**
+     * Sets the color used by the following writes.
+     *
+     * @param color The foreground color.
+     */
+    public void setForegroundColor(TextColor color) {
+        this.foreground = color;
+    }
+
+    /**
+     * Writes a string, forwarding only the characters that differ from what is on screen.
+     *
+     * @param x The column of the first character.
+     * @param y The row.
+     * @param s The text to write.
+     */
+    public void putString(int x, int y, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            put(x + i, y, s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a string padded with spaces to a fixed width, so shorter values erase longer previous ones.
+     *
+     * @param x     The column of the first character.
+     * @param y     The row.
+     * @param s     The text to write.
+     * @param width The width of the field.
+     */
+    public void putString(int x, int y, String s, int width) {
+        for (int i = 0; i < width; i++) {
+            put(x + i, y, i < s.length() ? s.charAt(i) : ' ');
+        }
+    }
+
+    /**
+     * Writes a single cell if its glyph or color changed.
+     *
+     * @param x The column.
+     * @param y The row.
+     * @param c The glyph.
+     */
+    public void put(int x, int y, char c) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) return;
+        int i = y * columns + x;
+        if (chars[i] == c && (c == ' ' || foreground.equals(colors[i]))) return;
+
+        chars[i] = c;
+        colors[i] = foreground;
+        tg.setForegroundColor(foreground);
+        tg.setCharacter(x, y, c);
+        changedCells++;
+    }
+
+    /**
+     * Pushes the changed cells to the terminal, or does nothing if the frame changed no cell.
+     * The first flush after {@link #reset()} repaints the whole terminal.
+     *
+     * @return True if the screen was refreshed.
+     * @throws IOException If the terminal cannot be written.
+     */
+    public boolean flush() throws IOException {
+        if (changedCells == 0 && !fullRefresh) return false;
+        screen.refresh(fullRefresh ? Screen.RefreshType.COMPLETE : Screen.RefreshType.DELTA);
+        changedCells = 0;
+        fullRefresh = false;
+        return true;
+    }
+
+    /**
+     * Returns the number of cells changed since the last flush.
+     *
+     * @return The changed cell count.
+     */
+    public int getChangedCells() {
+        return changedCells;
+    }
+}
@@ -0,0 +1,82 @@
+package sysmon;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear histogram of non-negative long values, e.g. latencies in nanoseconds.
+ * <p>
+ * Every power of two is split into 8 linear sub-buckets, so a reported percentile is at most 12.5% above
+ * the true value, and the whole long range fits into 488 counters allocated up front. Recording is a few
+ * arithmetic operations and one atomic increment, safe from any thread and free of allocation; readers
+ * see a consistent enough view without locking.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value; negative values are recorded as zero.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(LogLinearBuckets.bucket(value, SUB_BITS));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            // retry against the newer maximum
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, or 0 when nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns an upper bound of the value below which the given share of the recorded values falls.
+     *
+     * @param quantile The quantile, e.g. 0.99.
+     * @return The value, or 0 when nothing was recorded.
+     */
+    public long getQuantile(double quantile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    private static long upperBound(int bucket) {
+        return LogLinearBuckets.lowerBound(bucket, SUB_BITS) + LogLinearBuckets.width(bucket, SUB_BITS) - 1;
+    }
+}
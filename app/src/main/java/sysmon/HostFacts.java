@@ -0,0 +1,295 @@
+package sysmon;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facts about the host that do not change from tick to tick: total memory, page size, CPU count,
+ * network interfaces and block devices.
+ * <p>
+ * Everything is discovered once at startup from in-process sources (procfs/sysfs, the
+ * OperatingSystemMXBean, {@link NetworkInterface}); no command is forked unless all of them fail.
+ * Reflection is only a fallback too, as it costs tens of milliseconds of a one-shot run's startup.
+ * A background thread watches `/sys/class/net` and `/sys/block` and re-lists them only when an
+ * interface or device appears or disappears, bumping {@link #getGeneration()}. Since not every
+ * sysfs mount delivers inotify events, the watcher also re-checks the listings every 30 seconds.
+ * Readers only load volatile fields, so the steady-state tick does no discovery work.
+ */
+public final class HostFacts {
+
+    private static final Path PROC_MEMINFO = Paths.get("/proc/meminfo");
+    private static final Path SYS_CLASS_NET = Paths.get("/sys/class/net");
+    private static final Path SYS_BLOCK = Paths.get("/sys/block");
+    private static final Path PROC_SELF_AUXV = Paths.get("/proc/self/auxv");
+    private static final long AT_NULL = 0;
+    private static final long AT_PAGESZ = 6;
+    private static final long RESCAN_SECONDS = 30;
+
+    private final long totalMemory;
+    private final long pageSize;
+    private final int cpuCount;
+    private volatile List<String> networkInterfaces;
+    private volatile List<String> blockDevices;
+    private volatile int generation = 0;
+
+    private HostFacts(long totalMemory, long pageSize, int cpuCount,
+                      List<String> networkInterfaces, List<String> blockDevices) {
+        this.totalMemory = totalMemory;
+        this.pageSize = pageSize;
+        this.cpuCount = cpuCount;
+        this.networkInterfaces = networkInterfaces;
+        this.blockDevices = blockDevices;
+    }
+
+    /**
+     * Discovers the host facts. Never throws; a fact that cannot be discovered gets a safe fallback.
+     *
+     * @return The discovered facts.
+     */
+    public static HostFacts discover() {
+        return new HostFacts(discoverTotalMemory(), discoverPageSize(), Runtime.getRuntime().availableProcessors(),
+                listNetworkInterfaces(), listBlockDevices());
+    }
+
+    /**
+     * Creates fixed facts, e.g. to parse recorded procfs files of another host.
+     *
+     * @param totalMemory       The total memory in bytes.
+     * @param pageSize          The page size in bytes.
+     * @param cpuCount          The number of CPUs.
+     * @param networkInterfaces The interface names.
+     * @param blockDevices      The whole block device names.
+     * @return The facts, never refreshed.
+     */
+    static HostFacts of(long totalMemory, long pageSize, int cpuCount, List<String> networkInterfaces,
+                        List<String> blockDevices) {
+        return new HostFacts(totalMemory, pageSize, cpuCount, networkInterfaces, blockDevices);
+    }
+
+    /**
+     * Starts the daemon thread that refreshes the interface and device lists on hot-plug.
+     */
+    public void startWatching() {
+        Thread t = new Thread(this::watch, "host-facts-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public long getTotalMemory() {
+        return totalMemory;
+    }
+
+    public long getPageSize() {
+        return pageSize;
+    }
+
+    public int getCpuCount() {
+        return cpuCount;
+    }
+
+    public List<String> getNetworkInterfaces() {
+        return networkInterfaces;
+    }
+
+    public List<String> getBlockDevices() {
+        return blockDevices;
+    }
+
+    /**
+     * Returns a counter that is bumped every time the interface or device lists change,
+     * so callers can cheaply tell whether derived state must be rebuilt.
+     *
+     * @return The current generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    // ========================= Watch Functions ========================= //
+
+    /**
+     * Waits for changes below `/sys/class/net` and `/sys/block` and refreshes the lists when they differ.
+     */
+    private void watch() {
+        WatchService watcher = null;
+        try {
+            watcher = SYS_CLASS_NET.getFileSystem().newWatchService();
+            for (Path dir : new Path[]{SYS_CLASS_NET, SYS_BLOCK}) {
+                if (Files.isDirectory(dir)) {
+                    dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Error watching sysfs, falling back to periodic checks: " + e.getMessage());
+        }
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (watcher != null) {
+                    WatchKey key = watcher.poll(RESCAN_SECONDS, TimeUnit.SECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                } else {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(RESCAN_SECONDS));
+                }
+                refresh();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Re-lists interfaces and devices, publishing new lists only if they changed.
+     */
+    private void refresh() {
+        List<String> interfaces = listNetworkInterfaces();
+        List<String> devices = listBlockDevices();
+        if (!interfaces.equals(networkInterfaces) || !devices.equals(blockDevices)) {
+            networkInterfaces = interfaces;
+            blockDevices = devices;
+            generation++;
+        }
+    }
+
+    // ========================= Discovery Functions ========================= //
+
+    /**
+     * Discovers the total physical memory from `/proc/meminfo`, or from the OperatingSystemMXBean elsewhere.
+     *
+     * @return The total physical memory in bytes.
+     */
+    private static long discoverTotalMemory() {
+        if (Files.isReadable(PROC_MEMINFO)) {
+            try (BufferedReader reader = Files.newBufferedReader(PROC_MEMINFO)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("MemTotal:")) {
+                        return Long.parseLong(line.substring(9).replace("kB", "").trim()) * 1024;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error reading /proc/meminfo: " + e.getMessage());
+            }
+        }
+        OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        return osBean.getTotalMemorySize();
+    }
+
+    /**
+     * Discovers the page size from the auxiliary vector the kernel passed to the JVM, falling back to the JVM
+     * itself, to `getconf PAGESIZE` and finally to 4096.
+     *
+     * @return The page size in bytes.
+     */
+    private static long discoverPageSize() {
+        if (Files.isReadable(PROC_SELF_AUXV)) {
+            try {
+                // pairs of native words, type then value, up to AT_NULL; only 64-bit JVMs yield a sane size
+                ByteBuffer auxv = ByteBuffer.wrap(Files.readAllBytes(PROC_SELF_AUXV)).order(ByteOrder.nativeOrder());
+                while (auxv.remaining() >= 16) {
+                    long type = auxv.getLong();
+                    long value = auxv.getLong();
+                    if (type == AT_NULL) break;
+                    if (type == AT_PAGESZ && value >= 1024 && Long.bitCount(value) == 1) return value;
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading /proc/self/auxv: " + e.getMessage());
+            }
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return ((Number) unsafeClass.getMethod("pageSize").invoke(theUnsafe.get(null))).longValue();
+        } catch (Exception e) {
+            System.err.println("Error getting page size from the JVM: " + e.getMessage());
+        }
+        try {
+            ProcessBuilder pb = new ProcessBuilder("getconf", "PAGESIZE");
+            Process p = pb.start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
+            String line = reader.readLine();
+            reader.close();
+            p.waitFor();
+            if (line != null) {
+                return Long.parseLong(line.trim());
+            }
+        } catch (Exception e) {
+            System.err.println("Error getting page size: " + e.getMessage());
+        }
+        return 4096; // fallback
+    }
+
+    /**
+     * Lists the network interfaces from `/sys/class/net`, or from {@link NetworkInterface} elsewhere.
+     *
+     * @return The sorted interface names.
+     */
+    private static List<String> listNetworkInterfaces() {
+        List<String> interfaces = new ArrayList<>();
+        if (Files.isDirectory(SYS_CLASS_NET)) {
+            interfaces.addAll(listDirectory(SYS_CLASS_NET));
+        } else {
+            try {
+                Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+                while (e != null && e.hasMoreElements()) interfaces.add(e.nextElement().getName());
+            } catch (SocketException e) {
+                System.err.println("Error listing network interfaces: " + e.getMessage());
+            }
+        }
+        Collections.sort(interfaces);
+        return Collections.unmodifiableList(interfaces);
+    }
+
+    /**
+     * Lists the whole block devices from `/sys/block`, skipping loop, ram, zram and device-mapper/md devices
+     * whose I/O is already counted on the underlying disks.
+     *
+     * @return The sorted device names, empty when there is no sysfs.
+     */
+    private static List<String> listBlockDevices() {
+        List<String> devices = new ArrayList<>();
+        for (String name : listDirectory(SYS_BLOCK)) {
+            if (name.startsWith("loop") || name.startsWith("ram") || name.startsWith("zram")
+                    || name.startsWith("dm-") || name.startsWith("md")) continue;
+            devices.add(name);
+        }
+        Collections.sort(devices);
+        return Collections.unmodifiableList(devices);
+    }
+
+    private static List<String> listDirectory(Path dir) {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return names;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) names.add(p.getFileName().toString());
+        } catch (IOException e) {
+            System.err.println("Error listing " + dir + ": " + e.getMessage());
+        }
+        return names;
+    }
+}
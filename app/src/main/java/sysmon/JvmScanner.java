@@ -0,0 +1,372 @@
+package sysmon;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * Samples heap occupancy, garbage collection and threads of the JVMs running on the host, without attaching to
+ * them or opening a JMX connection.
+ * <p>
+ * Every HotSpot JVM (unless started with -XX:-UsePerfData) publishes its performance counters in
+ * `hsperfdata_<user>/<pid>` below the temporary directory: a small file it keeps mapped and updates in place.
+ * The scanner maps each file read-only once and looks up the offsets of the counters it needs in the file's
+ * entry directory; from then on a sample is a handful of reads straight from the shared mapping, with no copy
+ * and no system call. The directories are re-listed every 2 seconds, picking up new JVMs and dropping the ones
+ * that exited. Only JVMs whose files the monitor may read show up, i.e. its own user's unless it runs as root.
+ */
+public final class JvmScanner {
+
+    private static final Path TMP = Paths.get("/tmp");
+    private static final String DIR_PREFIX = "hsperfdata_";
+    private static final long RESCAN_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_JVMS = 256;
+
+    // Prologue of a perf data file; the magic is stored big-endian, everything after it in the JVM's byte order
+    private static final int MAGIC = 0xcafec0c0;
+    private static final int PROLOGUE_BYTE_ORDER = 4;
+    private static final int PROLOGUE_ACCESSIBLE = 7;
+    private static final int PROLOGUE_ENTRY_OFFSET = 24;
+    private static final int PROLOGUE_NUM_ENTRIES = 28;
+    private static final int PROLOGUE_SIZE = 32;
+
+    // Entry header: length, name offset, vector length, type, flags, units, variability, data offset
+    private static final int ENTRY_LENGTH = 0;
+    private static final int ENTRY_NAME_OFFSET = 4;
+    private static final int ENTRY_VECTOR_LENGTH = 8;
+    private static final int ENTRY_DATA_TYPE = 12;
+    private static final int ENTRY_DATA_OFFSET = 16;
+    private static final int ENTRY_HEADER_SIZE = 20;
+    private static final byte TYPE_LONG = 'J';
+    private static final byte TYPE_BYTE = 'B';
+
+    private static final String GENERATION_PREFIX = "sun.gc.generation.";
+    private static final int MAX_SPACES = 16;
+
+    private final List<Path> roots;
+    private final int topN;
+    private final LongPredicate alive;
+
+    // Mapped JVMs by pid, rebuilt at every listing to drop the ones that exited
+    private Map<Long, Entry> entries = new HashMap<>();
+    private long listedAt;
+    private boolean listed = false;
+
+    /**
+     * State of a single JVM between samples: its mapping, the resolved counter offsets and the previous counts.
+     */
+    private static final class Entry {
+        final long pid;
+        final MappedByteBuffer buffer;
+        String name = "java";
+
+        // Absolute offsets of the counters, -1 where the JVM does not have them; resolved for entryCount entries
+        int entryCount = -1;
+        final int[] used = new int[MAX_SPACES];
+        final int[] committed = new int[MAX_SPACES];
+        final int[] max = new int[MAX_SPACES];
+        int usedCount;
+        int committedCount;
+        int maxCount;
+        int youngInvocations = -1;
+        int youngTime = -1;
+        int fullInvocations = -1;
+        int fullTime = -1;
+        int threads = -1;
+        int frequency = -1;
+
+        long sampledAt = 0;
+        long gcCount = 0;
+        long fullGcCount = 0;
+        long gcTicks = 0;
+
+        long heapUsed = 0;
+        long heapCommitted = 0;
+        long heapMax = 0;
+        long threadCount = 0;
+        double gcRate = 0;
+        double fullGcRate = 0;
+        double gcPercent = 0;
+
+        Entry(long pid, MappedByteBuffer buffer) {
+            this.pid = pid;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Creates a scanner over the perf data directories below some temporary directories.
+     *
+     * @param roots The directories holding `hsperfdata_<user>` directories, e.g. `/tmp`.
+     * @param topN  The number of JVMs kept.
+     * @param alive Tells whether a pid still runs, so files left behind by a crashed JVM are skipped.
+     */
+    JvmScanner(List<Path> roots, int topN, LongPredicate alive) {
+        this.roots = roots;
+        this.topN = topN;
+        this.alive = alive;
+    }
+
+    /**
+     * Opens a scanner over the local JVMs, found below `/tmp` and the monitor's own temporary directory.
+     *
+     * @param topN The number of JVMs kept.
+     * @return The scanner.
+     */
+    public static JvmScanner openLocal(int topN) {
+        Set<Path> roots = new LinkedHashSet<>();
+        roots.add(TMP);
+        roots.add(Paths.get(System.getProperty("java.io.tmpdir")));
+        return new JvmScanner(new ArrayList<>(roots), topN, pid -> ProcessHandle.of(pid).isPresent());
+    }
+
+    /**
+     * Samples every known JVM, re-listing the perf data directories when the last listing is 2 seconds old.
+     *
+     * @return The JVMs with the highest share of time in garbage collection.
+     */
+    public synchronized JvmTable scan() {
+        long now = System.nanoTime();
+        if (!listed || now - listedAt >= RESCAN_NANOS) list(now);
+
+        List<JvmTable.Row> rows = new ArrayList<>(entries.size());
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            try {
+                if (sample(e, now)) rows.add(toRow(e));
+            } catch (IndexOutOfBoundsException ex) {
+                it.remove(); // a malformed file, whoever wrote it; mapped again at the next listing
+            }
+        }
+        rows.sort(Comparator.comparingDouble((JvmTable.Row r) -> r.gcPercent)
+                .thenComparingLong(r -> r.heapUsed).reversed());
+        return new JvmTable(rows.subList(0, Math.min(topN, rows.size())).toArray(new JvmTable.Row[0]));
+    }
+
+    // ========================= Scanning Functions ========================= //
+
+    /**
+     * Lists the perf data files, keeping the mappings of the JVMs that still run and mapping new ones.
+     *
+     * @param now The time of this tick in nanoseconds.
+     */
+    private void list(long now) {
+        Map<Long, Entry> next = new HashMap<>();
+        for (Path root : roots) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, DIR_PREFIX + "*")) {
+                for (Path dir : dirs) collectFiles(dir, next);
+            } catch (IOException e) {
+                // no such directory, or not readable
+            }
+        }
+        entries = next; // dropped mappings are released once they are garbage collected
+        listedAt = now;
+        listed = true;
+    }
+
+    private void collectFiles(Path dir, Map<Long, Entry> next) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (next.size() >= MAX_JVMS) return;
+                long pid = parsePid(file.getFileName().toString());
+                if (pid < 0 || next.containsKey(pid) || !alive.test(pid)) continue;
+                Entry e = entries.get(pid);
+                if (e == null) e = map(pid, file);
+                if (e != null) next.put(pid, e);
+            }
+        } catch (IOException e) {
+            // another user's directory
+        }
+    }
+
+    /**
+     * Maps a perf data file read-only and checks its prologue.
+     *
+     * @param pid  The JVM's pid.
+     * @param file The file.
+     * @return The entry, or null if the file cannot be read or is no perf data file.
+     */
+    private static Entry map(long pid, Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < PROLOGUE_SIZE || size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.order(ByteOrder.BIG_ENDIAN).getInt(0) != MAGIC) return null;
+            buffer.order(buffer.get(PROLOGUE_BYTE_ORDER) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            return new Entry(pid, buffer);
+        } catch (IOException e) {
+            return null; // another user's JVM, or it exited
+        }
+    }
+
+    /**
+     * Samples one JVM, resolving its counters again when it added entries since the last lookup.
+     *
+     * @param e   The JVM entry.
+     * @param now The time of this tick in nanoseconds.
+     * @return False if the JVM is not ready to be read yet.
+     */
+    private boolean sample(Entry e, long now) {
+        MappedByteBuffer b = e.buffer;
+        if (b.get(PROLOGUE_ACCESSIBLE) == 0) return false;
+        int entryCount = b.getInt(PROLOGUE_NUM_ENTRIES);
+        if (entryCount != e.entryCount) resolve(e, entryCount);
+
+        long heapUsed = 0;
+        long heapCommitted = 0;
+        long heapMax = 0;
+        for (int i = 0; i < e.usedCount; i++) heapUsed += b.getLong(e.used[i]);
+        for (int i = 0; i < e.committedCount; i++) heapCommitted += b.getLong(e.committed[i]);
+        for (int i = 0; i < e.maxCount; i++) heapMax += b.getLong(e.max[i]);
+        long young = read(b, e.youngInvocations);
+        long full = read(b, e.fullInvocations);
+        long ticks = read(b, e.youngTime) + read(b, e.fullTime);
+        long frequency = read(b, e.frequency);
+
+        if (e.sampledAt != 0) {
+            double seconds = (now - e.sampledAt) / 1_000_000_000.0;
+            if (seconds > 0) {
+                e.gcRate = Math.max(0, young + full - e.gcCount) / seconds;
+                e.fullGcRate = Math.max(0, full - e.fullGcCount) / seconds;
+                e.gcPercent = frequency > 0
+                        ? Math.min(100, Math.max(0, ticks - e.gcTicks) * 100.0 / frequency / seconds) : 0;
+            }
+        }
+        e.gcCount = young + full;
+        e.fullGcCount = full;
+        e.gcTicks = ticks;
+        e.heapUsed = heapUsed;
+        e.heapCommitted = heapCommitted;
+        e.heapMax = heapMax;
+        e.threadCount = read(b, e.threads);
+        e.sampledAt = now;
+        return true;
+    }
+
+    /**
+     * Walks the entry directory of a perf data file and records the offsets of the counters the scanner reads:
+     * the used, committed and maximum size of every heap generation and space, the invocations and time of the
+     * young (collector 0) and full (collector 1) collectors, the live threads, the tick frequency and the command.
+     * Any user may write such a file, so an entry whose name or data lies outside of it stops the walk.
+     *
+     * @param e          The JVM entry.
+     * @param entryCount The number of entries the JVM published.
+     */
+    private static void resolve(Entry e, int entryCount) {
+        MappedByteBuffer b = e.buffer;
+        e.usedCount = 0;
+        e.committedCount = 0;
+        e.maxCount = 0;
+        int pos = b.getInt(PROLOGUE_ENTRY_OFFSET);
+        for (int i = 0; i < entryCount && pos >= PROLOGUE_SIZE && pos <= b.limit() - ENTRY_HEADER_SIZE; i++) {
+            int length = b.getInt(pos + ENTRY_LENGTH);
+            if (length < ENTRY_HEADER_SIZE || length > b.limit() - pos) break;
+            int nameOffset = b.getInt(pos + ENTRY_NAME_OFFSET);
+            int dataOffset = b.getInt(pos + ENTRY_DATA_OFFSET);
+            if (nameOffset < ENTRY_HEADER_SIZE || nameOffset >= length) break;
+            if (dataOffset < ENTRY_HEADER_SIZE || dataOffset >= length) break;
+            int end = pos + length;
+            int data = pos + dataOffset;
+            byte type = b.get(pos + ENTRY_DATA_TYPE);
+            int vectorLength = b.getInt(pos + ENTRY_VECTOR_LENGTH);
+            String name = readName(b, pos + nameOffset, end);
+            pos = end;
+            if (type == TYPE_BYTE && vectorLength > 0 && name.equals("sun.rt.javaCommand")) {
+                e.name = commandName(readName(b, data, end));
+                continue;
+            }
+            if (type != TYPE_LONG || vectorLength != 0 || data > end - Long.BYTES) continue;
+
+            if (name.startsWith(GENERATION_PREFIX)) {
+                if (name.endsWith(".used") && name.contains(".space.") && e.usedCount < MAX_SPACES) {
+                    e.used[e.usedCount++] = data;
+                } else if (name.endsWith(".capacity") && !name.contains(".space.") && e.committedCount < MAX_SPACES) {
+                    e.committed[e.committedCount++] = data;
+                } else if (name.endsWith(".maxCapacity") && !name.contains(".space.") && e.maxCount < MAX_SPACES) {
+                    e.max[e.maxCount++] = data;
+                }
+                continue;
+            }
+            switch (name) {
+                case "sun.gc.collector.0.invocations": e.youngInvocations = data; break;
+                case "sun.gc.collector.0.time": e.youngTime = data; break;
+                case "sun.gc.collector.1.invocations": e.fullInvocations = data; break;
+                case "sun.gc.collector.1.time": e.fullTime = data; break;
+                case "java.threads.live": e.threads = data; break;
+                case "sun.os.hrt.frequency": e.frequency = data; break;
+                default: break;
+            }
+        }
+        e.entryCount = entryCount;
+    }
+
+    private static JvmTable.Row toRow(Entry e) {
+        return new JvmTable.Row(e.pid, e.name, e.heapUsed, e.heapCommitted, e.heapMax, e.gcRate, e.fullGcRate,
+                e.gcPercent, e.threadCount);
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    private static long read(MappedByteBuffer b, int offset) {
+        return offset >= 0 ? b.getLong(offset) : 0;
+    }
+
+    /**
+     * Reads a NUL-terminated ASCII string from a mapping; only done while resolving.
+     *
+     * @param b     The mapping.
+     * @param pos   The position of the first byte.
+     * @param limit The end of the entry holding the string, which ends there at the latest.
+     * @return The string.
+     */
+    private static String readName(MappedByteBuffer b, int pos, int limit) {
+        int end = pos;
+        while (end < limit && b.get(end) != 0) end++;
+        byte[] bytes = new byte[end - pos];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = b.get(pos + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Shortens a JVM's command line to what identifies it: the jar's file name, or the main class without its
+     * package.
+     *
+     * @param command The `sun.rt.javaCommand` value, e.g. "org.example.Main --port 80" or "/opt/app.jar".
+     * @return The short name.
+     */
+    static String commandName(String command) {
+        int space = command.indexOf(' ');
+        String main = space < 0 ? command : command.substring(0, space);
+        if (main.isEmpty()) return "java";
+        if (main.endsWith(".jar")) return main.substring(main.lastIndexOf('/') + 1);
+        return main.substring(main.lastIndexOf('.') + 1);
+    }
+
+    private static long parsePid(String name) {
+        if (name.isEmpty() || name.length() > 10) return -1;
+        long pid = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            pid = pid * 10 + (c - '0');
+        }
+        return pid;
+    }
+}
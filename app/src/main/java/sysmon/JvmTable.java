@@ -0,0 +1,50 @@
+package sysmon;
+
+/**
+ * Immutable result of a {@link JvmScanner} pass: the local JVMs that spend the most time collecting garbage.
+ */
+public final class JvmTable {
+
+    private final Row[] top;
+
+    /**
+     * A single JVM row. Sizes are in bytes; the maximum is 0 where the JVM does not publish it.
+     */
+    public static final class Row {
+        public final long pid;
+        public final String name;
+        public final long heapUsed;
+        public final long heapCommitted;
+        public final long heapMax;
+        public final double gcRate;
+        public final double fullGcRate;
+        public final double gcPercent;
+        public final long threads;
+
+        Row(long pid, String name, long heapUsed, long heapCommitted, long heapMax, double gcRate, double fullGcRate,
+            double gcPercent, long threads) {
+            this.pid = pid;
+            this.name = name;
+            this.heapUsed = heapUsed;
+            this.heapCommitted = heapCommitted;
+            this.heapMax = heapMax;
+            this.gcRate = gcRate;
+            this.fullGcRate = fullGcRate;
+            this.gcPercent = gcPercent;
+            this.threads = threads;
+        }
+    }
+
+    JvmTable(Row[] top) {
+        this.top = top;
+    }
+
+    /**
+     * Returns the JVMs with the highest share of time in garbage collection, then the largest heaps.
+     *
+     * @return The rows, at most the scanner's top-N.
+     */
+    public Row[] getTop() {
+        return top;
+    }
+}
@@ -0,0 +1,2471 @@
+package sysmon;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+public class LanternaSystemMonitor {
+
+    // Constants
+    private static final int GRAPH_WIDTH = 30;
+    private static final int BAR_HEIGHT = 5;
+    private static final int STATS_X = 2;
+    private static final int STATS_Y = 14;
+    private static final int STATS_WIDTH = 36;
+    private static final int STATUS_WIDTH = 40;
+    private static final int HEATMAP_HEIGHT = 4;
+    private static final int HEATMAP_WIDTH = 70;
+    private static final int PROCESS_ROWS = 5;
+    private static final String PROCESS_HEADER_FORMAT = "%6s %-14s %6s %9s %9s %9s";
+    private static final String CGROUP_HEADER_FORMAT = "%-16s %6s %9s %9s %9s %9s %6s";
+    private static final String INTERFACE_HEADER_FORMAT = "%-16s %9s %9s %9s %9s %9s";
+    private static final String SELF_HEADER_FORMAT = "%-16s %9s %11s %11s %11s";
+    private static final String JVM_HEADER_FORMAT = "%7s %-16s %9s %9s %6s %6s %5s %5s";
+    private static final int SELF_ROWS = 12;
+    private static final double SELF_CPU_BUDGET = 2.0; // percent of one core, smoothed over recent ticks
+    private static final HostFacts hostFacts = HostFacts.discover();
+    private static final long PAGE_SIZE = hostFacts.getPageSize();
+    private static final String USAGE = "usage: LanternaSystemMonitor [--record <file>] [--listen <port>]"
+            + " [--agent <host:port> [--name <name>]] | [--replay <file> [--speed <factor>]] | [--dashboard <port>]"
+            + "\n       [--alerts <file>] [--alert <rule>]... [--alert-log <file>] [--alert-exec <command>]"
+            + "\n       [--interval <ms>] [--adaptive] [--refresh <ms>]"
+            + "\n       [--flight <dir> [--flight-trigger <rule>]... [--flight-interval <ms>] [--flight-window <s>]]"
+            + "\n   or: LanternaSystemMonitor --once | --count <n> [--interval <ms>] [--format json|csv]"
+            + " [--metrics <list>]";
+    private static final int ALERT_ROWS = 3;
+    private static final long ADAPTIVE_MIN_MILLIS = 100;
+    private static final long ADAPTIVE_MAX_MILLIS = 5000;
+    private static final int QUANTILE_CPU = 0;
+    private static final int QUANTILE_MEMORY = 1;
+    private static final int QUANTILE_DISK = 2;
+    private static final int QUANTILE_NET_IN = 3;
+    private static final int QUANTILE_NET_OUT = 4;
+    private static final int QUANTILE_COUNT = 5;
+    private static final String QUANTILE_FORMAT = "%-10s%6s%6s%6s%6s";
+    private static final int SATURATION_CPU = 0;
+    private static final int SATURATION_MEMORY_FULL = 1;
+    private static final int SATURATION_MEMORY_SOME = 2;
+    private static final int SATURATION_IO_FULL = 3;
+    private static final int SATURATION_IO_SOME = 4;
+    private static final int SATURATION_FAULTS = 5;
+    private static final int SATURATION_SWAP = 6;
+    private static final int SATURATION_RUN_QUEUE = 7;
+    private static final int SATURATION_COUNT = 8;
+    private static final double PAGING_CHART_MAX = 1000.0; // faults or pages per second
+    private static final double TCP_CHART_MAX = 100.0; // segments or packets per second
+    private static final int DASHBOARD_ROWS = 30;
+    private static final int SPARKLINE_WIDTH = 20;
+    private static final long AGENT_STALE_MILLIS = 5000;
+    private static final char[] SPARKS = {'▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+    private static final DecimalFormat df = new DecimalFormat("#.##");
+
+    // Histories for tracking stats; the dashboard points them at the histories of the host it drills into
+    private static MetricHistory cpuHistory = new MetricHistory();
+    private static MetricHistory memoryHistory = new MetricHistory();
+    private static MetricHistory diskReadHistory = new MetricHistory();
+    private static MetricHistory diskWriteHistory = new MetricHistory();
+    private static MetricHistory netInHistory = new MetricHistory();
+    private static MetricHistory netOutHistory = new MetricHistory();
+
+    // Resolution shown by the history charts, cycled with 't'
+    private static int chartTier = MetricHistory.TIER_1S;
+
+    // Percentiles of the bar metrics over the window of every chart resolution, indexed like QUANTILE_CPU; the
+    // window shown follows the charts and is cycled on its own with 'w'
+    private static QuantileWindows[] quantiles = newQuantiles();
+    private static int quantileTier = MetricHistory.TIER_1S;
+
+    // Snapshot shown by the stats panel, so it is only redrawn when a collector published
+    private static SystemSnapshot lastDrawnSnapshot;
+
+    // Host facts generation shown in the title bar, so it is only redrawn after a hot-plug
+    private static int drawnHostGeneration = -1;
+
+    // Field shown by the per-core heatmap, cycled with 'c', and the breakdown it last drew
+    private static int heatmapField = CpuBreakdown.BUSY;
+    private static CpuBreakdown drawnBreakdown;
+    private static int drawnHeatmapField = -1;
+
+    // Process table sort key and the table last drawn with it
+    private static int processSortKey = ProcessTable.BY_CPU;
+    private static ProcessTable drawnProcesses;
+    private static int drawnProcessSortKey = -1;
+
+    // Whether the process box shows cgroups instead, toggled with 'g', their sort key and the table last drawn
+    private static boolean cgroupView = false;
+    private static int cgroupSortKey = CgroupTable.BY_CPU;
+    private static CgroupTable drawnCgroups;
+    private static int drawnCgroupSortKey = -1;
+    private static double drawnCpuLimit = -1;
+    private static long drawnMemoryLimit = -1;
+
+    // Replay position, speed and pause state, changed with '+', '-' and space
+    private static boolean replaying = false;
+    private static long replayClock = 0;
+    private static long replayShownTime = 0;
+    private static double replaySpeed = 1.0;
+    private static boolean replayPaused = false;
+    private static boolean replayHasRecord = false;
+
+    // Dashboard selection and scroll position, moved with the arrow keys, and the host drilled into with enter
+    private static int dashboardSelected = 0;
+    private static int dashboardScroll = 0;
+    private static DashboardServer.Host dashboardHost;
+
+    // Per-device histories for the drill-down charts, {read, write} or {rx, tx} keyed by disk or interface name
+    private static final Map<String, MetricHistory[]> diskDeviceHistories = new HashMap<>();
+    private static final Map<String, MetricHistory[]> netDeviceHistories = new HashMap<>();
+
+    // Device shown by the disk and network charts, null for the total; cycled with 'b' and 'n'
+    private static String diskDevice;
+    private static String netDevice;
+
+    // Whether the charts and the percentiles show saturation instead of utilization, toggled with 's', and the
+    // histories of the saturation signals, indexed like SATURATION_CPU; "some" is stored without "full" so the
+    // two stack to the kernel's "some"
+    private static boolean saturationView = false;
+    private static final MetricHistory[] saturationHistories = newHistories(SATURATION_COUNT);
+
+    // Whether the network health view is shown, toggled with 'h': TCP counters and connection states in place of
+    // the process table, interface errors and drops in place of the heatmap, and retransmits and drops charted
+    // in place of disk i/o; the stats and interfaces it last drew, and the histories of its chart
+    private static boolean netHealthView = false;
+    private static TcpStats drawnTcp;
+    private static DeviceRates drawnInterfaces;
+    private static final MetricHistory tcpRetransHistory = new MetricHistory();
+    private static final MetricHistory tcpDropHistory = new MetricHistory();
+
+    // Whether the process box shows the local JVMs instead, toggled with 'j', and the table last drawn
+    private static boolean jvmView = false;
+    private static JvmTable drawnJvms;
+    private static final int[] interfaceOrder = new int[HEATMAP_HEIGHT];
+
+    // Debug panel with the monitor's own costs, shown in place of the heatmap and process table
+    private static boolean selfPanel = false;
+
+    // Alert rules evaluated on every sample, null when none were given
+    private static AlertEngine alerts;
+
+    // High-frequency recorder dumping the seconds around a trigger or an 'f' key press, null unless --flight is given
+    private static FlightRecorder flightRecorder;
+
+    // How often the collectors sample, set with --interval and --adaptive, and how often frames are drawn, 0 for
+    // the default of the mode, set with --refresh
+    private static SamplingPolicy samplingPolicy = SamplingPolicy.fixed(1000);
+    private static long refreshMillis = 0;
+
+    // Color scheme
+    private static final TextColor BG_COLOR = new TextColor.RGB(10, 10, 10);
+    private static final TextColor TEXT_COLOR = new TextColor.RGB(180, 180, 180);
+    private static final TextColor BORDER_COLOR = new TextColor.RGB(70, 120, 140);
+    private static final TextColor TITLE_COLOR = new TextColor.RGB(120, 200, 220);
+    private static final TextColor BAR_LOW = new TextColor.RGB(50, 120, 50);
+    private static final TextColor BAR_MED = new TextColor.RGB(200, 180, 50);
+    private static final TextColor BAR_HIGH = new TextColor.RGB(180, 50, 50);
+
+    // Buffer
+    private static InputStream iostatStream;
+    private static boolean iostatInitialized = false;
+    private static String[] iostatDisks = new String[0];
+
+    // Reused output buffers of the forking sources, one per collector thread
+    private static final ByteTokenizer vmStatTokenizer = new ByteTokenizer(4096);
+    private static final ByteTokenizer netstatTokenizer = new ByteTokenizer(8192);
+    private static final ByteTokenizer iostatTokenizer = new ByteTokenizer(256);
+
+    // vm_stat keys, matched against the raw bytes of each line
+    private static final byte[] VM_FREE = ascii("Pages free:");
+    private static final byte[] VM_ACTIVE = ascii("Pages active:");
+    private static final byte[] VM_INACTIVE = ascii("Pages inactive:");
+    private static final byte[] VM_WIRED = ascii("Pages wired down:");
+    private static final byte[] VM_COMPRESSED = ascii("Pages occupied by compressor:");
+    private static final byte[] VM_FILE_BACKED = ascii("File-backed pages:");
+    private static final byte[] VM_ANONYMOUS = ascii("Anonymous pages:");
+    private static final byte[] LINK_PREFIX = ascii("<Link#");
+    private static final byte[] LOOPBACK_PREFIX = ascii("lo");
+
+    // Per-interface counters of the `netstat -ib` fallback
+    private static final RateEngine netstatRates = new RateEngine(1, 1, 1, 1, 1, 1, 1, 1);
+
+    // Linux procfs backend, null when the host has no procfs (macOS)
+    private static final ProcfsCollector procfs = ProcfsCollector.openIfAvailable(hostFacts);
+
+    // Linux TCP/IP backend, null without procfs
+    private static final TcpCollector tcpCollector = TcpCollector.openIfAvailable(hostFacts);
+
+    // Top-N process scanner, null when the host has no per-process procfs; samples at most 1024 new pids per tick
+    private static final ProcessScanner processScanner = ProcessScanner.isAvailable()
+            ? new ProcessScanner(PROCESS_ROWS, 1024, PAGE_SIZE) : null;
+
+    // Cgroup v2 scanner, null on cgroup v1 hosts and macOS
+    private static final CgroupScanner cgroupScanner = CgroupScanner.openIfAvailable(PROCESS_ROWS);
+
+    // Scanner of the local JVMs' performance data files
+    private static final JvmScanner jvmScanner = JvmScanner.openLocal(PROCESS_ROWS);
+
+    /**
+     * Main entry point for the system monitor application.
+     * Without arguments, initializes the terminal and continuously updates system stats while handling user input.
+     * `--record <file>` samples headless into a recording, `--listen <port>` serves the stats to Prometheus
+     * without a terminal, `--agent <host:port>` streams them to a dashboard, and `--replay <file> [--speed N]`
+     * plays a recording back in the UI. `--dashboard <port>` shows the hosts of every agent streaming to it.
+     * `--alerts <file>` and `--alert <rule>` add alert rules to any mode but the dashboard, logged to
+     * `--alert-log <file>` and acted on by `--alert-exec <command>`. `--interval <ms>` sets the sampling interval,
+     * `--adaptive` lets it follow how fast the metrics change and `--refresh <ms>` sets the frame interval.
+     * `--flight <dir>` runs the flight recorder next to any live mode, sampling every `--flight-interval <ms>`
+     * and dumping `--flight-window <s>` before and after every `--flight-trigger <rule>` that fires into the
+     * directory. `--once` and `--count <n>` print samples for scripts instead, see {@link OneShot}; the jar
+     * starts those through {@link Launcher} without loading this class.
+     *
+     * @param args Command-line arguments.
+     */
+    public static void main(String[] args) {
+        if (OneShot.isRequested(args)) {
+            OneShot.main(args);
+            return;
+        }
+        String recordFile = null;
+        String replayFile = null;
+        double speed = 1.0;
+        int listenPort = -1;
+        InetSocketAddress agentTarget = null;
+        String agentName = null;
+        int dashboardPort = -1;
+        List<AlertRule> alertRules = new ArrayList<>();
+        Path alertLog = null;
+        String alertCommand = null;
+        long intervalMillis = 1000;
+        boolean adaptive = false;
+        Path flightDirectory = null;
+        List<AlertRule> flightTriggers = new ArrayList<>();
+        long flightIntervalMillis = 10;
+        long flightWindowMillis = 10_000;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--record") && i + 1 < args.length) {
+                    recordFile = args[++i];
+                } else if (args[i].equals("--replay") && i + 1 < args.length) {
+                    replayFile = args[++i];
+                } else if (args[i].equals("--listen") && i + 1 < args.length) {
+                    listenPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--speed") && i + 1 < args.length) {
+                    speed = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--agent") && i + 1 < args.length && args[i + 1].lastIndexOf(':') > 0) {
+                    String target = args[++i];
+                    int colon = target.lastIndexOf(':');
+                    agentTarget = InetSocketAddress.createUnresolved(target.substring(0, colon),
+                            Integer.parseInt(target.substring(colon + 1)));
+                } else if (args[i].equals("--name") && i + 1 < args.length) {
+                    agentName = args[++i];
+                } else if (args[i].equals("--dashboard") && i + 1 < args.length) {
+                    dashboardPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--alerts") && i + 1 < args.length) {
+                    alertRules.addAll(readAlertRules(Paths.get(args[++i])));
+                } else if (args[i].equals("--alert") && i + 1 < args.length) {
+                    alertRules.add(parseAlertRule(args[++i]));
+                } else if (args[i].equals("--alert-log") && i + 1 < args.length) {
+                    alertLog = Paths.get(args[++i]);
+                } else if (args[i].equals("--alert-exec") && i + 1 < args.length) {
+                    alertCommand = args[++i];
+                } else if (args[i].equals("--interval") && i + 1 < args.length) {
+                    intervalMillis = Math.max(10, Long.parseLong(args[++i]));
+                } else if (args[i].equals("--adaptive")) {
+                    adaptive = true;
+                } else if (args[i].equals("--refresh") && i + 1 < args.length) {
+                    refreshMillis = Math.max(10, Long.parseLong(args[++i]));
+                } else if (args[i].equals("--flight") && i + 1 < args.length) {
+                    flightDirectory = Paths.get(args[++i]);
+                } else if (args[i].equals("--flight-trigger") && i + 1 < args.length) {
+                    flightTriggers.add(parseFlightTrigger(args[++i]));
+                } else if (args[i].equals("--flight-interval") && i + 1 < args.length) {
+                    flightIntervalMillis = Math.max(1, Long.parseLong(args[++i]));
+                } else if (args[i].equals("--flight-window") && i + 1 < args.length) {
+                    flightWindowMillis = Math.max(1, Long.parseLong(args[++i])) * 1000;
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // also a malformed number or port
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        samplingPolicy = adaptive
+                ? SamplingPolicy.adaptive(intervalMillis, ADAPTIVE_MIN_MILLIS, ADAPTIVE_MAX_MILLIS)
+                : SamplingPolicy.fixed(intervalMillis);
+        boolean headless = recordFile != null || listenPort >= 0 || agentTarget != null;
+        if (!alertRules.isEmpty() && dashboardPort < 0) {
+            try {
+                alerts = new AlertEngine(alertRules, PAGE_SIZE, alertLog, alertCommand, headless);
+            } catch (IOException e) {
+                System.err.println("Error opening alert log: " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        if (flightDirectory != null && dashboardPort < 0 && replayFile == null) {
+            // a collector of its own, so the short intervals do not disturb the rates of the regular collectors
+            ProcfsCollector flightProcfs = ProcfsCollector.openIfAvailable(hostFacts);
+            if (flightProcfs == null) {
+                System.err.println("The flight recorder needs /proc");
+                System.exit(2);
+            }
+            flightRecorder = new FlightRecorder(flightProcfs, PAGE_SIZE, flightTriggers, flightDirectory,
+                    flightIntervalMillis, flightWindowMillis, headless);
+        }
+
+        if (headless) {
+            runHeadless(recordFile != null ? Paths.get(recordFile) : null, listenPort, agentTarget,
+                    agentName != null ? agentName : localHostName());
+        } else if (dashboardPort >= 0) {
+            try {
+                runDashboard(dashboardPort);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        } else if (replayFile != null) {
+            try (RecordingFile.Reader reader = RecordingFile.Reader.open(Paths.get(replayFile))) {
+                replaying = true;
+                replaySpeed = speed;
+                if (isSubSecond(Paths.get(replayFile))) {
+                    // e.g. a flight recorder dump, which would be smeared again at 1s resolution
+                    chartTier = MetricHistory.TIER_100MS;
+                    quantileTier = chartTier;
+                }
+                runUi(null, reader);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                if (alerts != null) alerts.stop();
+            }
+        } else {
+            hostFacts.startWatching();
+            CollectorScheduler scheduler = createScheduler();
+            scheduler.start();
+            if (alerts != null) alerts.start(scheduler);
+            if (flightRecorder != null) flightRecorder.start(scheduler::getSnapshot);
+            try {
+                runUi(scheduler, null);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                if (flightRecorder != null) flightRecorder.stop();
+                if (alerts != null) alerts.stop();
+                scheduler.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs the terminal UI until Ctrl+C, fed either by the live collectors or by a recording.
+     *
+     * @param scheduler The running scheduler, or null when replaying.
+     * @param replay    The recording to play back, or null for live stats.
+     * @throws Exception If the terminal fails.
+     */
+    private static void runUi(CollectorScheduler scheduler, RecordingFile.Reader replay) throws Exception {
+        CountingOutputStream terminalOutput = new CountingOutputStream(System.out);
+        DefaultTerminalFactory factory = new DefaultTerminalFactory(terminalOutput, System.in, Charset.defaultCharset());
+        factory.setInitialTerminalSize(new TerminalSize(120, 35)); // Terminal size
+        Screen screen = factory.createScreen();
+        screen.startScreen();
+
+        FrameBuffer fb = new FrameBuffer(screen, BG_COLOR);
+        drawChrome(fb);
+        SelfMonitor self = new SelfMonitor();
+        long frameBytes = 0;
+        int frameCells = 0;
+
+        if (replay != null) replayHasRecord = replay.next();
+        SystemSnapshot snapshot = SystemSnapshot.empty();
+        long lastFrame = System.currentTimeMillis();
+
+        // Frames and history samples run on deadlines of their own; between them the loop waits for keys,
+        // so a key is handled and drawn at once instead of at the next frame
+        TerminalInput input = TerminalInput.start(screen);
+        Ticker frames = new Ticker(refreshMillis > 0 ? refreshMillis : replay == null ? 1000 : 250);
+        Ticker samples = replay == null ? new Ticker(historyMillis()) : null;
+        boolean redraw = true;
+
+        boolean running = true;
+        while (running) {
+            if (samples != null && samples.isDue()) {
+                // Record the latest stats published by the collectors, at least once per second so the 1s
+                // chart stays in step with the clock when the collectors back off
+                long now = System.currentTimeMillis();
+                snapshot = scheduler.getSnapshot();
+                DeviceRates disk = snapshot.getDiskRates();
+                DeviceRates net = snapshot.getNetRates();
+                updateHistories(now, snapshot.getCpuLoad(), snapshot.getMemoryUsage(),
+                        total(disk, DeviceRates.READ_BYTES), total(disk, DeviceRates.WRITE_BYTES),
+                        total(net, DeviceRates.RX_BYTES), total(net, DeviceRates.TX_BYTES));
+                updateDeviceHistories(diskDeviceHistories, disk, now, DeviceRates.READ_BYTES, DeviceRates.WRITE_BYTES);
+                updateDeviceHistories(netDeviceHistories, net, now, DeviceRates.RX_BYTES, DeviceRates.TX_BYTES);
+                updateSaturationHistories(now, snapshot.getSaturation());
+                updateTcpHistories(now, snapshot.getTcp(), net);
+                samples.setPeriodMillis(historyMillis());
+                samples.advance();
+            }
+
+            if (frames.isDue() || redraw) {
+                if (replay != null) {
+                    long now = System.currentTimeMillis();
+                    snapshot = advanceReplay(replay, now - lastFrame, snapshot);
+                    lastFrame = now;
+                }
+
+                // Draw UI; static chrome is only redrawn after a resize
+                long frameStart = System.nanoTime();
+                if (screen.doResizeIfNecessary() != null) {
+                    fb.reset();
+                    drawChrome(fb);
+                }
+                drawFrame(fb, snapshot, scheduler, self, frameBytes, frameCells);
+
+                // Only changed cells reach the terminal; an unchanged frame skips the refresh entirely
+                long bytesBefore = terminalOutput.getCount();
+                int cells = fb.getChangedCells();
+                if (fb.flush()) {
+                    frameBytes = terminalOutput.getCount() - bytesBefore;
+                    frameCells = cells;
+                }
+                self.recordFrame(System.nanoTime() - frameStart);
+                self.tick();
+                if (frames.isDue()) frames.advance();
+                redraw = false;
+            }
+
+            // Wait for a key until the next frame or sample is due
+            long wait = frames.nanosUntilNext();
+            if (samples != null) wait = Math.min(wait, samples.nanosUntilNext());
+            KeyStroke keyStroke = input.poll(wait);
+            if (keyStroke == null) continue;
+            redraw = true;
+            if (keyStroke.getKeyType() == KeyType.EOF || (keyStroke.getKeyType() == KeyType.Character
+                    && keyStroke.isCtrlDown() && (keyStroke.getCharacter() == 'c' || keyStroke.getCharacter() == 'C'))) {
+                running = false;
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 't') {
+                chartTier = (chartTier + 1) % MetricHistory.TIER_COUNT;
+                quantileTier = chartTier;
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'w') {
+                quantileTier = (quantileTier + 1) % MetricHistory.TIER_COUNT;
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'c') {
+                heatmapField = (heatmapField + 1) % CpuBreakdown.FIELD_COUNT;
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'p') {
+                if (cgroupView) cgroupSortKey = (cgroupSortKey + 1) % CgroupTable.SORT_KEY_COUNT;
+                else processSortKey = (processSortKey + 1) % ProcessTable.SORT_KEY_COUNT;
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'g') {
+                cgroupView = !cgroupView;
+                fb.reset();
+                drawChrome(fb);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'b') {
+                diskDevice = nextDevice(snapshot.getDiskRates(), diskDevice);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'n') {
+                netDevice = nextDevice(snapshot.getNetRates(), netDevice);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'd') {
+                selfPanel = !selfPanel;
+                fb.reset();
+                drawChrome(fb);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 's') {
+                saturationView = !saturationView;
+                fb.reset();
+                drawChrome(fb);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'h') {
+                netHealthView = !netHealthView;
+                fb.reset();
+                drawChrome(fb);
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'f') {
+                if (flightRecorder != null) flightRecorder.trigger();
+            } else if (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == 'j') {
+                jvmView = !jvmView;
+                fb.reset();
+                drawChrome(fb);
+            } else if (replay != null && keyStroke.getKeyType() == KeyType.Character) {
+                char c = keyStroke.getCharacter();
+                if (c == ' ') replayPaused = !replayPaused;
+                else if (c == '+') replaySpeed *= 2;
+                else if (c == '-') replaySpeed /= 2;
+            }
+        }
+
+        screen.stopScreen();
+    }
+
+    /**
+     * Runs the collectors without a terminal until the process is interrupted, appending every second's
+     * sample to a recording, serving the latest snapshot on `/metrics` and/or streaming it to a dashboard.
+     *
+     * @param recording   The recording file, appended to when it already exists, or null.
+     * @param listenPort  The port of the metrics endpoint, or -1.
+     * @param agentTarget The address of the dashboard to stream to, or null.
+     * @param agentName   The name the dashboard shows for this host.
+     */
+    private static void runHeadless(Path recording, int listenPort, InetSocketAddress agentTarget, String agentName) {
+        hostFacts.startWatching();
+        CollectorScheduler scheduler = createScheduler();
+        scheduler.start();
+
+        // Ctrl+C runs the shutdown hooks; stop the loop and wait for the recording to be trimmed and closed
+        Thread main = Thread.currentThread();
+        Thread hook = new Thread(() -> {
+            main.interrupt();
+            try {
+                main.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        MetricsExporter exporter = null;
+        AgentSender sender = null;
+        try {
+            if (listenPort >= 0) {
+                exporter = MetricsExporter.start(listenPort, scheduler::getSnapshot, PAGE_SIZE);
+                System.err.println("Serving metrics on http://0.0.0.0:" + listenPort + "/metrics");
+            }
+            if (alerts != null) {
+                alerts.start(scheduler);
+                System.err.println("Evaluating " + alerts.getRuleCount() + " alert rules");
+            }
+            if (flightRecorder != null) flightRecorder.start(scheduler::getSnapshot);
+            if (agentTarget != null) {
+                sender = AgentSender.start(agentTarget, agentName, hostFacts, scheduler::getSnapshot, PAGE_SIZE);
+                System.err.println("Agent " + agentName + " streaming to " + agentTarget.getHostString() + ":"
+                        + agentTarget.getPort());
+            }
+            if (recording != null) {
+                record(scheduler, recording);
+            } else {
+                Thread.sleep(Long.MAX_VALUE);
+            }
+        } catch (InterruptedException e) {
+            // interrupted by the shutdown hook
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } finally {
+            if (exporter != null) exporter.stop();
+            if (sender != null) sender.stop();
+            if (flightRecorder != null) flightRecorder.stop();
+            if (alerts != null) alerts.stop();
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Appends one sample per second to a recording until the thread is interrupted.
+     *
+     * @param scheduler The running scheduler.
+     * @param path      The recording file.
+     * @throws IOException If the recording cannot be opened or extended.
+     */
+    private static void record(CollectorScheduler scheduler, Path path) throws IOException {
+        long samples = 0;
+        try (RecordingFile.Writer writer = RecordingFile.Writer.open(path)) {
+            System.err.println("Recording to " + path + ", press Ctrl+C to stop");
+            long[] values = new long[RecordingFile.CHANNEL_COUNT];
+            Ticker ticker = new Ticker(1000);
+            ticker.advance();
+            try {
+                while (true) {
+                    ticker.await();
+                    RecordingFile.toValues(scheduler.getSnapshot(), System.currentTimeMillis(), PAGE_SIZE, values);
+                    writer.append(values);
+                    samples++;
+                }
+            } catch (InterruptedException e) {
+                System.err.println("Recorded " + samples + " samples, " + formatSize(writer.size()));
+            }
+        }
+    }
+
+    /**
+     * Runs the dashboard until Ctrl+C: an overview with one row per agent, and the full view of one agent
+     * after drilling into it with enter. Agents stream to the port whenever they are running.
+     *
+     * @param port The port agents connect to.
+     * @throws Exception If the port cannot be bound or the terminal fails.
+     */
+    private static void runDashboard(int port) throws Exception {
+        DashboardServer dashboard = DashboardServer.start(port, PAGE_SIZE);
+        CountingOutputStream terminalOutput = new CountingOutputStream(System.out);
+        DefaultTerminalFactory factory = new DefaultTerminalFactory(terminalOutput, System.in, Charset.defaultCharset());
+        factory.setInitialTerminalSize(new TerminalSize(120, 35)); // Terminal size
+        Screen screen = factory.createScreen();
+        screen.startScreen();
+
+        FrameBuffer fb = new FrameBuffer(screen, BG_COLOR);
+        drawDashboardChrome(fb, port);
+        SelfMonitor self = new SelfMonitor();
+        long frameBytes = 0;
+        int frameCells = 0;
+
+        // Short frames so navigation feels immediate; keys also redraw at once instead of waiting for one
+        TerminalInput input = TerminalInput.start(screen);
+        Ticker frames = new Ticker(refreshMillis > 0 ? refreshMillis : 250);
+
+        boolean running = true;
+        while (running) {
+            long now = System.currentTimeMillis();
+            DashboardServer.Host[] hosts = dashboard.getHosts();
+            updateHostHistories(hosts);
+
+            long frameStart = System.nanoTime();
+            if (screen.doResizeIfNecessary() != null) {
+                fb.reset();
+                if (dashboardHost != null) drawChrome(fb);
+                else drawDashboardChrome(fb, port);
+            }
+            if (dashboardHost != null) {
+                drawFrame(fb, dashboardHost.getSnapshot(), null, self, frameBytes, frameCells);
+            } else {
+                drawDashboard(fb, hosts, now);
+                drawFooter(fb, frameBytes, frameCells, self);
+            }
+
+            long bytesBefore = terminalOutput.getCount();
+            int cells = fb.getChangedCells();
+            if (fb.flush()) {
+                frameBytes = terminalOutput.getCount() - bytesBefore;
+                frameCells = cells;
+            }
+            self.recordFrame(System.nanoTime() - frameStart);
+            self.tick();
+
+            // Wait for a key until the next frame, then drain the keys typed meanwhile, so scrolling through
+            // many hosts keeps up
+            KeyStroke keyStroke = input.poll(frames.nanosUntilNext());
+            if (keyStroke == null) frames.advance();
+            for (; running && keyStroke != null; keyStroke = input.poll(0)) {
+                KeyType type = keyStroke.getKeyType();
+                Character c = type == KeyType.Character ? keyStroke.getCharacter() : null;
+                if (type == KeyType.EOF || (c != null && keyStroke.isCtrlDown() && (c == 'c' || c == 'C'))) {
+                    running = false;
+                } else if (dashboardHost != null && (type == KeyType.Escape || type == KeyType.Backspace)) {
+                    dashboardHost = null;
+                    fb.reset();
+                    drawDashboardChrome(fb, port);
+                } else if (dashboardHost == null && type == KeyType.Enter && dashboardSelected < hosts.length) {
+                    dashboardHost = hosts[dashboardSelected];
+                    showHistories(dashboardHost.histories);
+                    if (dashboardHost.quantiles == null) dashboardHost.quantiles = newQuantiles();
+                    quantiles = dashboardHost.quantiles;
+                    fb.reset();
+                    drawChrome(fb);
+                } else if (dashboardHost == null && (type == KeyType.ArrowUp || (c != null && c == 'k'))) {
+                    dashboardSelected = Math.max(0, dashboardSelected - 1);
+                } else if (dashboardHost == null && (type == KeyType.ArrowDown || (c != null && c == 'j'))) {
+                    dashboardSelected = Math.max(0, Math.min(hosts.length - 1, dashboardSelected + 1));
+                } else if (dashboardHost == null && type == KeyType.PageUp) {
+                    dashboardSelected = Math.max(0, dashboardSelected - DASHBOARD_ROWS);
+                } else if (dashboardHost == null && type == KeyType.PageDown) {
+                    dashboardSelected = Math.max(0, Math.min(hosts.length - 1, dashboardSelected + DASHBOARD_ROWS));
+                } else if (c != null && c == 't') {
+                    chartTier = (chartTier + 1) % MetricHistory.TIER_COUNT;
+                    quantileTier = chartTier;
+                } else if (c != null && c == 'w') {
+                    quantileTier = (quantileTier + 1) % MetricHistory.TIER_COUNT;
+                } else if (dashboardHost != null && c != null && c == 'd') {
+                    selfPanel = !selfPanel;
+                    fb.reset();
+                    drawChrome(fb);
+                }
+            }
+        }
+
+        screen.stopScreen();
+        dashboard.stop();
+    }
+
+    /**
+     * Advances the replay clock by the elapsed wall time times the replay speed and feeds every record
+     * up to the new position into the histories. Gaps longer than a minute, e.g. between two recording
+     * sessions, are skipped.
+     *
+     * @param replay        The recording.
+     * @param elapsedMillis The wall time since the previous frame.
+     * @param current       The snapshot shown so far.
+     * @return The snapshot of the last record played, or the current one if no record was due.
+     */
+    private static SystemSnapshot advanceReplay(RecordingFile.Reader replay, long elapsedMillis, SystemSnapshot current) {
+        if (!replayHasRecord) return current;
+        if (replayClock == 0) replayClock = replay.get(RecordingFile.TIME);
+        if (!replayPaused) replayClock += (long) (elapsedMillis * replaySpeed);
+        if (replay.get(RecordingFile.TIME) - replayClock > 60_000) replayClock = replay.get(RecordingFile.TIME);
+
+        while (replayHasRecord && replay.get(RecordingFile.TIME) <= replayClock) {
+            updateHistories(replay.get(RecordingFile.TIME), replay.get(RecordingFile.CPU) / 100.0,
+                    replay.get(RecordingFile.MEMORY) / 100.0, replay.get(RecordingFile.DISK_READ),
+                    replay.get(RecordingFile.DISK_WRITE), replay.get(RecordingFile.NET_IN),
+                    replay.get(RecordingFile.NET_OUT));
+            current = RecordingFile.toSnapshot(replay, PAGE_SIZE);
+            replayShownTime = replay.get(RecordingFile.TIME);
+            if (alerts != null) alerts.evaluate(current, replayShownTime);
+            replayHasRecord = replay.next();
+        }
+        return current;
+    }
+
+    /**
+     * Creates the scheduler with one collector per stats source, sampling at the interval of the policy.
+     * Forking sources get a timeout longer than their usual runtime and are never sampled faster than once per
+     * second, as `iostat` only emits once per second anyway; procfs sources and the MXBean follow the policy down
+     * to its shortest interval.
+     *
+     * @return The scheduler, not yet started.
+     */
+    private static CollectorScheduler createScheduler() {
+        OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        CollectorScheduler scheduler = new CollectorScheduler(samplingPolicy);
+        long forkingMillis = procfs != null ? 0 : 1000;
+
+        scheduler.register(new Collector("cpu", 0, 500, () -> {
+            CpuBreakdown breakdown = getCpuBreakdown();
+            double cpuLoad = breakdown != null ? breakdown.getTotal(CpuBreakdown.BUSY) : getCpuLoad(osBean);
+            return s -> s.withCpuLoad(cpuLoad, breakdown);
+        }));
+        scheduler.register(new Collector("mem", forkingMillis, 750, () -> {
+            MemoryStats memStats = getVMStats();
+            double memoryUsage = calculateMemoryUsage(memStats);
+            long totalMemory = hostFacts.getTotalMemory();
+            return s -> s.withMemory(memStats, memoryUsage, totalMemory);
+        }));
+        scheduler.register(new Collector("disk", forkingMillis, 2000, () -> {
+            DeviceRates diskRates = getDiskRates();
+            return s -> s.withDiskRates(diskRates);
+        }));
+        scheduler.register(new Collector("net", forkingMillis, 750, () -> {
+            DeviceRates netRates = getNetworkRates();
+            return s -> s.withNetRates(netRates);
+        }));
+        if (processScanner != null) {
+            // a process scan is the most expensive sample, so it never runs more than once per second
+            scheduler.register(new Collector("procs", 1000, 900, () -> {
+                ProcessTable processes = processScanner.scan();
+                return s -> s.withProcesses(processes);
+            }));
+        }
+        if (cgroupScanner != null) {
+            scheduler.register(new Collector("cgroups", 1000, 900, () -> {
+                CgroupTable cgroups = cgroupScanner.scan();
+                return s -> s.withCgroups(cgroups);
+            }));
+        }
+        // the counters are read straight from the JVMs' shared mappings, so this is cheap enough for every tick
+        scheduler.register(new Collector("jvms", 0, 500, () -> {
+            JvmTable jvms = jvmScanner.scan();
+            return s -> s.withJvms(jvms);
+        }));
+        if (procfs != null) {
+            scheduler.register(new Collector("saturation", 0, 500, () -> {
+                SaturationStats saturation = procfs.sampleSaturation();
+                return s -> s.withSaturation(saturation);
+            }));
+        }
+        if (tcpCollector != null) {
+            // the socket tables grow with the connection count, so they are scanned at most once per second
+            scheduler.register(new Collector("tcp", 1000, 900, () -> {
+                TcpStats tcp = tcpCollector.sample();
+                return s -> s.withTcp(tcp);
+            }));
+        }
+        return scheduler;
+    }
+
+    /**
+     * Starts the regular collectors at a fixed interval without a terminal, for the one-shot modes on hosts
+     * without procfs.
+     *
+     * @param intervalMillis The sampling interval in milliseconds.
+     * @return The started scheduler.
+     */
+    static CollectorScheduler startCollectors(long intervalMillis) {
+        samplingPolicy = SamplingPolicy.fixed(intervalMillis);
+        CollectorScheduler scheduler = createScheduler();
+        scheduler.start();
+        return scheduler;
+    }
+
+    // ========================= UI Utility Functions ========================= //
+
+    /**
+     * Draws the static chrome: title bar, chart frames and section headings.
+     * Called once at startup and after every resize, never per frame.
+     *
+     * @param fb The frame buffer used for rendering.
+     */
+    static void drawChrome(FrameBuffer fb) {
+        // the cell cache was reset, so the cached widgets must be redrawn too
+        lastDrawnSnapshot = null;
+        drawnHostGeneration = -1;
+        drawnHeatmapField = -1;
+        drawnProcessSortKey = -1;
+        drawnCgroupSortKey = -1;
+        drawnTcp = null;
+        drawnInterfaces = null;
+        drawnJvms = null;
+        drawTitle(fb, "system monitor");
+
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.putString(STATS_X, STATS_Y, "system statistics:");
+        fb.putString(STATS_X, STATS_Y + 7, "physical memory:");
+        if (alerts != null) fb.putString(STATS_X, STATS_Y + 16, "alerts:");
+
+        if (saturationView) {
+            drawChartFrame(fb, 40, 4, "cpu stall █some", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 40, 12, "memory stall █full ▒some", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 80, 4, "i/o stall █full ▒some", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 80, 12, "paging █majflt ▒swap", BAR_HEIGHT, GRAPH_WIDTH);
+        } else {
+            drawChartFrame(fb, 40, 4, "cpu history", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 40, 12, "memory history", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 80, 4, netHealthView ? "tcp █retrans ▒drops" : "disk i/o █r ▒w", BAR_HEIGHT, GRAPH_WIDTH);
+            drawChartFrame(fb, 80, 12, "network █rx ▒tx", BAR_HEIGHT, GRAPH_WIDTH);
+        }
+        if (selfPanel) {
+            drawChartFrame(fb, 40, 21, String.format(SELF_HEADER_FORMAT, "self", "samples", "p50", "p99", "max"),
+                    SELF_ROWS, HEATMAP_WIDTH);
+        } else if (netHealthView) {
+            drawChartFrame(fb, 40, 21, String.format(INTERFACE_HEADER_FORMAT, "interface", "rx err/s", "rx drop/s",
+                    "tx err/s", "tx drop/s", "rx/s"), HEATMAP_HEIGHT, HEATMAP_WIDTH);
+            drawChartFrame(fb, 40, 28, "tcp/ip per second", PROCESS_ROWS, HEATMAP_WIDTH);
+        } else {
+            drawChartFrame(fb, 40, 21, saturationView ? "run queue" : "cores", HEATMAP_HEIGHT, HEATMAP_WIDTH);
+            drawChartFrame(fb, 40, 28, jvmView
+                    ? String.format(JVM_HEADER_FORMAT, "pid", "jvm", "heap", "max", "gc/s", "full/s", "gc%", "thr")
+                    : cgroupView
+                    ? String.format(CGROUP_HEADER_FORMAT, "cgroup", "cpu%", "mem", "limit", "read/s", "write/s", "thr/s")
+                    : String.format(PROCESS_HEADER_FORMAT, "pid", "command", "cpu%", "rss", "read/s", "write/s"),
+                    PROCESS_ROWS, HEATMAP_WIDTH);
+        }
+    }
+
+    /**
+     * Draws the dynamic widgets of one frame; each one skips its work when its input did not change.
+     *
+     * @param fb         The frame buffer used for rendering.
+     * @param snapshot   The snapshot to show.
+     * @param scheduler  The running scheduler, or null when replaying or showing a dashboard host.
+     * @param self       The self-instrumentation.
+     * @param frameBytes The bytes written to the terminal by the last frame that changed anything.
+     * @param frameCells The number of cells that frame changed.
+     */
+    static void drawFrame(FrameBuffer fb, SystemSnapshot snapshot, CollectorScheduler scheduler, SelfMonitor self,
+                          long frameBytes, int frameCells) {
+        if (dashboardHost != null) {
+            drawAgentStatus(fb, dashboardHost, System.currentTimeMillis());
+        } else {
+            drawHostFacts(fb, snapshot.getCgroups());
+            if (scheduler != null) {
+                drawCollectorStatus(fb, scheduler.getStaleCollectors());
+            } else if (replaying) {
+                drawReplayStatus(fb);
+            }
+        }
+        drawSystemStats(fb, snapshot);
+        if (saturationView) drawSaturationStats(fb, snapshot.getSaturation());
+        else drawQuantiles(fb);
+        if (alerts != null) drawAlerts(fb, alerts, replaying ? replayShownTime : System.currentTimeMillis());
+        if (saturationView) drawSaturationCharts(fb);
+        else drawCharts(fb);
+        if (selfPanel) {
+            drawSelfPanel(fb, 40, 21, scheduler, self, HEATMAP_WIDTH);
+        } else if (netHealthView) {
+            drawInterfaceErrors(fb, 40, 21, snapshot.getNetRates(), HEATMAP_WIDTH);
+            drawTcpTable(fb, 40, 28, snapshot.getTcp(), HEATMAP_WIDTH);
+        } else if (saturationView) {
+            drawRunQueue(fb, 40, 21, snapshot.getSaturation(), HEATMAP_HEIGHT, HEATMAP_WIDTH);
+            if (jvmView) drawJvmTable(fb, 40, 28, snapshot.getJvms(), HEATMAP_WIDTH);
+            else if (cgroupView) drawCgroupTable(fb, 40, 28, snapshot.getCgroups(), HEATMAP_WIDTH);
+            else drawProcessTable(fb, 40, 28, snapshot.getProcesses(), HEATMAP_WIDTH);
+        } else {
+            drawCpuHeatmap(fb, 40, 21, snapshot.getCpuBreakdown(), HEATMAP_HEIGHT, HEATMAP_WIDTH);
+            if (jvmView) drawJvmTable(fb, 40, 28, snapshot.getJvms(), HEATMAP_WIDTH);
+            else if (cgroupView) drawCgroupTable(fb, 40, 28, snapshot.getCgroups(), HEATMAP_WIDTH);
+            else drawProcessTable(fb, 40, 28, snapshot.getProcesses(), HEATMAP_WIDTH);
+        }
+        drawFooter(fb, frameBytes, frameCells, self);
+    }
+
+    /**
+     * Draws the title bar of the terminal.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param title The title string to display.
+     */
+    private static void drawTitle(FrameBuffer fb, String title) {
+        fb.setForegroundColor(TITLE_COLOR);
+        String t = " " + title + " ";
+        int x = (111 - t.length()) / 2;
+        fb.putString(x, 0, t);
+
+        fb.setForegroundColor(BORDER_COLOR);
+        for (int i = 0; i < 111; i++) fb.put(i, 1, '─');
+    }
+
+    /**
+     * Shows the host facts in the title bar, redrawing them only when an interface or device was hot-plugged.
+     * When the monitor runs in a limited cgroup, e.g. a container, its CPU and memory limits are shown instead.
+     *
+     * @param fb      The frame buffer used for rendering.
+     * @param cgroups The cgroup table with the monitor's own cgroup, or null.
+     */
+    private static void drawHostFacts(FrameBuffer fb, CgroupTable cgroups) {
+        CgroupTable.Row own = cgroups != null ? cgroups.getOwn() : null;
+        double cpuLimit = own != null ? own.cpuLimit : 0;
+        long memoryLimit = own != null ? own.memoryLimit : 0;
+        int generation = hostFacts.getGeneration();
+        if (generation == drawnHostGeneration && cpuLimit == drawnCpuLimit && memoryLimit == drawnMemoryLimit) return;
+        drawnHostGeneration = generation;
+        drawnCpuLimit = cpuLimit;
+        drawnMemoryLimit = memoryLimit;
+
+        String facts = own == null
+                ? String.format("%d cpus, %s, %d ifaces, %d disks", hostFacts.getCpuCount(),
+                        formatSize(hostFacts.getTotalMemory()), hostFacts.getNetworkInterfaces().size(),
+                        hostFacts.getBlockDevices().size())
+                : String.format("cgroup: %s cpus, %s of %s",
+                        cpuLimit > 0 ? String.format("%.4g", cpuLimit) : Integer.toString(hostFacts.getCpuCount()),
+                        formatSize(memoryLimit > 0 ? memoryLimit : hostFacts.getTotalMemory()),
+                        formatSize(hostFacts.getTotalMemory()));
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(0, 0, facts, STATUS_WIDTH);
+    }
+
+    /**
+     * Shows which collectors are serving their last good value because a sample timed out or failed.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param stale The names of the stale collectors.
+     */
+    private static void drawCollectorStatus(FrameBuffer fb, List<String> stale) {
+        String status = !stale.isEmpty() ? "stale: " + String.join(", ", stale)
+                : flightRecorder != null ? flightRecorder.getStatus() : "";
+        fb.setForegroundColor(BAR_MED);
+        fb.putString(111 - STATUS_WIDTH, 0, String.format("%" + STATUS_WIDTH + "s", status), STATUS_WIDTH);
+    }
+
+    /**
+     * Shows the time of the record being replayed and the replay speed in place of the collector status.
+     *
+     * @param fb The frame buffer used for rendering.
+     */
+    private static void drawReplayStatus(FrameBuffer fb) {
+        String state = !replayHasRecord ? "ended" : replayPaused ? "paused" : "x" + df.format(replaySpeed);
+        String status = replayShownTime == 0 ? "replay: waiting"
+                : String.format("replay %tF %<tT %s", new Date(replayShownTime), state);
+        fb.setForegroundColor(BAR_MED);
+        fb.putString(111 - STATUS_WIDTH, 0, String.format("%" + STATUS_WIDTH + "s", status), STATUS_WIDTH);
+    }
+
+    /**
+     * Lists the firing alerts below the memory statistics, oldest first, or how many rules are quiet.
+     *
+     * @param fb     The frame buffer used for rendering.
+     * @param alerts The alert engine.
+     * @param now    The current time in milliseconds, or the replayed time.
+     */
+    private static void drawAlerts(FrameBuffer fb, AlertEngine alerts, long now) {
+        AlertRule[] firing = alerts.getFiring();
+        int y = STATS_Y + 17;
+        if (firing.length == 0) {
+            fb.setForegroundColor(TEXT_COLOR);
+            fb.putString(STATS_X, y, String.format("none firing, %d rules", alerts.getRuleCount()), STATS_WIDTH);
+            for (int row = 1; row < ALERT_ROWS; row++) fb.putString(STATS_X, y + row, "", STATS_WIDTH);
+            return;
+        }
+        fb.setForegroundColor(BAR_HIGH);
+        for (int row = 0; row < ALERT_ROWS; row++) {
+            String line = "";
+            if (row == ALERT_ROWS - 1 && firing.length > ALERT_ROWS) {
+                line = String.format("+%d more", firing.length - row);
+            } else if (row < firing.length) {
+                AlertRule rule = firing[row];
+                long seconds = Math.max(0, now - rule.getFiringSince()) / 1000;
+                line = String.format("%s %s=%s %s", rule.getName(), rule.getMetric(),
+                        rule.isBytes() ? formatSize((long) rule.getValue()) : df.format(rule.getValue()),
+                        seconds < 60 ? seconds + "s" : seconds / 60 + "m");
+            }
+            fb.putString(STATS_X, y + row, line, STATS_WIDTH);
+        }
+    }
+
+    /**
+     * Draws the footer with the terminal output cost of the last frame that changed anything and a summary
+     * of the monitor's own costs, turning red while its recent CPU use is over budget.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param bytes The bytes written to the terminal by that frame.
+     * @param cells The number of cells that frame changed.
+     * @param self  The self-instrumentation.
+     */
+    private static void drawFooter(FrameBuffer fb, long bytes, int cells, SelfMonitor self) {
+        double cpu = self.getRecentCpuPercent();
+        fb.setForegroundColor(cpu > SELF_CPU_BUDGET ? BAR_HIGH : TEXT_COLOR);
+        fb.putString(STATS_X, 34, String.format("render: %s/frame, %d cells, p99 %s | alloc %s/tick | gc %d pauses"
+                        + " | self cpu %.1f%%/%.1f%%", formatSize(bytes), cells,
+                formatNanos(self.getFrameNanos().getQuantile(0.99)),
+                formatSize(self.getAllocatedBytes().getQuantile(0.5)),
+                self.getGcCount(), cpu, SELF_CPU_BUDGET), 108);
+    }
+
+    /**
+     * Draws the self-instrumentation panel: the sample time of every collector, the frame time, the bytes
+     * allocated per tick and the GC pauses, each as a histogram summary since start, and the sampling interval.
+     *
+     * @param fb        The frame buffer used for rendering.
+     * @param x         The x-coordinate of the panel's first column.
+     * @param y         The y-coordinate of the panel's first row.
+     * @param scheduler The running scheduler, or null when replaying.
+     * @param self      The self-instrumentation.
+     * @param width     The width of the panel in columns.
+     */
+    private static void drawSelfPanel(FrameBuffer fb, int x, int y, CollectorScheduler scheduler, SelfMonitor self,
+                                      int width) {
+        fb.setForegroundColor(TEXT_COLOR);
+        int row = 0;
+        int collectors = scheduler != null ? scheduler.getCollectorCount() : 0;
+        for (int i = 0; i < collectors; i++) {
+            drawLatencyRow(fb, x, y + row++, "collector " + scheduler.getCollectorName(i), scheduler.getLatency(i),
+                    width);
+        }
+        drawLatencyRow(fb, x, y + row++, "frame", self.getFrameNanos(), width);
+        drawLatencyRow(fb, x, y + row++, "gc pause", self.getGcPauseNanos(), width);
+        Histogram allocated = self.getAllocatedBytes();
+        fb.putString(x, y + row++, String.format(SELF_HEADER_FORMAT, "alloc/tick", allocated.getCount(),
+                formatSize(allocated.getQuantile(0.5)), formatSize(allocated.getQuantile(0.99)),
+                formatSize(allocated.getMax())), width);
+        if (scheduler != null && row < SELF_ROWS - 1) {
+            SamplingPolicy policy = scheduler.getPolicy();
+            fb.putString(x, y + row++, "sampling every " + policy.getIntervalMillis() + " ms"
+                    + (policy.isAdaptive() ? " (adaptive)" : ""), width);
+        }
+        while (row < SELF_ROWS - 1) fb.putString(x, y + row++, "", width);
+
+        Runtime runtime = Runtime.getRuntime();
+        fb.putString(x, y + row, String.format("cpu %.1f%% now, %.1f%% recent, %.1f%% overall, heap %s / %s",
+                self.getCpuPercent(), self.getRecentCpuPercent(), self.getAverageCpuPercent(),
+                formatSize(runtime.totalMemory() - runtime.freeMemory()),
+                formatSize(runtime.maxMemory())), width);
+    }
+
+    private static void drawLatencyRow(FrameBuffer fb, int x, int y, String label, Histogram histogram, int width) {
+        fb.putString(x, y, String.format(SELF_HEADER_FORMAT, label, histogram.getCount(),
+                formatNanos(histogram.getQuantile(0.5)), formatNanos(histogram.getQuantile(0.99)),
+                formatNanos(histogram.getMax())), width);
+    }
+
+    /**
+     * Draws a labeled bar with a specific percentage and length.
+     *
+     * @param fb         The frame buffer used for rendering.
+     * @param x          The x-coordinate of the bar's starting position.
+     * @param y          The y-coordinate of the bar's starting position.
+     * @param label      The label text to display before the bar.
+     * @param percentage The percentage value to represent with the bar.
+     * @param length     The total length of the bar.
+     */
+    private static void drawLabeledBar(FrameBuffer fb, int x, int y, String label, double percentage, int length) {
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(x, y, label);
+        drawBar(fb, x + label.length() + 1, y, percentage, length);
+    }
+
+    /**
+     * Draws a horizontal bar representing a percentage.
+     *
+     * @param fb         The frame buffer used for rendering.
+     * @param x          The x-coordinate of the bar's starting position.
+     * @param y          The y-coordinate of the bar's starting position.
+     * @param percentage The percentage value to represent with the bar.
+     * @param length     The total length of the bar.
+     */
+    private static void drawBar(FrameBuffer fb, int x, int y, double percentage, int length) {
+        int filled = (int) (percentage * length / 100.0);
+        for (int i = 0; i < length; i++) {
+            if (i < filled) {
+                fb.setForegroundColor(getBarColor((double) i / length));
+                fb.put(x + i, y, '█');
+            } else {
+                fb.setForegroundColor(TEXT_COLOR);
+                fb.put(x + i, y, '░');
+            }
+        }
+    }
+
+    /**
+     * Determines the color of a bar segment based on its ratio.
+     *
+     * @param ratio The ratio of the bar segment, between 0 and 1.
+     * @return A TextColor object representing the color of the bar segment.
+     */
+    private static TextColor getBarColor(double ratio) {
+        if (ratio < 0.5) return BAR_LOW;
+        else if (ratio < 0.8) return BAR_MED;
+        else return BAR_HIGH;
+    }
+
+    /**
+     * Draws the static frame and title of a history chart.
+     *
+     * @param fb     The frame buffer used for rendering.
+     * @param x      The x-coordinate of the chart's starting position.
+     * @param y      The y-coordinate of the chart's starting position.
+     * @param title  The title of the chart.
+     * @param height The height of the chart in rows.
+     * @param width  The width of the chart in columns.
+     */
+    private static void drawChartFrame(FrameBuffer fb, int x, int y, String title, int height, int width) {
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.putString(x, y - 1, title);
+
+        // border line
+        fb.setForegroundColor(BORDER_COLOR);
+        for (int i = 0; i < width; i++) {
+            fb.put(x + i, y - 2, '─');
+            fb.put(x + i, y + height, '─');
+        }
+        fb.put(x - 1, y - 2, '┌');
+        fb.put(x + width, y - 2, '┐');
+        fb.put(x - 1, y + height, '└');
+        fb.put(x + width, y + height, '┘');
+
+        for (int h = 0; h < height; h++) {
+            fb.put(x - 1, y + h, '│');
+        }
+    }
+
+    /**
+     * Draws the data of a history chart at the selected resolution, newest value on the right.
+     * Rolled-up buckets show their average as a solid bar and their peak as a shaded cap.
+     *
+     * @param fb       The frame buffer used for rendering.
+     * @param x        The x-coordinate of the chart's starting position.
+     * @param y        The y-coordinate of the chart's starting position.
+     * @param history  The history to display, read in place.
+     * @param maxValue The value drawn as a full column (100 for percentages).
+     * @param height   The height of the chart in rows.
+     * @param width    The width of the chart in columns.
+     */
+    private static void drawHistoryChart(FrameBuffer fb, int x, int y, MetricHistory history,
+                                         double maxValue, int height, int width) {
+        String tierLabel = MetricHistory.tierLabel(chartTier);
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(x + width - 3, y - 1, tierLabel, 3);
+
+        int size = history.size(chartTier);
+        for (int i = 0; i < width; i++) {
+            int age = width - 1 - i;
+            int filled = 0;
+            int peak = 0;
+            if (age < size) {
+                filled = (int) Math.round(history.getAvg(chartTier, age) / maxValue * height);
+                peak = (int) Math.round(history.getMax(chartTier, age) / maxValue * height);
+            }
+
+            for (int line = 0; line < height; line++) {
+                if (line < filled) {
+                    fb.setForegroundColor(getBarColor((double) line / height));
+                    fb.put(x + i, y + (height - line - 1), '█');
+                } else if (line < peak) {
+                    fb.setForegroundColor(getBarColor((double) line / height));
+                    fb.put(x + i, y + (height - line - 1), '░');
+                } else {
+                    fb.setForegroundColor(TEXT_COLOR);
+                    fb.put(x + i, y + (height - line - 1), ' ');
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws two series stacked in one history chart, e.g. disk reads with writes on top, newest value on the right.
+     * The lower series is solid, the upper one shaded, and the combined peak of rolled-up buckets is a light cap.
+     *
+     * @param fb       The frame buffer used for rendering.
+     * @param x        The x-coordinate of the chart's starting position.
+     * @param y        The y-coordinate of the chart's starting position.
+     * @param lower    The series drawn at the bottom.
+     * @param upper    The series stacked on top of it.
+     * @param maxValue The combined value drawn as a full column.
+     * @param height   The height of the chart in rows.
+     * @param width    The width of the chart in columns.
+     */
+    private static void drawSplitHistoryChart(FrameBuffer fb, int x, int y, MetricHistory lower, MetricHistory upper,
+                                              double maxValue, int height, int width) {
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(x + width - 3, y - 1, MetricHistory.tierLabel(chartTier), 3);
+
+        int size = Math.min(lower.size(chartTier), upper.size(chartTier));
+        for (int i = 0; i < width; i++) {
+            int age = width - 1 - i;
+            int lowerFilled = 0;
+            int filled = 0;
+            int peak = 0;
+            if (age < size) {
+                double low = lower.getAvg(chartTier, age);
+                lowerFilled = (int) Math.round(low / maxValue * height);
+                filled = (int) Math.round((low + upper.getAvg(chartTier, age)) / maxValue * height);
+                peak = (int) Math.round((lower.getMax(chartTier, age) + upper.getMax(chartTier, age)) / maxValue * height);
+            }
+
+            for (int line = 0; line < height; line++) {
+                char c = line < lowerFilled ? '█' : line < filled ? '▒' : line < peak ? '░' : ' ';
+                fb.setForegroundColor(c == ' ' ? TEXT_COLOR : getBarColor((double) line / height));
+                fb.put(x + i, y + (height - line - 1), c);
+            }
+        }
+    }
+
+    /**
+     * Draws a heatmap with one cell per core, so a single pegged core or heavy iowait/steal stands out even on
+     * hosts with hundreds of cores. When there are more cores than cells, each cell shows the hottest of its
+     * group. The title row shows the aggregate breakdown and the hottest core for the selected field.
+     *
+     * @param fb        The frame buffer used for rendering.
+     * @param x         The x-coordinate of the heatmap's starting position.
+     * @param y         The y-coordinate of the heatmap's starting position.
+     * @param breakdown The per-core breakdown, or null when the platform does not provide one.
+     * @param height    The height of the heatmap in rows.
+     * @param width     The width of the heatmap in columns.
+     */
+    private static void drawCpuHeatmap(FrameBuffer fb, int x, int y, CpuBreakdown breakdown, int height, int width) {
+        if (breakdown == drawnBreakdown && heatmapField == drawnHeatmapField) return;
+        drawnBreakdown = breakdown;
+        drawnHeatmapField = heatmapField;
+
+        if (breakdown == null) {
+            fb.setForegroundColor(TEXT_COLOR);
+            fb.putString(x, y, "per-core stats need /proc/stat and are not recorded", width);
+            return;
+        }
+
+        int cores = breakdown.getCoreCount();
+        int cells = width * height;
+        int coresPerCell = Math.max(1, (cores + cells - 1) / cells);
+        int hottestCore = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int first = cell * coresPerCell;
+            int last = Math.min(first + coresPerCell, cores);
+            double value = 0;
+            for (int core = first; core < last; core++) {
+                double v = breakdown.get(core, heatmapField);
+                if (v > value) value = v;
+                if (v > breakdown.get(hottestCore, heatmapField)) hottestCore = core;
+            }
+            if (first >= cores) {
+                fb.put(x + cell % width, y + cell / width, ' ');
+            } else if (value < 1.0) {
+                fb.setForegroundColor(TEXT_COLOR);
+                fb.put(x + cell % width, y + cell / width, '·');
+            } else {
+                fb.setForegroundColor(getBarColor(value / 100.0));
+                fb.put(x + cell % width, y + cell / width, value < 25 ? '░' : value < 50 ? '▒' : value < 75 ? '▓' : '█');
+            }
+        }
+
+        String summary = String.format("%-6s usr %3.0f sys %3.0f iow %3.0f irq %3.0f st %3.0f  max cpu%d %3.0f%%",
+                CpuBreakdown.fieldLabel(heatmapField), breakdown.getTotal(CpuBreakdown.USER),
+                breakdown.getTotal(CpuBreakdown.SYSTEM), breakdown.getTotal(CpuBreakdown.IOWAIT),
+                breakdown.getTotal(CpuBreakdown.IRQ), breakdown.getTotal(CpuBreakdown.STEAL),
+                hottestCore, breakdown.get(hottestCore, heatmapField));
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(x + 6, y - 1, summary, width - 6);
+    }
+
+    /**
+     * Draws the top processes for the selected sort key, redrawing only when the scanner published a new table.
+     * The right end of the title row shows the number of known processes and the sort key.
+     *
+     * @param fb        The frame buffer used for rendering.
+     * @param x         The x-coordinate of the table's starting position.
+     * @param y         The y-coordinate of the table's first row.
+     * @param processes The top processes, or null when the platform does not provide them.
+     * @param width     The width of the table in columns.
+     */
+    private static void drawProcessTable(FrameBuffer fb, int x, int y, ProcessTable processes, int width) {
+        if (processes == drawnProcesses && processSortKey == drawnProcessSortKey) return;
+        drawnProcesses = processes;
+        drawnProcessSortKey = processSortKey;
+
+        fb.setForegroundColor(TEXT_COLOR);
+        if (processes == null) {
+            fb.putString(x, y, processScanner == null || replaying ? "process table needs /proc and is not recorded"
+                    : "scanning processes...", width);
+            return;
+        }
+
+        fb.putString(x + width - 12, y - 1, String.format("%12s",
+                processes.getProcessCount() + " by " + ProcessTable.sortKeyLabel(processSortKey)), 12);
+        ProcessTable.Row[] rows = processes.getTop(processSortKey);
+        for (int i = 0; i < PROCESS_ROWS; i++) {
+            if (i >= rows.length) {
+                fb.putString(x, y + i, "", width);
+                continue;
+            }
+            ProcessTable.Row row = rows[i];
+            String name = row.name.length() > 14 ? row.name.substring(0, 14) : row.name;
+            fb.putString(x, y + i, String.format("%6d %-14s %6.1f %9s %9s %9s", row.pid, name, row.cpuPercent,
+                    formatSize(row.rssBytes), formatSize((long) row.readRate), formatSize((long) row.writeRate)), width);
+        }
+    }
+
+    /**
+     * Draws the busiest cgroups for the selected sort key, redrawing only when the scanner published a new table.
+     * The right end of the title row shows the number of known cgroups and the sort key.
+     *
+     * @param fb      The frame buffer used for rendering.
+     * @param x       The x-coordinate of the table's starting position.
+     * @param y       The y-coordinate of the table's first row.
+     * @param cgroups The busiest cgroups, or null when the host has no cgroup v2 hierarchy.
+     * @param width   The width of the table in columns.
+     */
+    private static void drawCgroupTable(FrameBuffer fb, int x, int y, CgroupTable cgroups, int width) {
+        if (cgroups == drawnCgroups && cgroupSortKey == drawnCgroupSortKey) return;
+        drawnCgroups = cgroups;
+        drawnCgroupSortKey = cgroupSortKey;
+
+        fb.setForegroundColor(TEXT_COLOR);
+        if (cgroups == null) {
+            fb.putString(x, y, cgroupScanner == null || replaying ? "cgroup table needs cgroup v2 and is not recorded"
+                    : "scanning cgroups...", width);
+            return;
+        }
+
+        fb.putString(x + width - 12, y - 1, String.format("%12s",
+                cgroups.getCgroupCount() + " by " + CgroupTable.sortKeyLabel(cgroupSortKey)), 12);
+        CgroupTable.Row[] rows = cgroups.getTop(cgroupSortKey);
+        for (int i = 0; i < PROCESS_ROWS; i++) {
+            if (i >= rows.length) {
+                fb.putString(x, y + i, "", width);
+                continue;
+            }
+            CgroupTable.Row row = rows[i];
+            String name = row.name.length() > 16 ? row.name.substring(0, 16) : row.name;
+            fb.putString(x, y + i, String.format("%-16s %6.1f %9s %9s %9s %9s %6.1f", name, row.cpuPercent,
+                    formatSize(row.memoryBytes), row.memoryLimit > 0 ? formatSize(row.memoryLimit) : "-",
+                    formatSize((long) row.readRate), formatSize((long) row.writeRate), row.throttledRate), width);
+        }
+    }
+
+    /**
+     * Draws the local JVMs that spend the most time collecting garbage, with their heap, collections per second
+     * and live threads. The maximum heap falls back to the committed heap when the JVM publishes no maximum.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param x     The x-coordinate of the table's starting position.
+     * @param y     The y-coordinate of the first row.
+     * @param jvms  The latest JVM table, or null when there is none.
+     * @param width The width of the table in columns.
+     */
+    private static void drawJvmTable(FrameBuffer fb, int x, int y, JvmTable jvms, int width) {
+        if (jvms != null && jvms == drawnJvms) return;
+        drawnJvms = jvms;
+
+        fb.setForegroundColor(TEXT_COLOR);
+        if (jvms == null) {
+            fb.putString(x, y, replaying || dashboardHost != null ? "jvm table is not recorded"
+                    : "scanning jvms...", width);
+            return;
+        }
+
+        JvmTable.Row[] rows = jvms.getTop();
+        for (int i = 0; i < PROCESS_ROWS; i++) {
+            if (i >= rows.length) {
+                fb.putString(x, y + i, i == 0 ? "no jvm with readable hsperfdata, or all run with -XX:-UsePerfData"
+                        : "", width);
+                continue;
+            }
+            JvmTable.Row row = rows[i];
+            String name = row.name.length() > 16 ? row.name.substring(0, 16) : row.name;
+            long max = row.heapMax > 0 ? row.heapMax : row.heapCommitted;
+            fb.putString(x, y + i, String.format(JVM_HEADER_FORMAT, row.pid, name, formatSize(row.heapUsed),
+                    formatSize(max), formatCount(row.gcRate), formatCount(row.fullGcRate),
+                    String.format("%.1f", row.gcPercent), row.threads), width);
+        }
+    }
+
+    /**
+     * Draws the interfaces with the most errors and drops per second, busiest first on a tie, with their
+     * received bytes for scale.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param x     The x-coordinate of the table's starting position.
+     * @param y     The y-coordinate of the first row.
+     * @param net   The per-interface rates, or null before the first sample.
+     * @param width The width of the table in columns.
+     */
+    private static void drawInterfaceErrors(FrameBuffer fb, int x, int y, DeviceRates net, int width) {
+        // every sample is a new object, so the same one has not changed since it was drawn
+        if (net != null && net == drawnInterfaces) return;
+        drawnInterfaces = net;
+
+        fb.setForegroundColor(TEXT_COLOR);
+        int shown = net != null ? selectInterfaces(net) : 0;
+        for (int i = 0; i < HEATMAP_HEIGHT; i++) {
+            if (i >= shown) {
+                String empty = net == null ? "waiting for the first sample..."
+                        : replaying ? "per-interface rates are not recorded" : "";
+                fb.putString(x, y + i, i == 0 ? empty : "", width);
+                continue;
+            }
+            int d = interfaceOrder[i];
+            String name = net.getName(d).length() > 16 ? net.getName(d).substring(0, 16) : net.getName(d);
+            fb.putString(x, y + i, String.format(INTERFACE_HEADER_FORMAT, name,
+                    formatCount(net.get(d, DeviceRates.RX_ERRORS)), formatCount(net.get(d, DeviceRates.RX_DROPS)),
+                    formatCount(net.get(d, DeviceRates.TX_ERRORS)), formatCount(net.get(d, DeviceRates.TX_DROPS)),
+                    formatSize((long) net.get(d, DeviceRates.RX_BYTES))), width);
+        }
+    }
+
+    /**
+     * Draws the TCP/IP counters and connection states, with the socket totals in the title row.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param x     The x-coordinate of the table's starting position.
+     * @param y     The y-coordinate of the first row.
+     * @param tcp   The latest stats, or null when there are none.
+     * @param width The width of the table in columns.
+     */
+    private static void drawTcpTable(FrameBuffer fb, int x, int y, TcpStats tcp, int width) {
+        if (tcp != null && tcp == drawnTcp) return;
+        drawnTcp = tcp;
+
+        fb.setForegroundColor(TEXT_COLOR);
+        if (tcp == null) {
+            fb.putString(x, y, tcpCollector == null || replaying ? "tcp/ip health needs /proc and is not recorded"
+                    : "waiting for the first sample...", width);
+            return;
+        }
+
+        String totals = String.format("%d sockets, %d orphans, %s", tcp.getTotal(TcpStats.SOCKETS_USED),
+                tcp.getTotal(TcpStats.TCP_ORPHANS), formatSize(tcp.getTotal(TcpStats.TCP_MEMORY)));
+        fb.putString(x + width - 40, y - 1, String.format("%40s", totals), 40);
+        fb.putString(x, y, String.format("segments  in %-6s out %-6s retrans %-6s %5.2f%%  timeouts %s",
+                formatCount(tcp.getRate(TcpStats.IN_SEGS)), formatCount(tcp.getRate(TcpStats.OUT_SEGS)),
+                formatCount(tcp.getRate(TcpStats.RETRANS_SEGS)), tcp.getRetransmitPercent(),
+                formatCount(tcp.getRate(TcpStats.TIMEOUTS))), width);
+        fb.putString(x, y + 1, String.format("conns     opens %-4s accepts %-4s fails %-4s resets %-4s rsts %s",
+                formatCount(tcp.getRate(TcpStats.ACTIVE_OPENS)), formatCount(tcp.getRate(TcpStats.PASSIVE_OPENS)),
+                formatCount(tcp.getRate(TcpStats.ATTEMPT_FAILS)), formatCount(tcp.getRate(TcpStats.ESTAB_RESETS)),
+                formatCount(tcp.getRate(TcpStats.OUT_RSTS))), width);
+        fb.putString(x, y + 2, String.format("listen    overflows %-5s drops %-5s   udp errors %-5s rcvbuf %s",
+                formatCount(tcp.getRate(TcpStats.LISTEN_OVERFLOWS)), formatCount(tcp.getRate(TcpStats.LISTEN_DROPS)),
+                formatCount(tcp.getRate(TcpStats.UDP_IN_ERRORS)), formatCount(tcp.getRate(TcpStats.UDP_RCVBUF_ERRORS))),
+                width);
+        if (!tcp.isStatesAvailable()) {
+            fb.putString(x, y + 3, String.format("states    too many sockets to scan: %d in use, %d time-wait",
+                    tcp.getTotal(TcpStats.TCP_IN_USE), tcp.getTotal(TcpStats.TCP_TIME_WAIT)), width);
+            fb.putString(x, y + 4, "", width);
+            return;
+        }
+        fb.putString(x, y + 3, String.format("states    estab %-6d listen %-5d syn-sent %-5d syn-recv %d",
+                tcp.getConnections(TcpStats.ESTABLISHED), tcp.getConnections(TcpStats.LISTEN),
+                tcp.getConnections(TcpStats.SYN_SENT), tcp.getConnections(TcpStats.SYN_RECV)), width);
+        fb.putString(x, y + 4, String.format("          fin-wait %-5d time-wait %-6d close-wait %-5d last-ack %d",
+                tcp.getConnections(TcpStats.FIN_WAIT1) + tcp.getConnections(TcpStats.FIN_WAIT2)
+                        + tcp.getConnections(TcpStats.CLOSING), tcp.getConnections(TcpStats.TIME_WAIT),
+                tcp.getConnections(TcpStats.CLOSE_WAIT), tcp.getConnections(TcpStats.LAST_ACK)), width);
+    }
+
+    /**
+     * Displays system stats such as CPU, memory, disk I/O, and network activity.
+     *
+     * @param fb       The frame buffer used for rendering.
+     * @param snapshot The latest values published by the collectors.
+     */
+    private static void drawSystemStats(FrameBuffer fb, SystemSnapshot snapshot) {
+        if (snapshot == lastDrawnSnapshot) return; // no collector published since the last frame
+        lastDrawnSnapshot = snapshot;
+
+        double cpuLoad = snapshot.getCpuLoad();
+        MemoryStats memStats = snapshot.getMemStats();
+        double ioStats = snapshot.getIoStats();
+
+        // CPU & Memory bars
+        drawLabeledBar(fb, 2, 3, "cpu:       ", cpuLoad, 20);
+        double memoryUsage = snapshot.getMemoryUsage();
+        drawLabeledBar(fb, 2, 5, "mem:       ", memoryUsage, 20);
+
+        // Disk I/O bars - use 100MB/s as max instead of 1GB/s for better visualization
+        double diskMax = 100.0 * 1024 * 1024; // 100 MB/s
+        double ioPercentage = Math.min((ioStats / diskMax) * 100, 100.0);
+        drawLabeledBar(fb, 2, 7, "i/o:       ", ioPercentage, 20);
+
+        // Network bars - use 1MB/s as max
+        double netMax = 1024 * 1024; // 1 MB/s
+        drawLabeledBar(fb, 2, 9, "net in:    ", (snapshot.getNetInRate() / netMax) * 100, 20);
+        drawLabeledBar(fb, 2, 11, "net out:   ", (snapshot.getNetOutRate() / netMax) * 100, 20);
+
+        // Detailed Memory Statistics
+        long totalMemory = snapshot.getTotalMemory();
+        long freeMemory = memStats.get(MemoryStats.FREE) * PAGE_SIZE;
+        long activeMemory = memStats.get(MemoryStats.ACTIVE) * PAGE_SIZE;
+        long inactiveMemory = memStats.get(MemoryStats.INACTIVE) * PAGE_SIZE;
+        long wiredMemory = memStats.get(MemoryStats.WIRED) * PAGE_SIZE;
+        long compressedMemory = memStats.get(MemoryStats.COMPRESSED) * PAGE_SIZE;
+        long fileBackedPages = memStats.get(MemoryStats.FILE_BACKED) * PAGE_SIZE;
+        long anonymousPages = memStats.get(MemoryStats.ANONYMOUS) * PAGE_SIZE;
+        long memoryUsed = activeMemory + anonymousPages;
+        long totalMemoryUsed = activeMemory + inactiveMemory + wiredMemory + compressedMemory;
+
+        // Stats text
+        int statsX = STATS_X;
+        int statsY = STATS_Y;
+        fb.setForegroundColor(TEXT_COLOR);
+
+        // Basic stats
+        fb.putString(statsX, statsY + 1, String.format("cpu usage:    %5.1f%%", cpuLoad), STATS_WIDTH);
+        fb.putString(statsX, statsY + 2, String.format("memory usage: %5.1f%%", memoryUsage), STATS_WIDTH);
+        DeviceRates disk = snapshot.getDiskRates();
+        DeviceRates net = snapshot.getNetRates();
+        double busiest = 0;
+        for (int d = 0; disk != null && d < disk.getDeviceCount(); d++) {
+            busiest = Math.max(busiest, disk.get(d, DeviceRates.UTILIZATION));
+        }
+        fb.putString(statsX, statsY + 3, String.format("disk r/w/s:   %s / %s",
+                formatSize((long) total(disk, DeviceRates.READ_BYTES)),
+                formatSize((long) total(disk, DeviceRates.WRITE_BYTES))), STATS_WIDTH);
+        fb.putString(statsX, statsY + 4, String.format("disk ops/s:   %.0f / %.0f, %.0f%% busy",
+                total(disk, DeviceRates.READ_OPS), total(disk, DeviceRates.WRITE_OPS), busiest), STATS_WIDTH);
+        fb.putString(statsX, statsY + 5, String.format("net rx/tx/s:  %s / %s",
+                formatSize((long) total(net, DeviceRates.RX_BYTES)),
+                formatSize((long) total(net, DeviceRates.TX_BYTES))), STATS_WIDTH);
+        fb.putString(statsX, statsY + 6, String.format("net pkts/s:   %.0f / %.0f",
+                total(net, DeviceRates.RX_PACKETS), total(net, DeviceRates.TX_PACKETS)), STATS_WIDTH);
+
+        // Detailed memory stats
+        int memStatsY = statsY + 8;
+        fb.putString(statsX, memStatsY, String.format("total:                  %s", formatSize(totalMemory)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 1, String.format("memory used + cached:   %s", formatSize(totalMemoryUsed)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 2, String.format("memory used:            %s", formatSize(memoryUsed)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 3, String.format("wired memory:           %s", formatSize(wiredMemory)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 4, String.format("cached files:           %s", formatSize(fileBackedPages)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 5, String.format("compressed:             %s", formatSize(compressedMemory)), STATS_WIDTH);
+        fb.putString(statsX, memStatsY + 6, String.format("free:                   %s", formatSize(freeMemory)), STATS_WIDTH);
+    }
+
+    /**
+     * Shows p50, p95, p99 and the maximum of every bar metric over the selected window below its bar, with
+     * the column headings and the window length above the bars.
+     *
+     * @param fb The frame buffer used for rendering.
+     */
+    private static void drawQuantiles(FrameBuffer fb) {
+        String window = "last " + formatMillis(GRAPH_WIDTH * MetricHistory.bucketMillis(quantileTier));
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.putString(STATS_X, 2, String.format(QUANTILE_FORMAT, window, "p50", "p95", "p99", "max"), STATS_WIDTH);
+        fb.setForegroundColor(TEXT_COLOR);
+        for (int q = 0; q < QUANTILE_COUNT; q++) {
+            QuantileSketch sketch = quantiles[q].get(quantileTier);
+            boolean percent = q == QUANTILE_CPU || q == QUANTILE_MEMORY;
+            fb.putString(STATS_X, 4 + 2 * q, String.format(QUANTILE_FORMAT, "",
+                    formatQuantile(sketch.getQuantile(0.50), percent), formatQuantile(sketch.getQuantile(0.95), percent),
+                    formatQuantile(sketch.getQuantile(0.99), percent), formatQuantile(sketch.getMax(), percent)),
+                    STATS_WIDTH);
+        }
+    }
+
+    /**
+     * Draws all system charts, including CPU, memory, disk I/O, and network history.
+     *
+     * @param fb The frame buffer used for rendering.
+     */
+    private static void drawCharts(FrameBuffer fb) {
+        // Left column
+        drawHistoryChart(fb, 40, 4, cpuHistory, 100.0, BAR_HEIGHT, GRAPH_WIDTH);
+        drawHistoryChart(fb, 40, 12, memoryHistory, 100.0, BAR_HEIGHT, GRAPH_WIDTH);
+
+        // Right column: reads/rx stacked under writes/tx, for all devices or the one picked with 'b'/'n'
+        MetricHistory[] disk = diskDevice != null ? diskDeviceHistories.get(diskDevice) : null;
+        if (disk == null) diskDevice = null; // the device went away
+        if (netHealthView) {
+            drawSplitHistoryChart(fb, 80, 4, tcpRetransHistory, tcpDropHistory, TCP_CHART_MAX, BAR_HEIGHT, GRAPH_WIDTH);
+        } else {
+            fb.setForegroundColor(TEXT_COLOR);
+            fb.putString(95, 3, diskDevice != null ? diskDevice : "all", 11);
+            drawSplitHistoryChart(fb, 80, 4, disk != null ? disk[0] : diskReadHistory,
+                    disk != null ? disk[1] : diskWriteHistory, 100.0 * 1024 * 1024, BAR_HEIGHT, GRAPH_WIDTH); // 100 MB/s
+        }
+
+        MetricHistory[] net = netDevice != null ? netDeviceHistories.get(netDevice) : null;
+        if (net == null) netDevice = null;
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(96, 11, netDevice != null ? netDevice : "all", 10);
+        drawSplitHistoryChart(fb, 80, 12, net != null ? net[0] : netInHistory, net != null ? net[1] : netOutHistory,
+                1024 * 1024, BAR_HEIGHT, GRAPH_WIDTH); // 1 MB/s
+    }
+
+    /**
+     * Draws the saturation signals in place of the percentiles: the kernel's stall averages under the CPU,
+     * memory and I/O bars, paging and the run queue under the network bars.
+     *
+     * @param fb         The frame buffer used for rendering.
+     * @param saturation The latest saturation stats, or null when there are none, e.g. in a replay.
+     */
+    private static void drawSaturationStats(FrameBuffer fb, SaturationStats saturation) {
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.putString(STATS_X, 2, String.format(QUANTILE_FORMAT, "stall %", "s10", "s60", "f10", "f60"), STATS_WIDTH);
+        fb.setForegroundColor(TEXT_COLOR);
+        if (saturation == null) {
+            fb.putString(STATS_X, 4, "saturation needs /proc", STATS_WIDTH);
+            fb.putString(STATS_X, 6, "and is not recorded", STATS_WIDTH);
+            for (int row = 8; row <= 12; row += 2) fb.putString(STATS_X, row, "", STATS_WIDTH);
+            return;
+        }
+
+        for (int r = 0; r < SaturationStats.RESOURCE_COUNT; r++) {
+            int row = 4 + 2 * r;
+            if (!saturation.isPressureAvailable()) {
+                fb.putString(STATS_X, row, r == 0 ? "no pressure stall information" : "", STATS_WIDTH);
+                continue;
+            }
+            fb.putString(STATS_X, row, String.format(QUANTILE_FORMAT, "",
+                    df.format(saturation.getPressure(r, SaturationStats.SOME_AVG10)),
+                    df.format(saturation.getPressure(r, SaturationStats.SOME_AVG60)),
+                    df.format(saturation.getPressure(r, SaturationStats.FULL_AVG10)),
+                    df.format(saturation.getPressure(r, SaturationStats.FULL_AVG60))), STATS_WIDTH);
+        }
+        fb.putString(STATS_X, 10, String.format("majflt %.0f/s  swap %.0f/%.0f pg/s",
+                saturation.get(SaturationStats.MAJOR_FAULTS), saturation.get(SaturationStats.SWAP_IN),
+                saturation.get(SaturationStats.SWAP_OUT)), STATS_WIDTH);
+        fb.putString(STATS_X, 12, String.format("runq %.0f  load %.2f %.2f %.2f",
+                saturation.get(SaturationStats.RUN_QUEUE), saturation.get(SaturationStats.LOAD_1),
+                saturation.get(SaturationStats.LOAD_5), saturation.get(SaturationStats.LOAD_15)), STATS_WIDTH);
+    }
+
+    /**
+     * Draws the saturation charts in place of the utilization charts: the share of time tasks stalled on the
+     * CPU, memory and I/O, and the rate of major faults and swapped pages.
+     *
+     * @param fb The frame buffer used for rendering.
+     */
+    private static void drawSaturationCharts(FrameBuffer fb) {
+        drawHistoryChart(fb, 40, 4, saturationHistories[SATURATION_CPU], 100.0, BAR_HEIGHT, GRAPH_WIDTH);
+        drawSplitHistoryChart(fb, 40, 12, saturationHistories[SATURATION_MEMORY_FULL],
+                saturationHistories[SATURATION_MEMORY_SOME], 100.0, BAR_HEIGHT, GRAPH_WIDTH);
+        drawSplitHistoryChart(fb, 80, 4, saturationHistories[SATURATION_IO_FULL],
+                saturationHistories[SATURATION_IO_SOME], 100.0, BAR_HEIGHT, GRAPH_WIDTH);
+        drawSplitHistoryChart(fb, 80, 12, saturationHistories[SATURATION_FAULTS], saturationHistories[SATURATION_SWAP],
+                PAGING_CHART_MAX, BAR_HEIGHT, GRAPH_WIDTH);
+    }
+
+    /**
+     * Draws the run queue chart in place of the heatmap, with the load averages in its title row. A full column
+     * is two runnable tasks per CPU.
+     *
+     * @param fb         The frame buffer used for rendering.
+     * @param x          The x-coordinate of the chart's starting position.
+     * @param y          The y-coordinate of the chart's starting position.
+     * @param saturation The latest saturation stats, or null when there are none.
+     * @param height     The height of the chart in rows.
+     * @param width      The width of the chart in columns.
+     */
+    private static void drawRunQueue(FrameBuffer fb, int x, int y, SaturationStats saturation, int height, int width) {
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(x + 10, y - 1, saturation == null ? "" : String.format("load %.2f %.2f %.2f",
+                saturation.get(SaturationStats.LOAD_1), saturation.get(SaturationStats.LOAD_5),
+                saturation.get(SaturationStats.LOAD_15)), width - 14);
+        drawHistoryChart(fb, x, y, saturationHistories[SATURATION_RUN_QUEUE], 2.0 * hostFacts.getCpuCount(),
+                height, width);
+    }
+
+    // ========================= Dashboard Functions ========================= //
+
+    /**
+     * Draws the static chrome of the dashboard overview: title bar and column headings.
+     *
+     * @param fb   The frame buffer used for rendering.
+     * @param port The port agents connect to.
+     */
+    private static void drawDashboardChrome(FrameBuffer fb, int port) {
+        drawTitle(fb, "sysmon dashboard :" + port);
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.putString(2, 2, String.format("%-18s %-6s %-17s %-20s %-17s %9s %9s", "host", "state", "cpu",
+                "cpu history", "mem", "disk/s", "net/s"));
+    }
+
+    /**
+     * Draws the overview: the host count and one condensed row per host, scrolled to keep the selection visible.
+     *
+     * @param fb    The frame buffer used for rendering.
+     * @param hosts The hosts, in order of arrival.
+     * @param now   The current time in milliseconds.
+     */
+    private static void drawDashboard(FrameBuffer fb, DashboardServer.Host[] hosts, long now) {
+        dashboardSelected = Math.max(0, Math.min(dashboardSelected, hosts.length - 1));
+        if (dashboardSelected < dashboardScroll) dashboardScroll = dashboardSelected;
+        if (dashboardSelected >= dashboardScroll + DASHBOARD_ROWS) dashboardScroll = dashboardSelected - DASHBOARD_ROWS + 1;
+
+        int up = 0;
+        for (DashboardServer.Host host : hosts) {
+            if (host.isConnected()) up++;
+        }
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(0, 0, String.format("%d hosts, %d connected", hosts.length, up), STATUS_WIDTH);
+
+        for (int row = 0; row < DASHBOARD_ROWS; row++) {
+            int index = dashboardScroll + row;
+            if (index < hosts.length) {
+                drawHostRow(fb, 3 + row, hosts[index], index == dashboardSelected, now);
+            } else {
+                fb.putString(0, 3 + row, "", 111);
+            }
+        }
+
+        String range = hosts.length == 0 ? "waiting for agents"
+                : String.format("hosts %d-%d of %d", dashboardScroll + 1,
+                Math.min(hosts.length, dashboardScroll + DASHBOARD_ROWS), hosts.length);
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(STATS_X, 33, range + " | ↑↓ select, enter open, esc back, t tier", 108);
+    }
+
+    /**
+     * Draws the condensed row of one host: state, CPU bar and sparkline, memory bar and the disk and network totals.
+     *
+     * @param fb       The frame buffer used for rendering.
+     * @param y        The row.
+     * @param host     The host.
+     * @param selected Whether the row is selected.
+     * @param now      The current time in milliseconds.
+     */
+    private static void drawHostRow(FrameBuffer fb, int y, DashboardServer.Host host, boolean selected, long now) {
+        SystemSnapshot snapshot = host.getSnapshot();
+        String state = !host.isConnected() ? "down" : now - host.getReceivedAt() > AGENT_STALE_MILLIS ? "stale" : "up";
+
+        fb.setForegroundColor(TITLE_COLOR);
+        fb.put(0, y, selected ? '>' : ' ');
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(2, y, host.getName(), 18);
+        fb.setForegroundColor(state.equals("up") ? BAR_LOW : state.equals("stale") ? BAR_MED : BAR_HIGH);
+        fb.putString(21, y, state, 6);
+
+        drawBar(fb, 28, y, snapshot.getCpuLoad(), 10);
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(39, y, String.format("%5.1f%%", snapshot.getCpuLoad()), 7);
+        drawSparkline(fb, 46, y, host.histories[DashboardServer.Host.CPU], 100.0, SPARKLINE_WIDTH);
+
+        drawBar(fb, 67, y, snapshot.getMemoryUsage(), 10);
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(78, y, String.format("%5.1f%%", snapshot.getMemoryUsage()), 7);
+
+        DeviceRates disk = snapshot.getDiskRates();
+        DeviceRates net = snapshot.getNetRates();
+        fb.putString(85, y, String.format("%9s", formatSize((long) (total(disk, DeviceRates.READ_BYTES)
+                + total(disk, DeviceRates.WRITE_BYTES)))), 10);
+        fb.putString(95, y, String.format("%9s", formatSize((long) (total(net, DeviceRates.RX_BYTES)
+                + total(net, DeviceRates.TX_BYTES)))), 10);
+    }
+
+    /**
+     * Draws a history in a single row at the selected resolution, newest value on the right, with the same
+     * scaling and colors as {@link #drawHistoryChart}.
+     *
+     * @param fb       The frame buffer used for rendering.
+     * @param x        The x-coordinate of the sparkline's starting position.
+     * @param y        The row.
+     * @param history  The history to display, read in place.
+     * @param maxValue The value drawn as a full cell.
+     * @param width    The width of the sparkline in columns.
+     */
+    private static void drawSparkline(FrameBuffer fb, int x, int y, MetricHistory history, double maxValue, int width) {
+        int size = history.size(chartTier);
+        for (int i = 0; i < width; i++) {
+            int age = width - 1 - i;
+            if (age >= size) {
+                fb.put(x + i, y, ' ');
+                continue;
+            }
+            double ratio = Math.min(1.0, Math.max(0.0, history.getAvg(chartTier, age) / maxValue));
+            fb.setForegroundColor(getBarColor(ratio));
+            fb.put(x + i, y, SPARKS[(int) Math.round(ratio * (SPARKS.length - 1))]);
+        }
+    }
+
+    /**
+     * Shows the facts and connection state of the dashboard host drilled into, in place of the local ones.
+     *
+     * @param fb   The frame buffer used for rendering.
+     * @param host The host.
+     * @param now  The current time in milliseconds.
+     */
+    private static void drawAgentStatus(FrameBuffer fb, DashboardServer.Host host, long now) {
+        fb.setForegroundColor(TEXT_COLOR);
+        fb.putString(0, 0, String.format("%s: %d cpus, %s", host.getName(), host.getCpuCount(),
+                formatSize(host.getTotalMemory())), STATUS_WIDTH);
+
+        long age = (now - host.getReceivedAt()) / 1000;
+        String status = !host.isConnected() ? "agent disconnected " + age + "s ago"
+                : age * 1000 > AGENT_STALE_MILLIS ? "agent silent for " + age + "s" : "agent " + host.getAddress();
+        fb.setForegroundColor(host.isConnected() && age * 1000 <= AGENT_STALE_MILLIS ? TEXT_COLOR : BAR_MED);
+        fb.putString(111 - STATUS_WIDTH, 0, String.format("%" + STATUS_WIDTH + "s", status), STATUS_WIDTH);
+    }
+
+    /**
+     * Adds the latest sample of every host to its histories, once per sample.
+     *
+     * @param hosts The hosts.
+     */
+    private static void updateHostHistories(DashboardServer.Host[] hosts) {
+        for (DashboardServer.Host host : hosts) {
+            long time = host.getSampleTime();
+            if (time == host.historyTime) continue;
+            host.historyTime = time;
+
+            SystemSnapshot snapshot = host.getSnapshot();
+            MetricHistory[] histories = host.histories;
+            updateHistory(histories[DashboardServer.Host.CPU], time, snapshot.getCpuLoad());
+            updateHistory(histories[DashboardServer.Host.MEMORY], time, snapshot.getMemoryUsage());
+            updateHistory(histories[DashboardServer.Host.DISK_READ], time, total(snapshot.getDiskRates(), DeviceRates.READ_BYTES));
+            updateHistory(histories[DashboardServer.Host.DISK_WRITE], time, total(snapshot.getDiskRates(), DeviceRates.WRITE_BYTES));
+            updateHistory(histories[DashboardServer.Host.NET_IN], time, total(snapshot.getNetRates(), DeviceRates.RX_BYTES));
+            updateHistory(histories[DashboardServer.Host.NET_OUT], time, total(snapshot.getNetRates(), DeviceRates.TX_BYTES));
+            if (host.quantiles != null) {
+                updateQuantiles(host.quantiles, time, snapshot.getCpuLoad(), snapshot.getMemoryUsage(),
+                        snapshot.getIoStats(), total(snapshot.getNetRates(), DeviceRates.RX_BYTES),
+                        total(snapshot.getNetRates(), DeviceRates.TX_BYTES));
+            }
+        }
+    }
+
+    /**
+     * Points the history charts at another set of histories, e.g. those of the dashboard host drilled into.
+     *
+     * @param histories The histories, indexed like {@link DashboardServer.Host#CPU}.
+     */
+    private static void showHistories(MetricHistory[] histories) {
+        cpuHistory = histories[DashboardServer.Host.CPU];
+        memoryHistory = histories[DashboardServer.Host.MEMORY];
+        diskReadHistory = histories[DashboardServer.Host.DISK_READ];
+        diskWriteHistory = histories[DashboardServer.Host.DISK_WRITE];
+        netInHistory = histories[DashboardServer.Host.NET_IN];
+        netOutHistory = histories[DashboardServer.Host.NET_OUT];
+    }
+
+    /**
+     * Returns the name this host goes by on a dashboard unless `--name` is given.
+     *
+     * @return The host name, or "localhost" if it cannot be determined.
+     */
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    // ========================= System Stats Functions ========================= //
+
+    /**
+     * Initializes disk statistics collection using `iostat`.
+     */
+    private static void initDiskStats() {
+        if (iostatInitialized) return; // already initialized
+        try {
+            ProcessBuilder pb = new ProcessBuilder("iostat", "-d", "-w", "1"); // continuously output every second
+            Process p = pb.start();
+            iostatStream = new BufferedInputStream(p.getInputStream());
+
+            // skip initial lines (headers); the line above the column headers names the disks
+            String previous = "";
+            ByteTokenizer tok = iostatTokenizer;
+            while (tok.readLine(iostatStream)) {
+                String line = tok.toString(0, tok.limit()).trim();
+                if (line.isEmpty()) continue;
+                if (line.contains("KB/t") && line.contains("MB/s")) {
+                    iostatDisks = previous.split("\\s+");
+                    break; // stop when we reach the header row
+                }
+                previous = line;
+            }
+            iostatInitialized = true;
+        } catch (Exception e) {
+            System.err.println("error initializing iostat: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves the per-core CPU breakdown from `/proc/stat`.
+     *
+     * @return The breakdown, or null when procfs is not available or cannot be read.
+     */
+    private static CpuBreakdown getCpuBreakdown() {
+        if (procfs == null) return null;
+        try {
+            return procfs.sampleCpu();
+        } catch (Exception e) {
+            System.err.println("Error reading /proc/stat: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the CPU usage from the OperatingSystemMXBean, used when procfs is not available.
+     *
+     * @param osBean The OperatingSystemMXBean.
+     * @return The CPU usage as a percentage.
+     */
+    private static double getCpuLoad(OperatingSystemMXBean osBean) {
+        double cpuLoad = osBean.getCpuLoad() * 100;
+        return Double.isNaN(cpuLoad) ? 0.0 : cpuLoad;
+    }
+
+    /**
+     * Retrieves virtual memory stats from the system.
+     *
+     * @return The memory statistics such as free, active, and wired memory, zero where unavailable.
+     */
+    private static MemoryStats getVMStats() {
+        MemoryStats stats = new MemoryStats();
+
+        if (procfs != null) {
+            try {
+                procfs.readMemoryStats(stats);
+            } catch (Exception e) {
+                System.err.println("Error reading /proc/meminfo: " + e.getMessage());
+            }
+            return stats;
+        }
+
+        try {
+            ProcessBuilder pb = new ProcessBuilder("vm_stat");
+            Process p = pb.start();
+            try (InputStream in = p.getInputStream()) {
+                vmStatTokenizer.read(in);
+            }
+            readVMStats(vmStatTokenizer, stats);
+            p.waitFor();
+        } catch (Exception e) {
+            System.err.println("Error reading vm_stat: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    /**
+     * Parses the output of `vm_stat` into memory statistics.
+     *
+     * @param tok   The tokenizer holding the `vm_stat` output.
+     * @param stats The statistics to fill, in pages.
+     */
+    static void readVMStats(ByteTokenizer tok, MemoryStats stats) {
+        for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+            if (tok.startsWith(pos, VM_FREE)) {
+                stats.set(MemoryStats.FREE, parseVMStatValue(tok, pos + VM_FREE.length));
+            } else if (tok.startsWith(pos, VM_ACTIVE)) {
+                stats.set(MemoryStats.ACTIVE, parseVMStatValue(tok, pos + VM_ACTIVE.length));
+            } else if (tok.startsWith(pos, VM_INACTIVE)) {
+                stats.set(MemoryStats.INACTIVE, parseVMStatValue(tok, pos + VM_INACTIVE.length));
+            } else if (tok.startsWith(pos, VM_WIRED)) {
+                stats.set(MemoryStats.WIRED, parseVMStatValue(tok, pos + VM_WIRED.length));
+            } else if (tok.startsWith(pos, VM_COMPRESSED)) {
+                stats.set(MemoryStats.COMPRESSED, parseVMStatValue(tok, pos + VM_COMPRESSED.length));
+            } else if (tok.startsWith(pos, VM_FILE_BACKED)) {
+                stats.set(MemoryStats.FILE_BACKED, parseVMStatValue(tok, pos + VM_FILE_BACKED.length));
+            } else if (tok.startsWith(pos, VM_ANONYMOUS)) {
+                stats.set(MemoryStats.ANONYMOUS, parseVMStatValue(tok, pos + VM_ANONYMOUS.length));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the per-device disk rates from `/proc/diskstats`, or from `iostat` elsewhere.
+     * `iostat` does not split reads from writes, so there its throughput and transfers are reported as reads.
+     *
+     * @return The per-device disk rates.
+     * @throws IOException If the stats cannot be read; the collector then keeps its last value.
+     */
+    private static DeviceRates getDiskRates() throws IOException {
+        if (procfs != null) return procfs.sampleDisk();
+
+        initDiskStats(); // ensure iostat is initialized
+        if (iostatStream == null) throw new IOException("iostat is not available");
+        DeviceRates rates = new DeviceRates(DeviceRates.DISK_FIELD_COUNT, iostatDisks.length);
+        while (iostatTokenizer.readLine(iostatStream)) {
+            if (parseIostatLine(iostatTokenizer, iostatDisks, rates)) return rates; // only process one line per call
+        }
+        throw new IOException("iostat exited");
+    }
+
+    /**
+     * Parses one line of `iostat -d` output.
+     *
+     * @param tok   The tokenizer holding the line.
+     * @param disks The disk names from the header, in column order.
+     * @param rates The rates to fill with the per-disk values, created with room for every disk.
+     * @return False for blank and repeated header lines, which leave the rates untouched.
+     */
+    static boolean parseIostatLine(ByteTokenizer tok, String[] disks, DeviceRates rates) {
+        // example line for two disks: "15.45   81  1.22   800.98    0  0.01" (KB/t tps MB/s per disk)
+        int pos = tok.skipSpaces(0);
+        int tokens = tok.countTokens(pos);
+        if (tokens < 3) return false;
+        byte first = tok.bytes()[pos];
+        if (first < '0' || first > '9') return false; // repeated headers
+        int count = Math.min(disks.length, tokens / 3);
+        rates.setDeviceCount(count);
+        for (int d = 0; d < count; d++) {
+            pos = tok.skipSpaces(tok.skipToken(pos)); // KB/t
+            rates.setName(d, disks[d]);
+            rates.set(d, DeviceRates.READ_OPS, tok.parseDouble(pos));
+            pos = tok.skipSpaces(tok.skipToken(pos));
+            rates.set(d, DeviceRates.READ_BYTES, tok.parseDouble(pos) * 1024 * 1024);
+            pos = tok.skipSpaces(tok.skipToken(pos));
+        }
+        rates.sumTotals();
+        return true;
+    }
+
+    /**
+     * Retrieves the per-interface network rates from `/proc/net/dev`, or from `netstat -ib` elsewhere.
+     *
+     * @return The per-interface network rates.
+     * @throws Exception If the stats cannot be read; the collector then keeps its last value.
+     */
+    private static DeviceRates getNetworkRates() throws Exception {
+        if (procfs != null) return procfs.sampleNetwork();
+
+        ProcessBuilder pb = new ProcessBuilder("netstat", "-ib");
+        Process p = pb.start();
+        long now = System.nanoTime();
+        netstatRates.begin();
+        try (InputStream in = p.getInputStream()) {
+            netstatTokenizer.read(in);
+        }
+        readNetstat(netstatTokenizer, netstatRates);
+        p.waitFor();
+        return netstatRates.commit(now);
+    }
+
+    /**
+     * Feeds the interface counters of `netstat -ib` output into a started rate engine sample.
+     *
+     * @param tok   The tokenizer holding the `netstat -ib` output.
+     * @param rates The rate engine, between {@link RateEngine#begin()} and {@link RateEngine#commit(long)}.
+     */
+    static void readNetstat(ByteTokenizer tok, RateEngine rates) {
+        // first line is the header
+        for (int pos = tok.nextLine(0); pos < tok.limit(); pos = tok.nextLine(pos)) {
+            // Name Mtu Network Address Ipkts Ierrs Ibytes Opkts Oerrs Obytes Coll; interfaces repeat once
+            // per address, so only the <Link#n> row is counted. It has no Address column when there is no MAC.
+            int nameStart = tok.skipSpaces(pos);
+            int tokens = tok.countTokens(nameStart);
+            if (tokens < 10 || tok.startsWith(nameStart, LOOPBACK_PREFIX)) continue;
+            int nameEnd = tok.skipToken(nameStart);
+            int field = tok.skipSpaces(tok.skipToken(tok.skipSpaces(nameEnd))); // Network
+            if (!tok.startsWith(field, LINK_PREFIX)) continue;
+
+            int slot = rates.device(tok.bytes(), nameStart, nameEnd);
+            int first = tokens >= 11 ? 4 : 3;
+            for (int i = 2; i <= first + 5; i++) {
+                if (i == first) rates.counter(slot, DeviceRates.RX_PACKETS, tok.parseLong(field));
+                else if (i == first + 1) rates.counter(slot, DeviceRates.RX_ERRORS, tok.parseLong(field));
+                else if (i == first + 2) rates.counter(slot, DeviceRates.RX_BYTES, tok.parseLong(field));
+                else if (i == first + 3) rates.counter(slot, DeviceRates.TX_PACKETS, tok.parseLong(field));
+                else if (i == first + 4) rates.counter(slot, DeviceRates.TX_ERRORS, tok.parseLong(field));
+                else if (i == first + 5) rates.counter(slot, DeviceRates.TX_BYTES, tok.parseLong(field));
+                field = tok.skipSpaces(tok.skipToken(field));
+            }
+        }
+    }
+
+    /**
+     * Calculates the percentage of memory usage.
+     *
+     * @param memStats The memory statistics.
+     * @return The percentage of memory used.
+     */
+    static double calculateMemoryUsage(MemoryStats memStats) {
+        long totalMemoryUsed = memStats.getUsedPages() * PAGE_SIZE;
+        return ((double) totalMemoryUsed / hostFacts.getTotalMemory()) * 100;
+    }
+
+    // ========================= Helper Utility Functions ========================= //
+
+    /**
+     * Returns how often the live UI records the latest snapshot into the histories: at the sampling interval,
+     * but at least once per second so every bucket of the 1s chart gets a sample.
+     *
+     * @return The interval in milliseconds.
+     */
+    private static long historyMillis() {
+        return Math.min(samplingPolicy.getIntervalMillis(), MetricHistory.bucketMillis(MetricHistory.TIER_1S));
+    }
+
+    /**
+     * Updates the history with a new value.
+     *
+     * @param hist The history of the metric.
+     * @param now  The current time in milliseconds.
+     * @param val  The new value to add to the history.
+     */
+    static void updateHistory(MetricHistory hist, long now, double val) {
+        hist.add(now, val);
+    }
+
+    /**
+     * Adds one sample of every charted metric to its history.
+     *
+     * @param now       The time of the sample in milliseconds.
+     * @param cpu       The CPU usage as a percentage.
+     * @param memory    The memory usage as a percentage.
+     * @param diskRead  The disk read rate in bytes per second.
+     * @param diskWrite The disk write rate in bytes per second.
+     * @param netIn     The inbound network rate in bytes per second.
+     * @param netOut    The outbound network rate in bytes per second.
+     */
+    static void updateHistories(long now, double cpu, double memory, double diskRead, double diskWrite,
+                                double netIn, double netOut) {
+        updateHistory(cpuHistory, now, cpu);
+        updateHistory(memoryHistory, now, memory);
+        updateHistory(diskReadHistory, now, diskRead);
+        updateHistory(diskWriteHistory, now, diskWrite);
+        updateHistory(netInHistory, now, netIn);
+        updateHistory(netOutHistory, now, netOut);
+        updateQuantiles(quantiles, now, cpu, memory, diskRead + diskWrite, netIn, netOut);
+    }
+
+    /**
+     * Adds one sample of every saturation signal to its history.
+     *
+     * @param now        The time of the sample in milliseconds.
+     * @param saturation The latest saturation stats, or null when the platform does not provide them.
+     */
+    private static void updateSaturationHistories(long now, SaturationStats saturation) {
+        if (saturation == null) return;
+        double memorySome = saturation.getPressure(SaturationStats.MEMORY, SaturationStats.SOME_STALL);
+        double memoryFull = saturation.getPressure(SaturationStats.MEMORY, SaturationStats.FULL_STALL);
+        double ioSome = saturation.getPressure(SaturationStats.IO, SaturationStats.SOME_STALL);
+        double ioFull = saturation.getPressure(SaturationStats.IO, SaturationStats.FULL_STALL);
+        updateHistory(saturationHistories[SATURATION_CPU], now,
+                saturation.getPressure(SaturationStats.CPU, SaturationStats.SOME_STALL));
+        updateHistory(saturationHistories[SATURATION_MEMORY_FULL], now, memoryFull);
+        updateHistory(saturationHistories[SATURATION_MEMORY_SOME], now, Math.max(0, memorySome - memoryFull));
+        updateHistory(saturationHistories[SATURATION_IO_FULL], now, ioFull);
+        updateHistory(saturationHistories[SATURATION_IO_SOME], now, Math.max(0, ioSome - ioFull));
+        updateHistory(saturationHistories[SATURATION_FAULTS], now, saturation.get(SaturationStats.MAJOR_FAULTS));
+        updateHistory(saturationHistories[SATURATION_SWAP], now,
+                saturation.get(SaturationStats.SWAP_IN) + saturation.get(SaturationStats.SWAP_OUT));
+        updateHistory(saturationHistories[SATURATION_RUN_QUEUE], now, saturation.get(SaturationStats.RUN_QUEUE));
+    }
+
+    /**
+     * Adds one sample of the network health chart: TCP retransmits, and the packets dropped by the listen queues
+     * and the interfaces.
+     *
+     * @param now The time of the sample in milliseconds.
+     * @param tcp The latest TCP/IP stats, or null when the platform does not provide them.
+     * @param net The per-interface rates, or null before the first sample.
+     */
+    private static void updateTcpHistories(long now, TcpStats tcp, DeviceRates net) {
+        if (tcp == null) return;
+        updateHistory(tcpRetransHistory, now, tcp.getRate(TcpStats.RETRANS_SEGS));
+        updateHistory(tcpDropHistory, now, tcp.getRate(TcpStats.LISTEN_DROPS)
+                + total(net, DeviceRates.RX_DROPS) + total(net, DeviceRates.TX_DROPS));
+    }
+
+    /**
+     * Adds one sample of every bar metric to its percentile windows.
+     *
+     * @param windows The windows, indexed like {@link #QUANTILE_CPU}.
+     * @param now     The time of the sample in milliseconds.
+     * @param cpu     The CPU usage as a percentage.
+     * @param memory  The memory usage as a percentage.
+     * @param disk    The disk read and write rate in bytes per second.
+     * @param netIn   The inbound network rate in bytes per second.
+     * @param netOut  The outbound network rate in bytes per second.
+     */
+    static void updateQuantiles(QuantileWindows[] windows, long now, double cpu, double memory, double disk,
+                                double netIn, double netOut) {
+        windows[QUANTILE_CPU].add(now, cpu);
+        windows[QUANTILE_MEMORY].add(now, memory);
+        windows[QUANTILE_DISK].add(now, disk);
+        windows[QUANTILE_NET_IN].add(now, netIn);
+        windows[QUANTILE_NET_OUT].add(now, netOut);
+    }
+
+    /**
+     * Creates empty percentile windows for the bar metrics, one window per chart resolution spanning as
+     * much time as a chart shows at that resolution.
+     *
+     * @return The windows, indexed like {@link #QUANTILE_CPU}.
+     */
+    static QuantileWindows[] newQuantiles() {
+        long[] windowMillis = new long[MetricHistory.TIER_COUNT];
+        for (int t = 0; t < MetricHistory.TIER_COUNT; t++) windowMillis[t] = GRAPH_WIDTH * MetricHistory.bucketMillis(t);
+        QuantileWindows[] windows = new QuantileWindows[QUANTILE_COUNT];
+        windows[QUANTILE_CPU] = new QuantileWindows(windowMillis, 0.1, 100.0);
+        windows[QUANTILE_MEMORY] = new QuantileWindows(windowMillis, 0.1, 100.0);
+        for (int q = QUANTILE_DISK; q < QUANTILE_COUNT; q++) {
+            windows[q] = new QuantileWindows(windowMillis, 1.0, 0x1p42); // up to 4 TB/s
+        }
+        return windows;
+    }
+
+    /**
+     * Creates empty histories.
+     *
+     * @param count The number of histories.
+     * @return The histories.
+     */
+    private static MetricHistory[] newHistories(int count) {
+        MetricHistory[] histories = new MetricHistory[count];
+        for (int i = 0; i < count; i++) histories[i] = new MetricHistory();
+        return histories;
+    }
+
+    /**
+     * Adds one sample of two fields of every device to its history, and drops the histories of devices
+     * that disappeared.
+     *
+     * @param histories The histories by device name.
+     * @param rates     The per-device rates, or null before the first sample.
+     * @param now       The time of the sample in milliseconds.
+     * @param first     The field of the first history, e.g. reads.
+     * @param second    The field of the second history, e.g. writes.
+     */
+    private static void updateDeviceHistories(Map<String, MetricHistory[]> histories, DeviceRates rates, long now,
+                                              int first, int second) {
+        if (rates == null) return;
+        for (int d = 0; d < rates.getDeviceCount(); d++) {
+            MetricHistory[] device = histories.computeIfAbsent(rates.getName(d),
+                    name -> new MetricHistory[]{new MetricHistory(), new MetricHistory()});
+            updateHistory(device[0], now, rates.get(d, first));
+            updateHistory(device[1], now, rates.get(d, second));
+        }
+        if (histories.size() > rates.getDeviceCount()) {
+            histories.keySet().removeIf(name -> rates.indexOf(name) < 0);
+        }
+    }
+
+    /**
+     * Reads an alert rules file, exiting with the offending line when it is invalid.
+     *
+     * @param path The rules file.
+     * @return The rules.
+     */
+    private static List<AlertRule> readAlertRules(Path path) {
+        try {
+            return AlertEngine.readRules(path);
+        } catch (IOException e) {
+            System.err.println("Error reading alert rules: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid alert rule: " + e.getMessage());
+        }
+        System.exit(2);
+        return null;
+    }
+
+    /**
+     * Parses a flight recorder trigger given on the command line, exiting when it is invalid.
+     *
+     * @param line The rule.
+     * @return The rule.
+     */
+    private static AlertRule parseFlightTrigger(String line) {
+        try {
+            return FlightRecorder.parseTrigger(line);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid flight trigger: " + e.getMessage());
+            System.exit(2);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a recording was sampled faster than once per second, from its first two records.
+     *
+     * @param path The recording file.
+     * @return True if the records are less than a second apart.
+     * @throws IOException If the file cannot be read or is not a recording.
+     */
+    private static boolean isSubSecond(Path path) throws IOException {
+        try (RecordingFile.Reader reader = RecordingFile.Reader.open(path)) {
+            if (!reader.next()) return false;
+            long first = reader.get(RecordingFile.TIME);
+            return reader.next()
+                    && reader.get(RecordingFile.TIME) - first < MetricHistory.bucketMillis(MetricHistory.TIER_1S);
+        }
+    }
+
+    /**
+     * Parses an alert rule given on the command line, exiting when it is invalid.
+     *
+     * @param line The rule.
+     * @return The rule.
+     */
+    private static AlertRule parseAlertRule(String line) {
+        try {
+            return AlertRule.parse(line);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid alert rule: " + e.getMessage());
+            System.exit(2);
+            return null;
+        }
+    }
+
+    /**
+     * Returns a total of per-device rates.
+     *
+     * @param rates The rates, or null before the first sample.
+     * @param field The field.
+     * @return The total, or 0 without rates.
+     */
+    private static double total(DeviceRates rates, int field) {
+        return rates != null ? rates.getTotal(field) : 0;
+    }
+
+    /**
+     * Picks the interfaces shown by the error table: most errors and drops first, most received bytes on a tie.
+     *
+     * @param net The per-interface rates.
+     * @return The number of interfaces picked into {@link #interfaceOrder}.
+     */
+    private static int selectInterfaces(DeviceRates net) {
+        int count = 0;
+        for (int d = 0; d < net.getDeviceCount(); d++) {
+            int i = Math.min(count, interfaceOrder.length - 1);
+            if (count == interfaceOrder.length && !worseInterface(net, d, interfaceOrder[i])) continue;
+            // insertion into the short sorted list, dropping the last entry when it is full
+            while (i > 0 && worseInterface(net, d, interfaceOrder[i - 1])) {
+                interfaceOrder[i] = interfaceOrder[i - 1];
+                i--;
+            }
+            interfaceOrder[i] = d;
+            if (count < interfaceOrder.length) count++;
+        }
+        return count;
+    }
+
+    private static boolean worseInterface(DeviceRates net, int a, int b) {
+        double errorsA = net.get(a, DeviceRates.RX_ERRORS) + net.get(a, DeviceRates.RX_DROPS)
+                + net.get(a, DeviceRates.TX_ERRORS) + net.get(a, DeviceRates.TX_DROPS);
+        double errorsB = net.get(b, DeviceRates.RX_ERRORS) + net.get(b, DeviceRates.RX_DROPS)
+                + net.get(b, DeviceRates.TX_ERRORS) + net.get(b, DeviceRates.TX_DROPS);
+        if (errorsA != errorsB) return errorsA > errorsB;
+        return net.get(a, DeviceRates.RX_BYTES) > net.get(b, DeviceRates.RX_BYTES);
+    }
+
+    /**
+     * Returns the device after the given one, for cycling a drill-down through all devices and back to the total.
+     *
+     * @param rates   The current rates.
+     * @param current The device shown now, or null for the total.
+     * @return The next device, or null for the total.
+     */
+    private static String nextDevice(DeviceRates rates, String current) {
+        if (rates == null || rates.getDeviceCount() == 0) return null;
+        if (current == null) return rates.getName(0);
+        int index = rates.indexOf(current);
+        return index >= 0 && index + 1 < rates.getDeviceCount() ? rates.getName(index + 1) : null;
+    }
+
+    /**
+     * Parses the value of a `vm_stat` line, e.g. "   123456." after "Pages free:".
+     *
+     * @param tok The tokenizer holding the `vm_stat` output.
+     * @param pos The position just after the key.
+     * @return The parsed value, or 0 if there is none.
+     */
+    static long parseVMStatValue(ByteTokenizer tok, int pos) {
+        return tok.parseLong(tok.skipSpaces(pos));
+    }
+
+    /**
+     * Formats a byte size into a human-readable string with appropriate units.
+     *
+     * @param bytes The size in bytes.
+     * @return A formatted string representing the size with units.
+     */
+    static String formatSize(long bytes) {
+        String[] units = {"B", "KB", "MB", "GB", "TB"};
+        int unitIndex = 0;
+        double size = bytes;
+
+        while (size > 1024 && unitIndex < units.length - 1) {
+            size /= 1024;
+            unitIndex++;
+        }
+
+        return df.format(size) + " " + units[unitIndex];
+    }
+
+    /**
+     * Formats a percentile in at most 5 characters, e.g. "12.5" for a percentage or "1.2M" for a byte rate.
+     *
+     * @param value   The value.
+     * @param percent Whether the value is a percentage rather than bytes.
+     * @return The formatted value.
+     */
+    private static String formatQuantile(double value, boolean percent) {
+        if (percent) return String.format("%.1f", value);
+        String[] units = {"", "K", "M", "G", "T"};
+        int unitIndex = 0;
+        while (value >= 1000 && unitIndex < units.length - 1) {
+            value /= 1024;
+            unitIndex++;
+        }
+        return (unitIndex > 0 && value < 10 ? String.format("%.1f", value) : String.format("%.0f", value))
+                + units[unitIndex];
+    }
+
+    /**
+     * Formats an event rate compactly, e.g. "0.5", "12" or "3.4k".
+     *
+     * @param value The rate per second.
+     * @return The formatted rate.
+     */
+    private static String formatCount(double value) {
+        if (value == 0) return "0";
+        if (value < 10) return String.format("%.1f", value);
+        if (value < 1000) return String.format("%.0f", value);
+        if (value < 1_000_000) return String.format(value < 10_000 ? "%.1fk" : "%.0fk", value / 1000);
+        return String.format("%.1fM", value / 1_000_000);
+    }
+
+    /**
+     * Formats a window length, e.g. "30s", "5m" or "5h".
+     *
+     * @param millis The length in milliseconds.
+     * @return The formatted length.
+     */
+    private static String formatMillis(long millis) {
+        long seconds = millis / 1000;
+        if (seconds < 60 || seconds % 60 != 0) return seconds + "s";
+        if (seconds < 3600 || seconds % 3600 != 0) return seconds / 60 + "m";
+        return seconds / 3600 + "h";
+    }
+
+    /**
+     * Formats a duration in milliseconds.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The formatted duration, e.g. "1.25 ms".
+     */
+    private static String formatNanos(long nanos) {
+        return String.format("%.2f ms", nanos / 1_000_000.0);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
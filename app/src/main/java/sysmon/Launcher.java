@@ -0,0 +1,25 @@
+package sysmon;
+
+/**
+ * Entry point of the jar. The one-shot modes run straight from here, without loading
+ * {@link LanternaSystemMonitor}, whose class initialization discovers the host, opens every collector and loads
+ * the terminal library before a sample could be printed; everything else goes to its main method.
+ */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    /**
+     * Starts {@link OneShot} for `--once` and `--count`, the system monitor otherwise.
+     *
+     * @param args Command-line arguments.
+     */
+    public static void main(String[] args) {
+        if (OneShot.isRequested(args)) {
+            OneShot.main(args);
+        } else {
+            LanternaSystemMonitor.main(args);
+        }
+    }
+}
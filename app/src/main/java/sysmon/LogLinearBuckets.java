@@ -0,0 +1,53 @@
+package sysmon;
+
+/**
+ * Index math of the log-linear buckets shared by {@link Histogram} and {@link QuantileSketch}.
+ * <p>
+ * Values below twice the sub-bucket count get a bucket of their own. Larger ones are bucketed by their highest
+ * bit and the `subBits` bits below it, i.e. every power of two is split into 2^subBits linear sub-buckets.
+ */
+final class LogLinearBuckets {
+
+    private LogLinearBuckets() {
+    }
+
+    /**
+     * Maps a value to its bucket.
+     *
+     * @param value   The non-negative value.
+     * @param subBits The number of bits below the highest one that select the sub-bucket.
+     * @return The bucket index.
+     */
+    static int bucket(long value, int subBits) {
+        int subCount = 1 << subBits;
+        if (value < 2 * subCount) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - subBits;
+        return (int) ((shift + 1) * subCount + (value >>> shift) - subCount);
+    }
+
+    /**
+     * Returns the smallest value of a bucket.
+     *
+     * @param bucket  The bucket index.
+     * @param subBits The sub-bucket bits the index was computed with.
+     * @return The value.
+     */
+    static long lowerBound(int bucket, int subBits) {
+        int subCount = 1 << subBits;
+        if (bucket < 2 * subCount) return bucket;
+        int shift = bucket / subCount - 1;
+        return (long) (subCount + bucket % subCount) << shift;
+    }
+
+    /**
+     * Returns how many values a bucket holds.
+     *
+     * @param bucket  The bucket index.
+     * @param subBits The sub-bucket bits the index was computed with.
+     * @return The width, 1 for the buckets of the small values.
+     */
+    static long width(int bucket, int subBits) {
+        int subCount = 1 << subBits;
+        return bucket < 2 * subCount ? 1 : 1L << (bucket / subCount - 1);
+    }
+}
@@ -0,0 +1,64 @@
+package sysmon;
+
+/**
+ * Memory statistics of one sample, in pages, with the `vm_stat` categories.
+ * <p>
+ * Values live in a primitive array indexed by the field constants.
+ */
+public final class MemoryStats {
+
+    public static final int FREE = 0;
+    public static final int ACTIVE = 1;
+    public static final int INACTIVE = 2;
+    public static final int WIRED = 3;
+    public static final int COMPRESSED = 4;
+    public static final int FILE_BACKED = 5;
+    public static final int ANONYMOUS = 6;
+    public static final int FIELD_COUNT = 7;
+
+    private static final String[] FIELD_LABELS = {"free", "active", "inactive", "wired", "compressed", "filebacked",
+            "anonymous"};
+
+    static final MemoryStats EMPTY = new MemoryStats();
+
+    private final long[] pages = new long[FIELD_COUNT];
+
+    /**
+     * Returns a field.
+     *
+     * @param field The field, e.g. {@link #WIRED}.
+     * @return The page count.
+     */
+    public long get(int field) {
+        return pages[field];
+    }
+
+    /**
+     * Returns the memory in use: the active, inactive, wired and compressed pages.
+     *
+     * @return The page count.
+     */
+    public long getUsedPages() {
+        return pages[ACTIVE] + pages[INACTIVE] + pages[WIRED] + pages[COMPRESSED];
+    }
+
+    /**
+     * Returns the short label of a field, as used in the exporter and `vm_stat`-style keys.
+     *
+     * @param field The field.
+     * @return The label, e.g. "filebacked".
+     */
+    public static String fieldLabel(int field) {
+        return FIELD_LABELS[field];
+    }
+
+    // ========================= Fill Functions ========================= //
+
+    void set(int field, long value) {
+        pages[field] = value;
+    }
+
+    void clear() {
+        for (int f = 0; f < FIELD_COUNT; f++) pages[f] = 0;
+    }
+}
@@ -0,0 +1,205 @@
+package sysmon;
+
+/**
+ * Fixed-size, multi-resolution history for a single metric, backed by primitive ring buffers.
+ * <p>
+ * Every sample is folded into the pending bucket of each tier (100ms, 1s, 10s, 1min, 10min). When a sample falls
+ * into a later bucket, the pending one is closed and its min/max/avg are pushed into that tier's ring, so
+ * long windows stay available at coarse resolution without keeping raw samples. Readers index by age
+ * (0 = newest, including the still-open bucket) and never copy; adding a sample does not allocate. The 100ms
+ * tier only differs from the 1s tier for sub-second samples, e.g. a flight recorder dump being replayed.
+ * <p>
+ * Not thread-safe: samples are added and read on the render thread.
+ */
+public final class MetricHistory {
+
+    public static final int TIER_100MS = 0;
+    public static final int TIER_1S = 1;
+    public static final int TIER_10S = 2;
+    public static final int TIER_1M = 3;
+    public static final int TIER_10M = 4;
+    public static final int TIER_COUNT = 5;
+
+    private static final long[] BUCKET_MILLIS = {100L, 1_000L, 10_000L, 60_000L, 600_000L};
+    private static final String[] TIER_LABELS = {".1s", "1s", "10s", "1m", "10m"};
+
+    // Default capacity: 12 seconds at 100ms, 2 minutes at 1s, 20 minutes at 10s, 2 hours at 1min, 24 hours at 10min
+    private static final int[] DEFAULT_CAPACITY = {120, 120, 120, 120, 144};
+
+    private final Tier[] tiers = new Tier[TIER_COUNT];
+
+    /**
+     * One resolution level: a ring of closed buckets plus the bucket currently being filled.
+     */
+    private static final class Tier {
+        final long bucketMillis;
+        final double[] min;
+        final double[] max;
+        final double[] avg;
+        int head = 0;   // index of the newest closed bucket
+        int size = 0;   // number of closed buckets
+
+        long pendingBucket = -1;
+        double pendingMin;
+        double pendingMax;
+        double pendingSum;
+        int pendingCount = 0;
+
+        Tier(long bucketMillis, int capacity) {
+            this.bucketMillis = bucketMillis;
+            this.min = new double[capacity];
+            this.max = new double[capacity];
+            this.avg = new double[capacity];
+        }
+    }
+
+    /**
+     * Creates a history with the default capacity for each tier.
+     */
+    public MetricHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a history with the given number of closed buckets per tier.
+     *
+     * @param capacity The capacity of the 100ms, 1s, 10s, 1min and 10min tiers.
+     */
+    public MetricHistory(int[] capacity) {
+        for (int t = 0; t < TIER_COUNT; t++) {
+            tiers[t] = new Tier(BUCKET_MILLIS[t], capacity[t]);
+        }
+    }
+
+    /**
+     * Adds a sample to every tier.
+     *
+     * @param timeMillis The time of the sample in milliseconds.
+     * @param value      The sampled value.
+     */
+    public void add(long timeMillis, double value) {
+        for (Tier tier : tiers) {
+            long bucket = timeMillis / tier.bucketMillis;
+            if (bucket != tier.pendingBucket) {
+                closePending(tier);
+                tier.pendingBucket = bucket;
+                tier.pendingMin = value;
+                tier.pendingMax = value;
+                tier.pendingSum = 0;
+                tier.pendingCount = 0;
+            }
+            if (value < tier.pendingMin) tier.pendingMin = value;
+            if (value > tier.pendingMax) tier.pendingMax = value;
+            tier.pendingSum += value;
+            tier.pendingCount++;
+        }
+    }
+
+    /**
+     * Returns the number of buckets available in a tier, including the one still being filled.
+     *
+     * @param tier The tier index.
+     * @return The number of readable buckets.
+     */
+    public int size(int tier) {
+        Tier t = tiers[tier];
+        return t.size + (t.pendingCount > 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the average of a bucket.
+     *
+     * @param tier The tier index.
+     * @param age  The bucket age, 0 being the newest.
+     * @return The average of the samples in the bucket.
+     */
+    public double getAvg(int tier, int age) {
+        Tier t = tiers[tier];
+        if (t.pendingCount > 0) {
+            if (age == 0) return t.pendingSum / t.pendingCount;
+            age--;
+        }
+        return t.avg[index(t, age)];
+    }
+
+    /**
+     * Returns the minimum of a bucket.
+     *
+     * @param tier The tier index.
+     * @param age  The bucket age, 0 being the newest.
+     * @return The smallest sample in the bucket.
+     */
+    public double getMin(int tier, int age) {
+        Tier t = tiers[tier];
+        if (t.pendingCount > 0) {
+            if (age == 0) return t.pendingMin;
+            age--;
+        }
+        return t.min[index(t, age)];
+    }
+
+    /**
+     * Returns the maximum of a bucket.
+     *
+     * @param tier The tier index.
+     * @param age  The bucket age, 0 being the newest.
+     * @return The largest sample in the bucket.
+     */
+    public double getMax(int tier, int age) {
+        Tier t = tiers[tier];
+        if (t.pendingCount > 0) {
+            if (age == 0) return t.pendingMax;
+            age--;
+        }
+        return t.max[index(t, age)];
+    }
+
+    /**
+     * Returns the short label of a tier's resolution, such as "10s".
+     *
+     * @param tier The tier index.
+     * @return The label.
+     */
+    public static String tierLabel(int tier) {
+        return TIER_LABELS[tier];
+    }
+
+    /**
+     * Returns the length of a tier's buckets.
+     *
+     * @param tier The tier index.
+     * @return The bucket length in milliseconds, e.g. 10000 for the 10s tier.
+     */
+    public static long bucketMillis(int tier) {
+        return BUCKET_MILLIS[tier];
+    }
+
+    // ========================= Ring Helper Functions ========================= //
+
+    /**
+     * Pushes the pending bucket of a tier into its ring, overwriting the oldest bucket when full.
+     *
+     * @param t The tier.
+     */
+    private static void closePending(Tier t) {
+        if (t.pendingCount == 0) return;
+        int capacity = t.avg.length;
+        t.head = (t.head + 1) % capacity;
+        t.min[t.head] = t.pendingMin;
+        t.max[t.head] = t.pendingMax;
+        t.avg[t.head] = t.pendingSum / t.pendingCount;
+        if (t.size < capacity) t.size++;
+    }
+
+    /**
+     * Maps the age of a closed bucket to its ring index.
+     *
+     * @param t   The tier.
+     * @param age The age among closed buckets, 0 being the newest.
+     * @return The ring index.
+     */
+    private static int index(Tier t, int age) {
+        int capacity = t.avg.length;
+        return ((t.head - age) % capacity + capacity) % capacity;
+    }
+}
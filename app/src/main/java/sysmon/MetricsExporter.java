@@ -0,0 +1,326 @@
+package sysmon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Serves the latest snapshot on `/metrics` in the Prometheus text exposition format.
+ * <p>
+ * Scrapes run on a small pool of their own threads and only read the published snapshot, so any number of
+ * concurrent scrapes never blocks the collectors or the renderer. Metric names, help texts and labels are
+ * encoded to bytes once; each scrape writes numbers straight into a per-thread byte buffer that is reused
+ * across scrapes, so encoding a response builds no strings.
+ */
+public final class MetricsExporter {
+
+    private static final int THREADS = 4;
+    private static final byte[] NAN = ascii("NaN");
+    private static final byte[] POSITIVE_INFINITY = ascii("+Inf");
+    private static final byte[] NEGATIVE_INFINITY = ascii("-Inf");
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final byte[] CPU = gauge("sysmon_cpu_usage_percent", "CPU usage of all cores.");
+    private static final byte[] CPU_CORE = header("sysmon_cpu_core_percent", "Share of a core's time by mode.");
+    private static final byte[][] CPU_CORE_PREFIXES = new byte[CpuBreakdown.FIELD_COUNT][];
+    private static final byte[] CPU_CORE_SUFFIX = ascii("\"} ");
+    private static final byte[] MEMORY = gauge("sysmon_memory_usage_percent", "Physical memory in use.");
+    private static final byte[] MEMORY_TOTAL = gauge("sysmon_memory_total_bytes", "Total physical memory.");
+    private static final byte[] MEMORY_STATE = header("sysmon_memory_bytes", "Physical memory by state.");
+    private static final byte[][] MEMORY_STATE_PREFIXES = new byte[MemoryStats.FIELD_COUNT][];
+    private static final byte[] DISK = gauge("sysmon_disk_io_bytes_per_second", "Disk read and write rate.");
+    private static final byte[] DISK_BYTES = header("sysmon_disk_device_bytes_per_second", "Disk rate by device.");
+    private static final byte[] DISK_BYTES_PREFIX = ascii("sysmon_disk_device_bytes_per_second{device=\"");
+    private static final byte[] DISK_OPS = header("sysmon_disk_device_ops_per_second", "Disk IOPS by device.");
+    private static final byte[] DISK_OPS_PREFIX = ascii("sysmon_disk_device_ops_per_second{device=\"");
+    private static final byte[] DISK_UTIL = header("sysmon_disk_device_utilization_percent",
+            "Share of time a device had I/O in flight.");
+    private static final byte[] DISK_UTIL_PREFIX = ascii("sysmon_disk_device_utilization_percent{device=\"");
+    private static final byte[] NET_BYTES = header("sysmon_network_device_bytes_per_second",
+            "Network rate by interface.");
+    private static final byte[] NET_BYTES_PREFIX = ascii("sysmon_network_device_bytes_per_second{device=\"");
+    private static final byte[] NET_PACKETS = header("sysmon_network_device_packets_per_second",
+            "Network packet rate by interface.");
+    private static final byte[] NET_PACKETS_PREFIX = ascii("sysmon_network_device_packets_per_second{device=\"");
+    private static final byte[] READ_SUFFIX = ascii("\",direction=\"read\"} ");
+    private static final byte[] WRITE_SUFFIX = ascii("\",direction=\"write\"} ");
+    private static final byte[] RX_SUFFIX = ascii("\",direction=\"rx\"} ");
+    private static final byte[] TX_SUFFIX = ascii("\",direction=\"tx\"} ");
+    private static final byte[] DEVICE_SUFFIX = ascii("\"} ");
+    private static final byte[] NET_IN = gauge("sysmon_network_receive_bytes_per_second", "Network receive rate.");
+    private static final byte[] NET_OUT = gauge("sysmon_network_transmit_bytes_per_second",
+            "Network transmit rate.");
+
+    static {
+        for (int f = 0; f < CpuBreakdown.FIELD_COUNT; f++) {
+            CPU_CORE_PREFIXES[f] = ascii("sysmon_cpu_core_percent{mode=\"" + CpuBreakdown.fieldLabel(f) + "\",core=\"");
+        }
+        for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+            MEMORY_STATE_PREFIXES[f] = ascii("sysmon_memory_bytes{state=\"" + MemoryStats.fieldLabel(f) + "\"} ");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Supplier<SystemSnapshot> snapshots;
+    private final long pageSize;
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+    /**
+     * Growable byte buffer with allocation-free number formatting.
+     */
+    private static final class Encoder {
+        byte[] bytes = new byte[8192];
+        int length = 0;
+
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        void putAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) bytes[length++] = (byte) s.charAt(i);
+        }
+
+        void putLong(long value) {
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte t = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = t;
+            }
+        }
+
+        /**
+         * Writes a value with three decimals, which is finer than any of the exported metrics need.
+         */
+        void putDouble(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                put(Double.isNaN(value) ? NAN : value > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY);
+                return;
+            }
+            long milli = Math.round(value * 1000);
+            if (milli < 0) {
+                put((byte) '-');
+                milli = -milli;
+            }
+            putLong(milli / 1000);
+            long frac = milli % 1000;
+            ensure(4);
+            bytes[length++] = '.';
+            bytes[length++] = (byte) ('0' + frac / 100);
+            bytes[length++] = (byte) ('0' + frac / 10 % 10);
+            bytes[length++] = (byte) ('0' + frac % 10);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+
+    private MetricsExporter(HttpServer server, ExecutorService executor, Supplier<SystemSnapshot> snapshots,
+                            long pageSize) {
+        this.server = server;
+        this.executor = executor;
+        this.snapshots = snapshots;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Starts serving `/metrics` on all interfaces.
+     *
+     * @param port      The TCP port.
+     * @param snapshots The source of the latest snapshot, e.g. the scheduler.
+     * @param pageSize  The system page size, used to convert memory statistics to bytes.
+     * @return The running exporter.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static MetricsExporter start(int port, Supplier<SystemSnapshot> snapshots, long pageSize) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "metrics-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        MetricsExporter exporter = new MetricsExporter(server, executor, snapshots, pageSize);
+        server.createContext("/metrics", exporter::handle);
+        server.setExecutor(executor);
+        server.start();
+        return exporter;
+    }
+
+    /**
+     * Stops serving, letting in-flight scrapes finish for up to a second.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // ========================= Encoding Functions ========================= //
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Encoder encoder = encoders.get();
+            encoder.length = 0;
+            encode(snapshots.get(), encoder);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, encoder.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(encoder.bytes, 0, encoder.length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Encodes every metric of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @param out      The encoder receiving the response body.
+     */
+    private void encode(SystemSnapshot snapshot, Encoder out) {
+        out.put(CPU);
+        writeValue(out, snapshot.getCpuLoad());
+
+        CpuBreakdown breakdown = snapshot.getCpuBreakdown();
+        if (breakdown != null) {
+            out.put(CPU_CORE);
+            for (int core = 0; core < breakdown.getCoreCount(); core++) {
+                for (int f = 0; f < CpuBreakdown.FIELD_COUNT; f++) {
+                    out.put(CPU_CORE_PREFIXES[f]);
+                    out.putLong(core);
+                    out.put(CPU_CORE_SUFFIX);
+                    out.putDouble(breakdown.get(core, f));
+                    out.put((byte) '\n');
+                }
+            }
+        }
+
+        out.put(MEMORY);
+        writeValue(out, snapshot.getMemoryUsage());
+        out.put(MEMORY_TOTAL);
+        writeValue(out, snapshot.getTotalMemory());
+        out.put(MEMORY_STATE);
+        MemoryStats memStats = snapshot.getMemStats();
+        for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+            out.put(MEMORY_STATE_PREFIXES[f]);
+            out.putLong(memStats.get(f) * pageSize);
+            out.put((byte) '\n');
+        }
+
+        out.put(DISK);
+        writeValue(out, snapshot.getIoStats());
+        out.put(NET_IN);
+        writeValue(out, snapshot.getNetInRate());
+        out.put(NET_OUT);
+        writeValue(out, snapshot.getNetOutRate());
+
+        DeviceRates disk = snapshot.getDiskRates();
+        if (disk != null && disk.getDeviceCount() > 0) {
+            out.put(DISK_BYTES);
+            writeDevices(out, disk, DISK_BYTES_PREFIX, DeviceRates.READ_BYTES, READ_SUFFIX);
+            writeDevices(out, disk, DISK_BYTES_PREFIX, DeviceRates.WRITE_BYTES, WRITE_SUFFIX);
+            out.put(DISK_OPS);
+            writeDevices(out, disk, DISK_OPS_PREFIX, DeviceRates.READ_OPS, READ_SUFFIX);
+            writeDevices(out, disk, DISK_OPS_PREFIX, DeviceRates.WRITE_OPS, WRITE_SUFFIX);
+            out.put(DISK_UTIL);
+            writeDevices(out, disk, DISK_UTIL_PREFIX, DeviceRates.UTILIZATION, DEVICE_SUFFIX);
+        }
+        DeviceRates net = snapshot.getNetRates();
+        if (net != null && net.getDeviceCount() > 0) {
+            out.put(NET_BYTES);
+            writeDevices(out, net, NET_BYTES_PREFIX, DeviceRates.RX_BYTES, RX_SUFFIX);
+            writeDevices(out, net, NET_BYTES_PREFIX, DeviceRates.TX_BYTES, TX_SUFFIX);
+            out.put(NET_PACKETS);
+            writeDevices(out, net, NET_PACKETS_PREFIX, DeviceRates.RX_PACKETS, RX_SUFFIX);
+            writeDevices(out, net, NET_PACKETS_PREFIX, DeviceRates.TX_PACKETS, TX_SUFFIX);
+        }
+    }
+
+    /**
+     * Writes one sample line per device for a field, labeled with the device name.
+     *
+     * @param out    The encoder.
+     * @param rates  The per-device rates.
+     * @param prefix The metric name up to the opening quote of the device label.
+     * @param field  The field to write.
+     * @param suffix The rest of the label set after the device name, ending with a space.
+     */
+    private static void writeDevices(Encoder out, DeviceRates rates, byte[] prefix, int field, byte[] suffix) {
+        for (int d = 0; d < rates.getDeviceCount(); d++) {
+            out.put(prefix);
+            out.putAscii(rates.getName(d));
+            out.put(suffix);
+            out.putDouble(rates.get(d, field));
+            out.put((byte) '\n');
+        }
+    }
+
+    /**
+     * Writes the value of an unlabeled gauge, whose pre-encoded block ends with the metric name and a space.
+     */
+    private static void writeValue(Encoder out, double value) {
+        out.putDouble(value);
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Pre-encodes the HELP and TYPE lines of a labeled gauge.
+     *
+     * @param name The metric name.
+     * @param help The help text.
+     * @return The encoded lines.
+     */
+    private static byte[] header(String name, String help) {
+        return ascii("# HELP " + name + " " + help + "\n# TYPE " + name + " gauge\n");
+    }
+
+    /**
+     * Pre-encodes the HELP and TYPE lines of an unlabeled gauge, followed by the start of its sample line.
+     *
+     * @param name The metric name.
+     * @param help The help text.
+     * @return The encoded lines.
+     */
+    private static byte[] gauge(String name, String help) {
+        return ascii("# HELP " + name + " " + help + "\n# TYPE " + name + " gauge\n" + name + " ");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,320 @@
+package sysmon;
+
+import java.io.IOException;
+
+/**
+ * The one-shot modes for scripts: `--once` prints a single sample and `--count N` prints N, one line each on
+ * stdout as JSON or CSV, without a terminal.
+ * <p>
+ * {@link Launcher} starts this before {@link LanternaSystemMonitor} is loaded, whose class initialization opens
+ * every collector and the terminal library. Here only the procfs sources of the requested metric groups are
+ * read, and nothing else is set up. Rates need two readings, so a run takes a baseline and prints the first
+ * sample one interval later; a memory-only `--once` does not wait at all. Without procfs (macOS), the regular
+ * collectors are started instead, which brings back their startup cost and the forking sources' second.
+ * Column names follow the metrics of the alert rules where there is one, e.g. "disk_read" or "mem_wired".
+ */
+final class OneShot {
+
+    private static final String USAGE = "usage: LanternaSystemMonitor --once | --count <n> [--interval <ms>]"
+            + " [--format json|csv]\n       [--metrics cpu,memory,disk,net,saturation,tcp]";
+
+    // Metric groups, selected with --metrics
+    private static final int CPU = 0;
+    private static final int MEMORY = 1;
+    private static final int DISK = 2;
+    private static final int NET = 3;
+    private static final int SATURATION = 4;
+    private static final int TCP = 5;
+    private static final int GROUP_COUNT = 6;
+
+    private static final String[] GROUP_LABELS = {"cpu", "memory", "disk", "net", "saturation", "tcp"};
+    private static final String DEFAULT_GROUPS = "cpu,memory,disk,net";
+
+    private static final String[][] COLUMNS = {
+            {"cpu", "cpu_user", "cpu_system", "cpu_iowait", "cpu_irq", "cpu_steal"},
+            {"memory", "mem_total", "mem_free", "mem_active", "mem_inactive", "mem_wired", "mem_compressed",
+                    "mem_filebacked", "mem_anonymous"},
+            {"disk_read", "disk_write", "disk_read_ops", "disk_write_ops", "disk_util"},
+            {"net_rx", "net_tx", "net_rx_packets", "net_tx_packets", "net_rx_errors", "net_rx_drops",
+                    "net_tx_errors", "net_tx_drops"},
+            {"stall_cpu_some", "stall_cpu_full", "stall_memory_some", "stall_memory_full", "stall_io_some",
+                    "stall_io_full", "major_faults", "swap_in", "swap_out", "run_queue", "load1", "load5", "load15"},
+            {"tcp_active_opens", "tcp_passive_opens", "tcp_attempt_fails", "tcp_estab_resets", "tcp_in_segs",
+                    "tcp_out_segs", "tcp_retrans_segs", "tcp_out_rsts", "tcp_listen_overflows", "tcp_listen_drops",
+                    "tcp_timeouts", "udp_in_errors", "udp_rcvbuf_errors", "tcp_retrans_percent", "tcp_established",
+                    "tcp_syn_sent", "tcp_syn_recv", "tcp_fin_wait1", "tcp_fin_wait2", "tcp_time_wait", "tcp_close",
+                    "tcp_close_wait", "tcp_last_ack", "tcp_listen", "tcp_closing", "sockets_used", "tcp_inuse",
+                    "tcp_orphans", "tcp_tw", "tcp_memory"}
+    };
+
+    // Rates of a --once run cover this much unless --interval is given
+    private static final long ONCE_INTERVAL_MILLIS = 100;
+    // Time the regular collectors get to publish a first sample, as the forking sources only emit once per second
+    private static final long FALLBACK_WARMUP_MILLIS = 1000;
+
+    private final boolean[] groups;
+    private final boolean csv;
+    private final long pageSize;
+    private final long totalMemory;
+    private final ProcfsCollector procfs;
+    private final TcpCollector tcpCollector;
+    private final double[] values;
+    private final StringBuilder line = new StringBuilder(512);
+    private final MemoryStats memStats = new MemoryStats();
+
+    private OneShot(boolean[] groups, boolean csv, HostFacts hostFacts, ProcfsCollector procfs,
+                    TcpCollector tcpCollector) {
+        this.groups = groups;
+        this.csv = csv;
+        this.pageSize = hostFacts.getPageSize();
+        this.totalMemory = hostFacts.getTotalMemory();
+        this.procfs = procfs;
+        this.tcpCollector = tcpCollector;
+        int columns = 0;
+        for (int g = 0; g < GROUP_COUNT; g++) if (groups[g]) columns += COLUMNS[g].length;
+        this.values = new double[columns];
+    }
+
+    /**
+     * Returns whether the arguments ask for a one-shot mode.
+     *
+     * @param args Command-line arguments.
+     * @return True if they contain `--once` or `--count`.
+     */
+    static boolean isRequested(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--once") || arg.equals("--count")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Prints the requested samples and returns; exits with status 2 on invalid arguments and 1 when the
+     * sources cannot be read.
+     *
+     * @param args Command-line arguments, see {@link #USAGE}.
+     */
+    static void main(String[] args) {
+        int count = 0;
+        long intervalMillis = -1;
+        boolean csv = false;
+        String groupList = DEFAULT_GROUPS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--once")) {
+                    count = 1;
+                } else if (args[i].equals("--count") && i + 1 < args.length) {
+                    count = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (args[i].equals("--interval") && i + 1 < args.length) {
+                    intervalMillis = Math.max(10, Long.parseLong(args[++i]));
+                } else if (args[i].equals("--format") && i + 1 < args.length
+                        && (args[i + 1].equals("json") || args[i + 1].equals("csv"))) {
+                    csv = args[++i].equals("csv");
+                } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                    groupList = args[++i];
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        boolean[] groups = parseGroups(groupList);
+        if (groups == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (intervalMillis < 0) intervalMillis = count == 1 ? ONCE_INTERVAL_MILLIS : 1000;
+
+        HostFacts hostFacts = HostFacts.discover();
+        OneShot oneShot = new OneShot(groups, csv, hostFacts, ProcfsCollector.openIfAvailable(hostFacts),
+                groups[TCP] ? TcpCollector.openIfAvailable(hostFacts) : null);
+        try {
+            oneShot.run(count, intervalMillis);
+        } catch (IOException e) {
+            System.err.println("Error reading procfs: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of metric groups.
+     *
+     * @return The selected groups, or null if a name is unknown.
+     */
+    private static boolean[] parseGroups(String list) {
+        boolean[] groups = new boolean[GROUP_COUNT];
+        for (String name : list.split(",")) {
+            int g = 0;
+            while (g < GROUP_COUNT && !GROUP_LABELS[g].equals(name.trim())) g++;
+            if (g == GROUP_COUNT) return null;
+            groups[g] = true;
+        }
+        return groups;
+    }
+
+    // ========================= Sampling Functions ========================= //
+
+    /**
+     * Takes the baseline and prints the samples, the first one interval after the baseline.
+     */
+    private void run(int count, long intervalMillis) throws IOException, InterruptedException {
+        if (csv) printHeader();
+        CollectorScheduler scheduler = null;
+        boolean baseline = groups[CPU] || groups[DISK] || groups[NET] || groups[SATURATION] || groups[TCP];
+        if (procfs == null) {
+            scheduler = LanternaSystemMonitor.startCollectors(intervalMillis);
+            Thread.sleep(FALLBACK_WARMUP_MILLIS);
+        } else if (baseline) {
+            // the first rates cover the time since boot
+            sample(SystemSnapshot.empty());
+        }
+
+        Ticker ticker = new Ticker(intervalMillis);
+        if (scheduler == null && baseline) ticker.advance();
+        try {
+            for (int n = 0; n < count; n++) {
+                ticker.await();
+                SystemSnapshot snapshot = scheduler != null ? scheduler.getSnapshot() : sample(SystemSnapshot.empty());
+                print(System.currentTimeMillis(), snapshot);
+            }
+        } finally {
+            if (scheduler != null) scheduler.stop();
+        }
+    }
+
+    /**
+     * Reads the requested groups from procfs into a snapshot.
+     */
+    private SystemSnapshot sample(SystemSnapshot s) throws IOException {
+        if (groups[CPU]) {
+            CpuBreakdown breakdown = procfs.sampleCpu();
+            s = s.withCpuLoad(breakdown.getTotal(CpuBreakdown.BUSY), breakdown);
+        }
+        if (groups[MEMORY]) {
+            memStats.clear();
+            procfs.readMemoryStats(memStats);
+            s = s.withMemory(memStats, (double) memStats.getUsedPages() * pageSize / totalMemory * 100, totalMemory);
+        }
+        if (groups[DISK]) s = s.withDiskRates(procfs.sampleDisk());
+        if (groups[NET]) s = s.withNetRates(procfs.sampleNetwork());
+        if (groups[SATURATION]) s = s.withSaturation(procfs.sampleSaturation());
+        if (groups[TCP] && tcpCollector != null) s = s.withTcp(tcpCollector.sample());
+        return s;
+    }
+
+    // ========================= Output Functions ========================= //
+
+    private void printHeader() {
+        line.setLength(0);
+        line.append("time");
+        for (int g = 0; g < GROUP_COUNT; g++) {
+            if (!groups[g]) continue;
+            for (String column : COLUMNS[g]) line.append(',').append(column);
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Prints one sample as a JSON object or a CSV row; values a source does not provide are null or empty.
+     */
+    private void print(long now, SystemSnapshot snapshot) {
+        fill(snapshot);
+        line.setLength(0);
+        line.append(csv ? "" : "{\"time\":").append(now);
+        int c = 0;
+        for (int g = 0; g < GROUP_COUNT; g++) {
+            if (!groups[g]) continue;
+            for (String column : COLUMNS[g]) {
+                line.append(',');
+                if (!csv) line.append('"').append(column).append("\":");
+                appendValue(line, values[c++]);
+            }
+        }
+        if (!csv) line.append('}');
+        System.out.println(line);
+    }
+
+    /**
+     * Fills the values of the requested groups in the order of {@link #COLUMNS}.
+     */
+    private void fill(SystemSnapshot s) {
+        int c = 0;
+        if (groups[CPU]) {
+            CpuBreakdown breakdown = s.getCpuBreakdown();
+            values[c++] = s.getCpuLoad();
+            for (int f = CpuBreakdown.USER; f < CpuBreakdown.FIELD_COUNT; f++) {
+                values[c++] = breakdown != null ? breakdown.getTotal(f) : Double.NaN;
+            }
+        }
+        if (groups[MEMORY]) {
+            MemoryStats stats = s.getMemStats();
+            values[c++] = s.getMemoryUsage();
+            values[c++] = s.getTotalMemory();
+            for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) values[c++] = stats.get(f) * pageSize;
+        }
+        if (groups[DISK]) {
+            DeviceRates disk = s.getDiskRates();
+            for (int f = 0; f < DeviceRates.DISK_FIELD_COUNT; f++) values[c++] = deviceValue(disk, f);
+        }
+        if (groups[NET]) {
+            DeviceRates net = s.getNetRates();
+            for (int f = 0; f < DeviceRates.NET_FIELD_COUNT; f++) values[c++] = deviceValue(net, f);
+        }
+        if (groups[SATURATION]) {
+            SaturationStats saturation = s.getSaturation();
+            boolean pressure = saturation != null && saturation.isPressureAvailable();
+            for (int r = 0; r < SaturationStats.RESOURCE_COUNT; r++) {
+                values[c++] = pressure ? saturation.getPressure(r, SaturationStats.SOME_STALL) : Double.NaN;
+                values[c++] = pressure ? saturation.getPressure(r, SaturationStats.FULL_STALL) : Double.NaN;
+            }
+            for (int f = 0; f < SaturationStats.FIELD_COUNT; f++) {
+                values[c++] = saturation != null ? saturation.get(f) : Double.NaN;
+            }
+        }
+        if (groups[TCP]) {
+            TcpStats tcp = s.getTcp();
+            for (int f = 0; f < TcpStats.RATE_COUNT; f++) values[c++] = tcp != null ? tcp.getRate(f) : Double.NaN;
+            values[c++] = tcp != null ? tcp.getRetransmitPercent() : Double.NaN;
+            boolean states = tcp != null && tcp.isStatesAvailable();
+            for (int st = TcpStats.ESTABLISHED; st < TcpStats.STATE_COUNT; st++) {
+                values[c++] = states ? tcp.getConnections(st) : Double.NaN;
+            }
+            for (int f = 0; f < TcpStats.TOTAL_COUNT; f++) values[c++] = tcp != null ? tcp.getTotal(f) : Double.NaN;
+        }
+    }
+
+    /**
+     * Returns a field summed over all devices, or of the busiest device for utilization, which does not add up.
+     */
+    private static double deviceValue(DeviceRates rates, int field) {
+        if (rates == null || field >= rates.getFieldCount()) return Double.NaN;
+        if (field != DeviceRates.UTILIZATION) return rates.getTotal(field);
+        double busiest = 0;
+        for (int d = 0; d < rates.getDeviceCount(); d++) busiest = Math.max(busiest, rates.get(d, field));
+        return busiest;
+    }
+
+    /**
+     * Appends a value with at most two decimals and without trailing zeros, or null (JSON) or nothing (CSV)
+     * for a missing one. Formatted by hand, as {@link String#format} alone loads more classes than the rest
+     * of a run.
+     */
+    private void appendValue(StringBuilder sb, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            if (!csv) sb.append("null");
+            return;
+        }
+        long hundredths = Math.round(Math.abs(value) * 100);
+        if (value < 0 && hundredths != 0) sb.append('-');
+        sb.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction == 0) return;
+        sb.append('.');
+        if (fraction < 10) sb.append('0').append(fraction);
+        else sb.append(fraction % 10 == 0 ? fraction / 10 : fraction);
+    }
+}
@@ -0,0 +1,359 @@
+package sysmon;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Incremental scanner of `/proc/[pid]/stat`, `statm` and `io` that selects the top-N processes.
+ * <p>
+ * The pid list is read once per cycle and then walked a bounded slice per tick, so hosts with tens of
+ * thousands of processes spread the work over several ticks. The processes that made the previous top-N
+ * are re-sampled on every tick so the table itself stays fresh. Command names are cached per pid (and
+ * re-read only when the pid is reused), all files are read into one reused buffer, and the top-N for each
+ * sort key is selected with a bounded min-heap instead of sorting every process.
+ */
+public final class ProcessScanner {
+
+    private static final Path PROC = Paths.get("/proc");
+    private static final long CLOCK_TICKS = 100; // USER_HZ, fixed at 100 on Linux for /proc reporting
+
+    private static final byte[] READ_BYTES = "read_bytes:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_BYTES = "write_bytes:".getBytes(StandardCharsets.US_ASCII);
+
+    private final int topN;
+    private final int budget;
+    private final long pageSize;
+
+    // Known processes by pid, rebuilt after every full cycle to drop exited processes
+    private PidTable table = new PidTable(1024);
+
+    // Pid list of the current cycle and the position of the next slice
+    private int[] pids = new int[1024];
+    private int pidCount = 0;
+    private int cursor = 0;
+
+    // Previous top-N across all sort keys, re-sampled every tick
+    private final Entry[] previousTop;
+    private int previousTopCount = 0;
+
+    // Per-key selection heaps
+    private final Entry[][] heaps;
+
+    // Reused read buffer
+    private final ByteTokenizer tok = new ByteTokenizer(4096);
+
+    /**
+     * State of a single process between samples.
+     */
+    private static final class Entry {
+        final int pid;
+        final Path statPath;
+        final Path statmPath;
+        final Path ioPath;
+        String name = "?";
+        long startTime = -1;
+        boolean ioReadable = true;
+        boolean exited = false;
+
+        long sampledAt = 0;
+        long cpuTicks = 0;
+        long readBytes = 0;
+        long writeBytes = 0;
+
+        double cpuPercent = 0;
+        long rssBytes = 0;
+        double readRate = 0;
+        double writeRate = 0;
+
+        Entry(int pid) {
+            this.pid = pid;
+            Path dir = PROC.resolve(Integer.toString(pid));
+            this.statPath = dir.resolve("stat");
+            this.statmPath = dir.resolve("statm");
+            this.ioPath = dir.resolve("io");
+        }
+
+        double key(int sortKey) {
+            switch (sortKey) {
+                case ProcessTable.BY_CPU: return cpuPercent;
+                case ProcessTable.BY_RSS: return rssBytes;
+                default: return readRate + writeRate;
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map from pid to entry, so lookups do not box the pid.
+     */
+    private static final class PidTable {
+        final int[] keys;
+        final Entry[] values;
+        final int mask;
+        int size = 0;
+
+        PidTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+            keys = new int[capacity];
+            values = new Entry[capacity];
+            mask = capacity - 1;
+        }
+
+        Entry get(int pid) {
+            for (int i = mix(pid) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == pid) return values[i];
+            }
+            return null;
+        }
+
+        void put(Entry e) {
+            int i = mix(e.pid) & mask;
+            while (values[i] != null && keys[i] != e.pid) i = (i + 1) & mask;
+            if (values[i] == null) size++;
+            keys[i] = e.pid;
+            values[i] = e;
+        }
+
+        private static int mix(int pid) {
+            return pid * 0x9E3779B9;
+        }
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param topN     The number of processes kept per sort key.
+     * @param budget   The maximum number of pids sampled per tick, besides the previous top-N.
+     * @param pageSize The system page size in bytes, used to convert `statm` pages.
+     */
+    public ProcessScanner(int topN, int budget, long pageSize) {
+        this.topN = topN;
+        this.budget = budget;
+        this.pageSize = pageSize;
+        this.previousTop = new Entry[topN * ProcessTable.SORT_KEY_COUNT];
+        this.heaps = new Entry[ProcessTable.SORT_KEY_COUNT][topN];
+    }
+
+    /**
+     * Checks whether the host exposes per-process procfs files.
+     *
+     * @return True on Linux.
+     */
+    public static boolean isAvailable() {
+        return Files.isReadable(PROC.resolve("self").resolve("stat"));
+    }
+
+    /**
+     * Samples the previous top processes plus the next slice of the pid list and selects the new top-N.
+     *
+     * @return The top processes by CPU, resident memory and I/O.
+     */
+    public synchronized ProcessTable scan() {
+        long now = System.nanoTime();
+
+        for (int i = 0; i < previousTopCount; i++) {
+            if (previousTop[i].sampledAt != now) sample(previousTop[i], now);
+        }
+
+        if (cursor >= pidCount) startCycle();
+        int end = Math.min(pidCount, cursor + budget);
+        for (; cursor < end; cursor++) {
+            Entry e = table.get(pids[cursor]);
+            if (e == null) {
+                e = new Entry(pids[cursor]);
+                table.put(e);
+            }
+            if (e.sampledAt != now) sample(e, now);
+        }
+
+        return selectTop();
+    }
+
+    // ========================= Scanning Functions ========================= //
+
+    /**
+     * Re-lists the pids in `/proc` and rebuilds the table with only the processes that still exist.
+     */
+    private void startCycle() {
+        pidCount = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(PROC)) {
+            for (Path p : stream) {
+                int pid = parsePid(p.getFileName().toString());
+                if (pid < 0) continue;
+                if (pidCount == pids.length) {
+                    int[] grown = new int[pids.length * 2];
+                    System.arraycopy(pids, 0, grown, 0, pidCount);
+                    pids = grown;
+                }
+                pids[pidCount++] = pid;
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing /proc: " + e.getMessage());
+        }
+
+        PidTable next = new PidTable(pidCount);
+        for (int i = 0; i < pidCount; i++) {
+            Entry e = table.get(pids[i]);
+            if (e != null && !e.exited) next.put(e);
+        }
+        table = next;
+        cursor = 0;
+    }
+
+    /**
+     * Samples one process, updating its rates over the time since its previous sample.
+     *
+     * @param e   The process entry.
+     * @param now The time of this tick in nanoseconds.
+     */
+    private void sample(Entry e, long now) {
+        if (e.exited) return;
+        try {
+            // stat: pid (comm) state ppid ... utime(14) stime(15) ... starttime(22)
+            tok.read(e.statPath);
+            int open = tok.indexOf(0, (byte) '(');
+            int close = tok.lastIndexOf((byte) ')');
+            if (open < 0 || close < 0) return;
+            int pos = close + 2;
+            long utime = 0, stime = 0, startTime = 0;
+            for (int field = 3; field <= 22; field++) {
+                if (field == 14) utime = tok.parseLong(pos);
+                else if (field == 15) stime = tok.parseLong(pos);
+                else if (field == 22) startTime = tok.parseLong(pos);
+                pos = tok.skipSpaces(tok.skipToken(pos));
+            }
+            if (startTime != e.startTime) {
+                // new process, or the pid was reused: reset the baseline
+                e.name = new String(tok.bytes(), open + 1, close - open - 1, StandardCharsets.UTF_8);
+                e.startTime = startTime;
+                e.sampledAt = 0;
+            }
+
+            // statm: size resident shared ...
+            tok.read(e.statmPath);
+            e.rssBytes = tok.parseLong(tok.skipToken(0) + 1) * pageSize;
+
+            long readBytes = e.readBytes;
+            long writeBytes = e.writeBytes;
+            if (e.ioReadable) {
+                try {
+                    tok.read(e.ioPath);
+                    for (int line = 0; line < tok.limit(); line = tok.nextLine(line)) {
+                        if (tok.startsWith(line, READ_BYTES)) readBytes = tok.parseLong(tok.skipSpaces(line + READ_BYTES.length));
+                        else if (tok.startsWith(line, WRITE_BYTES)) writeBytes = tok.parseLong(tok.skipSpaces(line + WRITE_BYTES.length));
+                    }
+                } catch (AccessDeniedException ex) {
+                    e.ioReadable = false;
+                }
+            }
+
+            long cpuTicks = utime + stime;
+            if (e.sampledAt != 0) {
+                double seconds = (now - e.sampledAt) / 1_000_000_000.0;
+                if (seconds > 0) {
+                    e.cpuPercent = (cpuTicks - e.cpuTicks) * 100.0 / CLOCK_TICKS / seconds;
+                    e.readRate = Math.max(0, readBytes - e.readBytes) / seconds;
+                    e.writeRate = Math.max(0, writeBytes - e.writeBytes) / seconds;
+                }
+            }
+            e.cpuTicks = cpuTicks;
+            e.readBytes = readBytes;
+            e.writeBytes = writeBytes;
+            e.sampledAt = now;
+        } catch (IOException ex) {
+            e.exited = true; // the process is gone, drop it at the next cycle
+        }
+    }
+
+    /**
+     * Selects the top-N entries for every sort key with bounded min-heaps.
+     *
+     * @return The published table.
+     */
+    private ProcessTable selectTop() {
+        int[] heapSizes = new int[ProcessTable.SORT_KEY_COUNT];
+        for (int i = 0; i < table.values.length; i++) {
+            Entry e = table.values[i];
+            if (e == null || e.exited || e.sampledAt == 0) continue;
+            for (int k = 0; k < ProcessTable.SORT_KEY_COUNT; k++) {
+                if (e.key(k) > 0) heapSizes[k] = offer(heaps[k], heapSizes[k], e, k); // idle processes never rank
+            }
+        }
+
+        ProcessTable.Row[][] top = new ProcessTable.Row[ProcessTable.SORT_KEY_COUNT][];
+        previousTopCount = 0;
+        for (int k = 0; k < ProcessTable.SORT_KEY_COUNT; k++) {
+            Entry[] heap = heaps[k];
+            int size = heapSizes[k];
+            ProcessTable.Row[] rows = new ProcessTable.Row[size];
+            // pop the min-heap from the back so rows end up highest first
+            for (int n = size; n > 0; n--) {
+                Entry e = heap[0];
+                heap[0] = heap[n - 1];
+                siftDown(heap, n - 1, 0, k);
+                rows[n - 1] = new ProcessTable.Row(e.pid, e.name, e.cpuPercent, e.rssBytes, e.readRate, e.writeRate);
+                previousTop[previousTopCount++] = e;
+                heap[n - 1] = null;
+            }
+            top[k] = rows;
+        }
+        return new ProcessTable(top, table.size);
+    }
+
+    /**
+     * Offers an entry to a bounded min-heap, replacing the smallest entry when the heap is full.
+     *
+     * @param heap The heap array.
+     * @param size The current heap size.
+     * @param e    The entry to offer.
+     * @param key  The sort key.
+     * @return The new heap size.
+     */
+    private int offer(Entry[] heap, int size, Entry e, int key) {
+        if (size < topN) {
+            int i = size++;
+            heap[i] = e;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent].key(key) <= heap[i].key(key)) break;
+                Entry t = heap[parent];
+                heap[parent] = heap[i];
+                heap[i] = t;
+                i = parent;
+            }
+        } else if (e.key(key) > heap[0].key(key)) {
+            heap[0] = e;
+            siftDown(heap, size, 0, key);
+        }
+        return size;
+    }
+
+    private static void siftDown(Entry[] heap, int size, int i, int key) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) return;
+            int smallest = left + 1 < size && heap[left + 1].key(key) < heap[left].key(key) ? left + 1 : left;
+            if (heap[i].key(key) <= heap[smallest].key(key)) return;
+            Entry t = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = t;
+            i = smallest;
+        }
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    private static int parsePid(String name) {
+        int pid = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            pid = pid * 10 + (c - '0');
+        }
+        return name.isEmpty() ? -1 : pid;
+    }
+}
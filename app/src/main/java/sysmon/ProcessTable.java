@@ -0,0 +1,72 @@
+package sysmon;
+
+/**
+ * Immutable result of a {@link ProcessScanner} pass: the top processes by CPU, resident memory and I/O.
+ */
+public final class ProcessTable {
+
+    public static final int BY_CPU = 0;
+    public static final int BY_RSS = 1;
+    public static final int BY_IO = 2;
+    public static final int SORT_KEY_COUNT = 3;
+
+    private static final String[] SORT_KEY_LABELS = {"cpu", "rss", "i/o"};
+
+    private final Row[][] top;
+    private final int processCount;
+
+    /**
+     * A single process row.
+     */
+    public static final class Row {
+        public final int pid;
+        public final String name;
+        public final double cpuPercent;
+        public final long rssBytes;
+        public final double readRate;
+        public final double writeRate;
+
+        Row(int pid, String name, double cpuPercent, long rssBytes, double readRate, double writeRate) {
+            this.pid = pid;
+            this.name = name;
+            this.cpuPercent = cpuPercent;
+            this.rssBytes = rssBytes;
+            this.readRate = readRate;
+            this.writeRate = writeRate;
+        }
+    }
+
+    ProcessTable(Row[][] top, int processCount) {
+        this.top = top;
+        this.processCount = processCount;
+    }
+
+    /**
+     * Returns the top processes for a sort key, highest first.
+     *
+     * @param sortKey The sort key, e.g. {@link #BY_CPU}.
+     * @return The rows, at most the scanner's top-N.
+     */
+    public Row[] getTop(int sortKey) {
+        return top[sortKey];
+    }
+
+    /**
+     * Returns the number of processes known to the scanner.
+     *
+     * @return The process count.
+     */
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    /**
+     * Returns the short label of a sort key, such as "rss".
+     *
+     * @param sortKey The sort key.
+     * @return The label.
+     */
+    public static String sortKeyLabel(int sortKey) {
+        return SORT_KEY_LABELS[sortKey];
+    }
+}
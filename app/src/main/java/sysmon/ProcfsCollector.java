@@ -0,0 +1,440 @@
+package sysmon;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Linux backend that samples system stats straight from procfs.
+ * <p>
+ * The channels for `/proc/stat`, `/proc/meminfo`, `/proc/net/dev` and `/proc/diskstats`, and where the kernel
+ * has them `/proc/pressure/{cpu,memory,io}`, `/proc/vmstat` and `/proc/loadavg`, are opened once, by the first
+ * sample of their source, and re-read from offset 0 on every tick into a single reused buffer, so sampling never forks a process and parsing does not
+ * allocate; each sample returns a new result object. The sampling methods share that buffer and are
+ * synchronized, since each collector calls them from its own thread. The TCP/IP stack is sampled by
+ * {@link TcpCollector}.
+ */
+public final class ProcfsCollector {
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private static final int SECTOR_SIZE = 512;
+    private static final String[] REQUIRED_FILES = {"stat", "meminfo", "net/dev", "diskstats"};
+
+    // meminfo keys, matched against the raw bytes of each line
+    private static final byte[] MEM_FREE = ascii("MemFree:");
+    private static final byte[] MEM_BUFFERS = ascii("Buffers:");
+    private static final byte[] MEM_CACHED = ascii("Cached:");
+    private static final byte[] MEM_ACTIVE = ascii("Active:");
+    private static final byte[] MEM_INACTIVE = ascii("Inactive:");
+    private static final byte[] MEM_UNEVICTABLE = ascii("Unevictable:");
+    private static final byte[] MEM_ZSWAP = ascii("Zswap:");
+    private static final byte[] MEM_ANON_PAGES = ascii("AnonPages:");
+    private static final byte[] MEM_SLAB = ascii("Slab:");
+    private static final byte[] MEM_KERNEL_STACK = ascii("KernelStack:");
+    private static final byte[] MEM_PAGE_TABLES = ascii("PageTables:");
+    private static final byte[] CPU_PREFIX = ascii("cpu");
+    private static final byte[] LOOPBACK = ascii("lo");
+    private static final String[] PRESSURE_FILES = {"pressure/cpu", "pressure/memory", "pressure/io"};
+    private static final byte[] PRESSURE_SOME = ascii("some ");
+    private static final byte[] PRESSURE_FULL = ascii("full ");
+    private static final byte[] PRESSURE_AVG10 = ascii("avg10=");
+    private static final byte[] PRESSURE_AVG60 = ascii("avg60=");
+    private static final byte[] PRESSURE_TOTAL = ascii("total=");
+    private static final byte[] VM_MAJOR_FAULTS = ascii("pgmajfault ");
+    private static final byte[] VM_SWAP_IN = ascii("pswpin ");
+    private static final byte[] VM_SWAP_OUT = ascii("pswpout ");
+
+    // Opened by the first sample that reads them; the optional saturation files stay null if the kernel lacks them
+    private final Path procRoot;
+    private FileChannel statChannel;
+    private FileChannel meminfoChannel;
+    private FileChannel netDevChannel;
+    private FileChannel diskstatsChannel;
+    private final FileChannel[] pressureChannels = new FileChannel[SaturationStats.RESOURCE_COUNT];
+    private FileChannel vmstatChannel;
+    private FileChannel loadavgChannel;
+    private boolean saturationOpened = false;
+    private final HostFacts hostFacts;
+
+    // Reused read buffer, grown only if a file outgrows it
+    private final ByteTokenizer tok = new ByteTokenizer(16 * 1024);
+
+    // CPU tracking: tick counters of the aggregate line followed by one line per core
+    private long[] prevTicks;
+    private long[] curTicks;
+
+    // Per-interface rx/tx bytes, packets, errors and drops
+    private final RateEngine netRates = new RateEngine(1, 1, 1, 1, 1, 1, 1, 1);
+
+    // Per-device read/write bytes (from 512-byte sectors), read/write operations and busy time (ms/s to percent)
+    private final RateEngine diskRates = new RateEngine(SECTOR_SIZE, SECTOR_SIZE, 1, 1, 0.1);
+
+    // Stall totals in microseconds (some and full per resource), paging counters and when they were read
+    private final long[] stallTotals = new long[SaturationStats.RESOURCE_COUNT * 2];
+    private final long[] pagingCounters = new long[3];
+    private long saturationSampledAt = 0;
+
+    /**
+     * Creates a collector over the procfs files below a root directory; each file is opened by the first sample
+     * that reads it, so a caller only holds the files of the sources it samples.
+     *
+     * @param hostFacts The host facts.
+     * @param procRoot  `/proc`, or a directory with recorded copies of `stat`, `meminfo`, `net/dev` and `diskstats`.
+     */
+    ProcfsCollector(HostFacts hostFacts, Path procRoot) {
+        this.procRoot = procRoot;
+        this.hostFacts = hostFacts;
+
+        int lines = hostFacts.getCpuCount() + 1;
+        this.prevTicks = new long[lines * CpuBreakdown.TICK_COLUMNS];
+        this.curTicks = new long[lines * CpuBreakdown.TICK_COLUMNS];
+    }
+
+    /**
+     * Opens the procfs backend if the host exposes the required files.
+     *
+     * @param hostFacts The host facts, providing the page size and the block devices to count.
+     * @return A collector, or null if procfs is not available (e.g. on macOS).
+     */
+    public static ProcfsCollector openIfAvailable(HostFacts hostFacts) {
+        for (String file : REQUIRED_FILES) {
+            if (!Files.isReadable(PROC.resolve(file))) return null;
+        }
+        return new ProcfsCollector(hostFacts, PROC);
+    }
+
+    // ========================= Sampling Functions ========================= //
+
+    /**
+     * Samples the per-core CPU time breakdown from the `cpu` and `cpuN` lines of `/proc/stat`.
+     *
+     * @return The breakdown since the previous call; the first call covers the time since boot.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized CpuBreakdown sampleCpu() throws IOException {
+        if (statChannel == null) statChannel = open("stat");
+        tok.read(statChannel);
+
+        int coreCount = 0;
+        for (int pos = 0; pos < tok.limit() && tok.startsWith(pos, CPU_PREFIX); pos = tok.nextLine(pos)) {
+            // "cpu" is the aggregate line 0, "cpuN" is line N + 1
+            int field = pos + CPU_PREFIX.length;
+            int line = 0;
+            if (tok.bytes()[field] != ' ') {
+                line = (int) tok.parseLong(field) + 1;
+                field = tok.skipToken(field);
+            }
+            ensureTickCapacity(line + 1);
+
+            // user nice system idle iowait irq softirq steal
+            int base = line * CpuBreakdown.TICK_COLUMNS;
+            for (int column = 0; column < CpuBreakdown.TICK_COLUMNS; column++) {
+                field = tok.skipSpaces(field);
+                curTicks[base + column] = tok.parseLong(field);
+                field = tok.skipToken(field);
+            }
+            if (line > coreCount) coreCount = line;
+        }
+
+        CpuBreakdown breakdown = new CpuBreakdown(coreCount);
+        breakdown.compute(prevTicks, curTicks, coreCount);
+        System.arraycopy(curTicks, 0, prevTicks, 0, curTicks.length);
+        return breakdown;
+    }
+
+    /**
+     * Fills the memory statistics from `/proc/meminfo`, using the same page-count categories as `vm_stat`.
+     * <p>
+     * Linux has no wired or compressed page counts, so the closest equivalents are used: kernel
+     * memory (slab, stacks, page tables) plus unevictable pages for "wired", and zswap for "compressed".
+     *
+     * @param stats The statistics to fill, in pages.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized void readMemoryStats(MemoryStats stats) throws IOException {
+        if (meminfoChannel == null) meminfoChannel = open("meminfo");
+        tok.read(meminfoChannel);
+
+        long free = 0, buffers = 0, cached = 0, active = 0, inactive = 0, unevictable = 0;
+        long zswap = 0, anonymous = 0, slab = 0, kernelStack = 0, pageTables = 0;
+        for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+            if (tok.startsWith(pos, MEM_FREE)) free = parseKb(pos + MEM_FREE.length);
+            else if (tok.startsWith(pos, MEM_BUFFERS)) buffers = parseKb(pos + MEM_BUFFERS.length);
+            else if (tok.startsWith(pos, MEM_CACHED)) cached = parseKb(pos + MEM_CACHED.length);
+            else if (tok.startsWith(pos, MEM_ACTIVE)) active = parseKb(pos + MEM_ACTIVE.length);
+            else if (tok.startsWith(pos, MEM_INACTIVE)) inactive = parseKb(pos + MEM_INACTIVE.length);
+            else if (tok.startsWith(pos, MEM_UNEVICTABLE)) unevictable = parseKb(pos + MEM_UNEVICTABLE.length);
+            else if (tok.startsWith(pos, MEM_ZSWAP)) zswap = parseKb(pos + MEM_ZSWAP.length);
+            else if (tok.startsWith(pos, MEM_ANON_PAGES)) anonymous = parseKb(pos + MEM_ANON_PAGES.length);
+            else if (tok.startsWith(pos, MEM_SLAB)) slab = parseKb(pos + MEM_SLAB.length);
+            else if (tok.startsWith(pos, MEM_KERNEL_STACK)) kernelStack = parseKb(pos + MEM_KERNEL_STACK.length);
+            else if (tok.startsWith(pos, MEM_PAGE_TABLES)) pageTables = parseKb(pos + MEM_PAGE_TABLES.length);
+        }
+
+        long pageSize = hostFacts.getPageSize();
+        stats.set(MemoryStats.FREE, free / pageSize);
+        stats.set(MemoryStats.ACTIVE, active / pageSize);
+        stats.set(MemoryStats.INACTIVE, inactive / pageSize);
+        stats.set(MemoryStats.WIRED, (slab + kernelStack + pageTables + unevictable) / pageSize);
+        stats.set(MemoryStats.COMPRESSED, zswap / pageSize);
+        stats.set(MemoryStats.FILE_BACKED, (cached + buffers) / pageSize);
+        stats.set(MemoryStats.ANONYMOUS, anonymous / pageSize);
+    }
+
+    /**
+     * Samples the received and transmitted bytes, packets, errors and drops of every non-loopback interface from
+     * `/proc/net/dev`.
+     *
+     * @return The per-interface rates since the previous call; the first call reports zero.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized DeviceRates sampleNetwork() throws IOException {
+        if (netDevChannel == null) netDevChannel = open("net/dev");
+        tok.read(netDevChannel);
+        long now = System.nanoTime();
+
+        netRates.begin();
+        // first two lines are headers
+        int pos = tok.nextLine(tok.nextLine(0));
+        for (; pos < tok.limit(); pos = tok.nextLine(pos)) {
+            int nameStart = tok.skipSpaces(pos);
+            int colon = tok.indexOf(nameStart, (byte) ':');
+            if (colon < 0) continue;
+            if (colon - nameStart == LOOPBACK.length && tok.startsWith(nameStart, LOOPBACK)) continue;
+
+            // rx: bytes packets errs drop fifo frame compressed multicast, then tx: bytes packets ...
+            int slot = netRates.device(tok.bytes(), nameStart, colon);
+            int field = colon + 1;
+            for (int i = 0; i < 12; i++) {
+                field = tok.skipSpaces(field);
+                if (i == 0) netRates.counter(slot, DeviceRates.RX_BYTES, tok.parseLong(field));
+                else if (i == 1) netRates.counter(slot, DeviceRates.RX_PACKETS, tok.parseLong(field));
+                else if (i == 2) netRates.counter(slot, DeviceRates.RX_ERRORS, tok.parseLong(field));
+                else if (i == 3) netRates.counter(slot, DeviceRates.RX_DROPS, tok.parseLong(field));
+                else if (i == 8) netRates.counter(slot, DeviceRates.TX_BYTES, tok.parseLong(field));
+                else if (i == 9) netRates.counter(slot, DeviceRates.TX_PACKETS, tok.parseLong(field));
+                else if (i == 10) netRates.counter(slot, DeviceRates.TX_ERRORS, tok.parseLong(field));
+                else if (i == 11) netRates.counter(slot, DeviceRates.TX_DROPS, tok.parseLong(field));
+                field = tok.skipToken(field);
+            }
+        }
+        return netRates.commit(now);
+    }
+
+    /**
+     * Samples the bytes, operations and busy time of every whole block device from `/proc/diskstats`.
+     *
+     * @return The per-device rates since the previous call; the first call reports zero.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized DeviceRates sampleDisk() throws IOException {
+        if (diskstatsChannel == null) diskstatsChannel = open("diskstats");
+        tok.read(diskstatsChannel);
+        long now = System.nanoTime();
+
+        List<String> blockDevices = hostFacts.getBlockDevices();
+        diskRates.begin();
+        for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+            // major minor name reads merged sectors_read ms writes merged sectors_written ms in_flight ms_io ...
+            int field = tok.skipToken(tok.skipSpaces(pos));
+            field = tok.skipToken(tok.skipSpaces(field));
+            int nameStart = tok.skipSpaces(field);
+            int nameEnd = tok.skipToken(nameStart);
+            if (!isBlockDevice(blockDevices, nameStart, nameEnd)) continue;
+
+            int slot = diskRates.device(tok.bytes(), nameStart, nameEnd);
+            field = nameEnd;
+            for (int i = 0; i < 10; i++) {
+                field = tok.skipSpaces(field);
+                if (i == 0) diskRates.counter(slot, DeviceRates.READ_OPS, tok.parseLong(field));
+                else if (i == 2) diskRates.counter(slot, DeviceRates.READ_BYTES, tok.parseLong(field));
+                else if (i == 4) diskRates.counter(slot, DeviceRates.WRITE_OPS, tok.parseLong(field));
+                else if (i == 6) diskRates.counter(slot, DeviceRates.WRITE_BYTES, tok.parseLong(field));
+                else if (i == 9) diskRates.counter(slot, DeviceRates.UTILIZATION, tok.parseLong(field));
+                field = tok.skipToken(field);
+            }
+        }
+        return diskRates.commit(now);
+    }
+
+    /**
+     * Samples the saturation signals: pressure stall information from `/proc/pressure`, major faults and swapping
+     * from `/proc/vmstat` and the run queue and load averages from `/proc/loadavg`. A kernel without pressure
+     * stall information, or with it disabled, leaves the pressure fields zero and marked unavailable.
+     *
+     * @return The stats; stall shares and rates cover the time since the previous call, zero on the first.
+     * @throws IOException If `/proc/vmstat` or `/proc/loadavg` cannot be read.
+     */
+    public synchronized SaturationStats sampleSaturation() throws IOException {
+        long now = System.nanoTime();
+        double micros = saturationSampledAt != 0 ? (now - saturationSampledAt) / 1000.0 : 0;
+        double seconds = micros / 1_000_000.0;
+        SaturationStats stats = new SaturationStats();
+        if (!saturationOpened) {
+            for (int r = 0; r < SaturationStats.RESOURCE_COUNT; r++) {
+                pressureChannels[r] = openOptional(procRoot.resolve(PRESSURE_FILES[r]));
+            }
+            vmstatChannel = openOptional(procRoot.resolve("vmstat"));
+            loadavgChannel = openOptional(procRoot.resolve("loadavg"));
+            saturationOpened = true;
+        }
+
+        boolean pressureAvailable = true;
+        for (int r = 0; r < SaturationStats.RESOURCE_COUNT; r++) {
+            if (!readPressure(r, stats, micros)) pressureAvailable = false;
+        }
+        stats.setPressureAvailable(pressureAvailable);
+
+        // vmstat: "pgmajfault N", "pswpin N" and "pswpout N" among a few hundred counters
+        if (vmstatChannel != null) {
+            tok.read(vmstatChannel);
+            for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+                if (tok.startsWith(pos, VM_MAJOR_FAULTS)) {
+                    pagingRate(stats, SaturationStats.MAJOR_FAULTS, tok.parseLong(pos + VM_MAJOR_FAULTS.length), seconds);
+                } else if (tok.startsWith(pos, VM_SWAP_IN)) {
+                    pagingRate(stats, SaturationStats.SWAP_IN, tok.parseLong(pos + VM_SWAP_IN.length), seconds);
+                } else if (tok.startsWith(pos, VM_SWAP_OUT)) {
+                    pagingRate(stats, SaturationStats.SWAP_OUT, tok.parseLong(pos + VM_SWAP_OUT.length), seconds);
+                }
+            }
+        }
+
+        // loadavg: "0.52 0.58 0.59 2/842 12345", the fourth field being runnable/total tasks; the runnable count
+        // includes the thread reading it, which is not waiting for anything
+        if (loadavgChannel != null) {
+            tok.read(loadavgChannel);
+            int pos = 0;
+            stats.set(SaturationStats.LOAD_1, tok.parseDouble(pos));
+            pos = tok.skipSpaces(tok.skipToken(pos));
+            stats.set(SaturationStats.LOAD_5, tok.parseDouble(pos));
+            pos = tok.skipSpaces(tok.skipToken(pos));
+            stats.set(SaturationStats.LOAD_15, tok.parseDouble(pos));
+            pos = tok.skipSpaces(tok.skipToken(pos));
+            stats.set(SaturationStats.RUN_QUEUE, Math.max(0, tok.parseLong(pos) - 1));
+        }
+
+        saturationSampledAt = now;
+        return stats;
+    }
+
+    // ========================= Buffer Helper Functions ========================= //
+
+    /**
+     * Grows the tick counter arrays when a CPU with a higher index comes online.
+     *
+     * @param lines The number of `/proc/stat` cpu lines that must fit.
+     */
+    private void ensureTickCapacity(int lines) {
+        int needed = lines * CpuBreakdown.TICK_COLUMNS;
+        if (curTicks.length >= needed) return;
+        long[] grownPrev = new long[needed];
+        long[] grownCur = new long[needed];
+        System.arraycopy(prevTicks, 0, grownPrev, 0, prevTicks.length);
+        System.arraycopy(curTicks, 0, grownCur, 0, curTicks.length);
+        prevTicks = grownPrev;
+        curTicks = grownCur;
+    }
+
+    /**
+     * Reads one `/proc/pressure` file, "some avg10=0.12 avg60=0.05 avg300=0.01 total=123456" and the same for
+     * "full", and turns the growth of the totals into the share of time stalled.
+     *
+     * @param resource The resource.
+     * @param stats    The stats to fill.
+     * @param micros   The microseconds since the previous sample, 0 on the first.
+     * @return False if the kernel does not report pressure for the resource.
+     */
+    private boolean readPressure(int resource, SaturationStats stats, double micros) {
+        FileChannel channel = pressureChannels[resource];
+        if (channel == null) return false;
+        try {
+            tok.read(channel);
+        } catch (IOException e) {
+            return false; // PSI compiled in but disabled reads as EOPNOTSUPP
+        }
+        for (int line = 0; line < tok.limit(); line = tok.nextLine(line)) {
+            boolean some = tok.startsWith(line, PRESSURE_SOME);
+            if (!some && !tok.startsWith(line, PRESSURE_FULL)) continue;
+            int total = resource * 2 + (some ? 0 : 1);
+            for (int pos = tok.skipSpaces(line + PRESSURE_SOME.length); pos < tok.limit() && tok.bytes()[pos] != '\n';
+                 pos = tok.skipSpaces(tok.skipToken(pos))) {
+                if (tok.startsWith(pos, PRESSURE_AVG10)) {
+                    stats.setPressure(resource, some ? SaturationStats.SOME_AVG10 : SaturationStats.FULL_AVG10,
+                            tok.parseDouble(pos + PRESSURE_AVG10.length));
+                } else if (tok.startsWith(pos, PRESSURE_AVG60)) {
+                    stats.setPressure(resource, some ? SaturationStats.SOME_AVG60 : SaturationStats.FULL_AVG60,
+                            tok.parseDouble(pos + PRESSURE_AVG60.length));
+                } else if (tok.startsWith(pos, PRESSURE_TOTAL)) {
+                    long stalled = tok.parseLong(pos + PRESSURE_TOTAL.length);
+                    double share = micros > 0 ? Math.max(0, stalled - stallTotals[total]) * 100.0 / micros : 0;
+                    stats.setPressure(resource, some ? SaturationStats.SOME_STALL : SaturationStats.FULL_STALL,
+                            Math.min(100, share));
+                    stallTotals[total] = stalled;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turns the growth of a `/proc/vmstat` counter into a rate.
+     *
+     * @param stats   The stats to fill.
+     * @param field   The field, which is also the counter's index.
+     * @param counter The counter's current value.
+     * @param seconds The seconds since the previous sample, 0 on the first.
+     */
+    private void pagingRate(SaturationStats stats, int field, long counter, double seconds) {
+        stats.set(field, seconds > 0 ? Math.max(0, counter - pagingCounters[field]) / seconds : 0);
+        pagingCounters[field] = counter;
+    }
+
+    /**
+     * Parses a `kB` value as found in `/proc/meminfo`.
+     *
+     * @param pos The position just after the key.
+     * @return The value in bytes.
+     */
+    private long parseKb(int pos) {
+        return tok.parseLong(tok.skipSpaces(pos)) * 1024;
+    }
+
+    /**
+     * Checks whether a device name in the buffer is one of the tracked whole block devices.
+     *
+     * @param blockDevices The whole block devices known to the host facts.
+     * @param start        The position of the first byte of the name.
+     * @param end          The position just after the name.
+     * @return True if the device is tracked.
+     */
+    private boolean isBlockDevice(List<String> blockDevices, int start, int end) {
+        for (int d = 0; d < blockDevices.size(); d++) {
+            if (tok.equals(start, end, blockDevices.get(d))) return true;
+        }
+        return false;
+    }
+
+    private FileChannel open(String file) throws IOException {
+        return FileChannel.open(procRoot.resolve(file), StandardOpenOption.READ);
+    }
+
+    // ========================= Static Helper Functions ========================= //
+
+    static FileChannel openOptional(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
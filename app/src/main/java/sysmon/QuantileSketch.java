@@ -0,0 +1,106 @@
+package sysmon;
+
+/**
+ * Fixed-size, mergeable quantile sketch of non-negative values, e.g. the CPU usage or a byte rate.
+ * <p>
+ * Values are counted in multiples of a unit and bucketed log-linearly: every power of two is split into 16
+ * linear sub-buckets, so a reported quantile is within about 3% of the true value at any magnitude. The
+ * buckets cover the range up to a maximum given up front and are allocated once; larger values land in the
+ * last bucket. Two sketches with the same unit and range merge by adding their counts, which is how
+ * windows of any length are built from short panes without keeping raw samples.
+ * <p>
+ * Not thread-safe: samples are added and read on the render thread.
+ */
+public final class QuantileSketch {
+
+    private static final int SUB_BITS = 4;
+
+    private final double unit;
+    private final long maxUnits;
+    private final int[] counts;
+    private long count;
+    private double max;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param unit     The resolution of small values, e.g. 0.1 for a percentage.
+     * @param maxValue The largest value told apart from larger ones.
+     */
+    public QuantileSketch(double unit, double maxValue) {
+        this.unit = unit;
+        this.maxUnits = (long) Math.ceil(maxValue / unit);
+        this.counts = new int[LogLinearBuckets.bucket(maxUnits, SUB_BITS) + 1];
+    }
+
+    /**
+     * Adds a value; negative values are counted as zero.
+     *
+     * @param value The value.
+     */
+    public void add(double value) {
+        long units = value > 0 ? Math.min((long) (value / unit), maxUnits) : 0;
+        counts[LogLinearBuckets.bucket(units, SUB_BITS)]++;
+        count++;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds the values of another sketch with the same unit and range.
+     *
+     * @param other The sketch to merge in.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) return;
+        int[] theirs = other.counts;
+        for (int i = 0; i < counts.length; i++) counts[i] += theirs[i];
+        count += other.count;
+        if (other.max > max) max = other.max;
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        if (count == 0) return;
+        for (int i = 0; i < counts.length; i++) counts[i] = 0;
+        count = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value added.
+     *
+     * @return The exact maximum, or 0 when the sketch is empty.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value below which the given share of the values falls.
+     *
+     * @param quantile The quantile, e.g. 0.99.
+     * @return The middle of the bucket holding that rank, at most the maximum, or 0 when the sketch is empty.
+     */
+    public double getQuantile(double quantile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(middle(i) * unit, max);
+        }
+        return max;
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    private static double middle(int bucket) {
+        return LogLinearBuckets.lowerBound(bucket, SUB_BITS) + (LogLinearBuckets.width(bucket, SUB_BITS) - 1) / 2.0;
+    }
+}
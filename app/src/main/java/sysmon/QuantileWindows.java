@@ -0,0 +1,80 @@
+package sysmon;
+
+/**
+ * Sliding-window quantiles of a single metric over several window lengths, in constant memory.
+ * <p>
+ * Each window is split into {@link #PANES} panes with a {@link QuantileSketch} each. A sample is added to
+ * the current pane of every window; when time moves into a new pane, the oldest one is cleared and reused.
+ * Reading a window merges its panes into a scratch sketch, so it covers between the last 5/6 of the window
+ * and all of it. Memory depends on the number of windows and the sketch range, never on the window length.
+ * <p>
+ * Not thread-safe: samples are added and read on the render thread.
+ */
+public final class QuantileWindows {
+
+    public static final int PANES = 6;
+
+    private final long[] paneMillis;
+    private final long[] currentPane;
+    private final QuantileSketch[][] panes;
+    private final QuantileSketch merged;
+
+    /**
+     * Creates empty windows.
+     *
+     * @param windowMillis The length of every window in milliseconds, e.g. one per chart resolution.
+     * @param unit         The resolution of small values, see {@link QuantileSketch}.
+     * @param maxValue     The largest value told apart from larger ones.
+     */
+    public QuantileWindows(long[] windowMillis, double unit, double maxValue) {
+        paneMillis = new long[windowMillis.length];
+        currentPane = new long[windowMillis.length];
+        panes = new QuantileSketch[windowMillis.length][PANES];
+        for (int w = 0; w < windowMillis.length; w++) {
+            paneMillis[w] = Math.max(1, windowMillis[w] / PANES);
+            currentPane[w] = Long.MIN_VALUE;
+            for (int p = 0; p < PANES; p++) panes[w][p] = new QuantileSketch(unit, maxValue);
+        }
+        merged = new QuantileSketch(unit, maxValue);
+    }
+
+    /**
+     * Adds a sample to every window.
+     *
+     * @param timeMillis The time of the sample in milliseconds.
+     * @param value      The sampled value.
+     */
+    public void add(long timeMillis, double value) {
+        for (int w = 0; w < panes.length; w++) {
+            long pane = timeMillis / paneMillis[w];
+            if (pane != currentPane[w]) advance(w, pane);
+            panes[w][Math.floorMod(pane, PANES)].add(value);
+        }
+    }
+
+    /**
+     * Returns the quantiles of a window. The sketch is reused by the next call on this instance.
+     *
+     * @param window The window index, in constructor order.
+     * @return The merged sketch of the window's panes.
+     */
+    public QuantileSketch get(int window) {
+        merged.clear();
+        for (QuantileSketch pane : panes[window]) merged.merge(pane);
+        return merged;
+    }
+
+    /**
+     * Moves a window to a new current pane, clearing the panes that fell out of it. Going back in time,
+     * e.g. when a replay skips between sessions, starts the window over.
+     *
+     * @param window The window index.
+     * @param pane   The new pane number.
+     */
+    private void advance(int window, long pane) {
+        long from = currentPane[window];
+        long stale = from == Long.MIN_VALUE || pane < from ? PANES : Math.min(pane - from, PANES);
+        for (long p = pane - stale + 1; p <= pane; p++) panes[window][Math.floorMod(p, PANES)].clear();
+        currentPane[window] = pane;
+    }
+}
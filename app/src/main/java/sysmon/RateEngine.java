@@ -0,0 +1,188 @@
+package sysmon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns monotonically increasing per-device counters into per-second rates.
+ * <p>
+ * Each sample lists its devices in file order with {@link #device}, sets their counters and is closed with
+ * {@link #commit(long)}. Devices are matched by name, so interfaces and disks may come, go or reorder; a new
+ * device reports zero until it has a baseline. Elapsed time comes from {@link System#nanoTime()}, so wall-clock
+ * jumps do not skew the rates. A counter that went backwards is treated as a 32-bit wrap when the wrapped
+ * delta is plausible, and otherwise as a reset (driver reload, device re-created) that only re-baselines.
+ */
+public final class RateEngine {
+
+    private static final long WRAP_32 = 1L << 32;
+
+    private final int counterCount;
+    private final double[] scales;
+
+    // Devices known from the previous sample, slots [0, slotCount) hold the devices of the current one
+    private String[] names = new String[8];
+    private long[] previous;
+    private long[] current;
+    private boolean[] hasBaseline = new boolean[8];
+    private int knownCount = 0;
+    private int slotCount = 0;
+    private long lastNanos = 0;
+
+    /**
+     * Creates an engine.
+     *
+     * @param scales One factor per counter, applied to its rate, e.g. 512 to turn sectors into bytes.
+     */
+    public RateEngine(double... scales) {
+        this.counterCount = scales.length;
+        this.scales = scales.clone();
+        this.previous = new long[names.length * counterCount];
+        this.current = new long[names.length * counterCount];
+    }
+
+    /**
+     * Starts a new sample.
+     */
+    public void begin() {
+        slotCount = 0;
+    }
+
+    /**
+     * Adds a device to the current sample, its name given as ASCII bytes so known devices allocate nothing.
+     *
+     * @param bytes The buffer holding the name.
+     * @param start The position of the first byte of the name.
+     * @param end   The position just after the name.
+     * @return The slot to pass to {@link #counter}.
+     */
+    public int device(byte[] bytes, int start, int end) {
+        for (int j = slotCount; j < knownCount; j++) {
+            if (matches(names[j], bytes, start, end)) return claim(j);
+        }
+        return add(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Adds a device to the current sample.
+     *
+     * @param name The device name.
+     * @return The slot to pass to {@link #counter}.
+     */
+    public int device(String name) {
+        for (int j = slotCount; j < knownCount; j++) {
+            if (names[j].equals(name)) return claim(j);
+        }
+        return add(name);
+    }
+
+    /**
+     * Sets a counter of a device in the current sample.
+     *
+     * @param slot    The slot returned by {@link #device}.
+     * @param counter The counter index.
+     * @param value   The raw counter value.
+     */
+    public void counter(int slot, int counter, long value) {
+        current[slot * counterCount + counter] = value;
+    }
+
+    /**
+     * Closes the sample and computes the rates since the previous one into new rates.
+     *
+     * @param nowNanos The time of the sample from {@link System#nanoTime()}.
+     * @return The rates of the devices in this sample, in the order they were added.
+     */
+    public DeviceRates commit(long nowNanos) {
+        double seconds = lastNanos == 0 ? 0 : (nowNanos - lastNanos) / 1_000_000_000.0;
+        DeviceRates rates = new DeviceRates(counterCount, slotCount);
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            rates.setName(slot, names[slot]);
+            for (int c = 0; c < counterCount; c++) {
+                int i = slot * counterCount + c;
+                double rate = 0;
+                if (hasBaseline[slot] && seconds > 0) {
+                    long delta = delta(previous[i], current[i]);
+                    if (delta >= 0) rate = delta * scales[c] / seconds;
+                }
+                rates.set(slot, c, rate);
+                previous[i] = current[i];
+            }
+            hasBaseline[slot] = true;
+        }
+        rates.sumTotals();
+
+        knownCount = slotCount; // devices missing from this sample are forgotten
+        lastNanos = nowNanos;
+        return rates;
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    /**
+     * Returns the increase of a counter, or -1 when it was reset.
+     *
+     * @param prev The previous value.
+     * @param cur  The current value.
+     * @return The increase.
+     */
+    static long delta(long prev, long cur) {
+        if (cur >= prev) return cur - prev;
+        // a 32-bit counter that wrapped once moved by less than half its range; anything else is a reset
+        if (prev < WRAP_32 && WRAP_32 - prev + cur < WRAP_32 / 2) return WRAP_32 - prev + cur;
+        return -1;
+    }
+
+    /**
+     * Moves a known device into the next slot of the current sample, keeping its baseline.
+     */
+    private int claim(int j) {
+        int slot = slotCount++;
+        if (j != slot) swap(j, slot);
+        return slot;
+    }
+
+    /**
+     * Adds a device without a baseline in the next slot, moving the slot's previous occupant out of the way.
+     */
+    private int add(String name) {
+        ensureCapacity(knownCount + 1);
+        int slot = slotCount++;
+        if (slot < knownCount) swap(slot, knownCount);
+        knownCount++;
+        names[slot] = name;
+        hasBaseline[slot] = false;
+        return slot;
+    }
+
+    private void swap(int a, int b) {
+        String name = names[a];
+        names[a] = names[b];
+        names[b] = name;
+        boolean baseline = hasBaseline[a];
+        hasBaseline[a] = hasBaseline[b];
+        hasBaseline[b] = baseline;
+        for (int c = 0; c < counterCount; c++) {
+            long t = previous[a * counterCount + c];
+            previous[a * counterCount + c] = previous[b * counterCount + c];
+            previous[b * counterCount + c] = t;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (names.length >= count) return;
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        hasBaseline = Arrays.copyOf(hasBaseline, capacity);
+        previous = Arrays.copyOf(previous, capacity * counterCount);
+        current = Arrays.copyOf(current, capacity * counterCount);
+    }
+
+    private static boolean matches(String name, byte[] bytes, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (bytes[start + i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,345 @@
+package sysmon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact append-only time-series file written by `--record` and read by `--replay`.
+ * <p>
+ * The file starts with a 16 byte header (magic, version, channel count) followed by one record per sample.
+ * A record is a length byte and, for every channel, the zigzag varint of the difference to the previous
+ * record, so a steady 1-second sample of all channels takes around 20-30 bytes. A zero length byte marks
+ * the end of the data: the writer maps the file ahead in 1 MB regions, so a recorder that was killed
+ * leaves a zero-filled tail that readers stop at, and the length byte of a record is written last.
+ * Opening an existing recording appends to it. Channels are only ever added at the end, so readers decode
+ * the channel count from the header and leave newer channels at zero for older recordings.
+ */
+public final class RecordingFile {
+
+    public static final int TIME = 0;
+    public static final int CPU = 1;
+    public static final int MEMORY = 2;
+    public static final int DISK_READ = 3;
+    public static final int NET_IN = 4;
+    public static final int NET_OUT = 5;
+    public static final int TOTAL_MEMORY = 6;
+    // Memory statistics stored in bytes from here on, in MemoryStats field order
+    public static final int MEM_STATS = 7;
+    public static final int DISK_WRITE = 14;
+    public static final int DISK_READ_OPS = 15;
+    public static final int DISK_WRITE_OPS = 16;
+    public static final int NET_RX_PACKETS = 17;
+    public static final int NET_TX_PACKETS = 18;
+    public static final int CHANNEL_COUNT = 19;
+
+    // Recordings made before the read/write split have only the first 14 channels, with the total disk rate as reads
+    private static final int MIN_CHANNEL_COUNT = 14;
+
+    private static final byte[] MAGIC = "SYSMONRC".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int REGION_SIZE = 1 << 20;
+    static final int MAX_RECORD = CHANNEL_COUNT * 10;
+    private static final int FORCE_EVERY = 60;
+
+    private RecordingFile() {
+    }
+
+    /**
+     * Converts a snapshot into channel values; percentages are stored in hundredths, memory in bytes.
+     *
+     * @param snapshot   The snapshot to store.
+     * @param timeMillis The wall-clock time of the sample.
+     * @param pageSize   The page size of this host.
+     * @param values     The array receiving {@link #CHANNEL_COUNT} values.
+     */
+    public static void toValues(SystemSnapshot snapshot, long timeMillis, long pageSize, long[] values) {
+        values[TIME] = timeMillis;
+        values[CPU] = Math.round(snapshot.getCpuLoad() * 100);
+        values[MEMORY] = Math.round(snapshot.getMemoryUsage() * 100);
+        DeviceRates disk = snapshot.getDiskRates();
+        values[DISK_READ] = disk != null ? (long) disk.getTotal(DeviceRates.READ_BYTES) : (long) snapshot.getIoStats();
+        values[DISK_WRITE] = disk != null ? (long) disk.getTotal(DeviceRates.WRITE_BYTES) : 0;
+        values[DISK_READ_OPS] = disk != null ? Math.round(disk.getTotal(DeviceRates.READ_OPS)) : 0;
+        values[DISK_WRITE_OPS] = disk != null ? Math.round(disk.getTotal(DeviceRates.WRITE_OPS)) : 0;
+        DeviceRates net = snapshot.getNetRates();
+        values[NET_IN] = (long) snapshot.getNetInRate();
+        values[NET_OUT] = (long) snapshot.getNetOutRate();
+        values[NET_RX_PACKETS] = net != null ? Math.round(net.getTotal(DeviceRates.RX_PACKETS)) : 0;
+        values[NET_TX_PACKETS] = net != null ? Math.round(net.getTotal(DeviceRates.TX_PACKETS)) : 0;
+        values[TOTAL_MEMORY] = snapshot.getTotalMemory();
+        for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+            values[MEM_STATS + f] = snapshot.getMemStats().get(f) * pageSize;
+        }
+    }
+
+    /**
+     * Rebuilds a snapshot from the current record of a reader. Only totals are recorded: the disk and network
+     * rates have no per-device entries, and there is no per-core or per-process data.
+     *
+     * @param reader   The reader positioned on a record.
+     * @param pageSize The page size of this host, used to convert memory back to pages.
+     * @return The snapshot.
+     */
+    public static SystemSnapshot toSnapshot(Reader reader, long pageSize) {
+        return toSnapshot(reader.values, pageSize);
+    }
+
+    /**
+     * Rebuilds a snapshot from channel values, e.g. a sample received from an agent.
+     *
+     * @param values   The {@link #CHANNEL_COUNT} channel values.
+     * @param pageSize The page size of this host, used to convert memory back to pages.
+     * @return The snapshot.
+     */
+    public static SystemSnapshot toSnapshot(long[] values, long pageSize) {
+        MemoryStats memStats = new MemoryStats();
+        for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+            memStats.set(f, values[MEM_STATS + f] / pageSize);
+        }
+        return SystemSnapshot.empty()
+                .withCpuLoad(values[CPU] / 100.0, null)
+                .withMemory(memStats, values[MEMORY] / 100.0, values[TOTAL_MEMORY])
+                .withDiskRates(DeviceRates.ofTotals(values[DISK_READ], values[DISK_WRITE],
+                        values[DISK_READ_OPS], values[DISK_WRITE_OPS], 0))
+                .withNetRates(DeviceRates.ofTotals(values[NET_IN], values[NET_OUT],
+                        values[NET_RX_PACKETS], values[NET_TX_PACKETS], 0, 0, 0, 0));
+    }
+
+    // ========================= Record Coding Functions ========================= //
+
+    /**
+     * Encodes the body of a record: the zigzag varint of every channel's difference to the previous record.
+     * Shared with the agent protocol, which streams samples in the same form.
+     *
+     * @param values   The {@link #CHANNEL_COUNT} channel values of the sample.
+     * @param previous The values of the previous record, updated to the new ones.
+     * @param out      The buffer receiving the body, with room for {@link #MAX_RECORD} bytes from the position.
+     * @param pos      The position to write at.
+     * @return The position after the body.
+     */
+    static int encode(long[] values, long[] previous, byte[] out, int pos) {
+        for (int c = 0; c < CHANNEL_COUNT; c++) {
+            long delta = values[c] - previous[c];
+            long value = (delta << 1) ^ (delta >> 63);
+            while ((value & ~0x7FL) != 0) {
+                out[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[pos++] = (byte) value;
+            previous[c] = values[c];
+        }
+        return pos;
+    }
+
+    /**
+     * Decodes the body of a record onto the values of the previous one.
+     *
+     * @param in       The buffer holding the body, read with absolute gets.
+     * @param pos      The position of the body.
+     * @param channels The number of channels in the body.
+     * @param values   The values of the previous record, updated to the decoded ones.
+     * @return The position after the body.
+     */
+    static int decode(ByteBuffer in, int pos, int channels, long[] values) {
+        for (int c = 0; c < channels; c++) {
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get(pos++);
+                raw |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            values[c] += (raw >>> 1) ^ -(raw & 1);
+        }
+        return pos;
+    }
+
+    /**
+     * Appends records through a memory-mapped region of the file.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final long[] previous = new long[CHANNEL_COUNT];
+        private final byte[] scratch = new byte[MAX_RECORD];
+        private MappedByteBuffer region;
+        private long regionStart;
+        private long position;
+        private int unforced = 0;
+
+        private Writer(FileChannel channel, long position, long[] previous) {
+            this.channel = channel;
+            this.position = position;
+            System.arraycopy(previous, 0, this.previous, 0, CHANNEL_COUNT);
+        }
+
+        /**
+         * Opens a recording for appending, creating it when it does not exist.
+         *
+         * @param path The recording file.
+         * @return The writer.
+         * @throws IOException If the file cannot be opened or is not a recording.
+         */
+        public static Writer open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                if (channel.size() == 0) {
+                    Writer writer = new Writer(channel, HEADER_SIZE, new long[CHANNEL_COUNT]);
+                    writer.map(0);
+                    writer.region.put(MAGIC).putInt(VERSION).putInt(CHANNEL_COUNT);
+                    return writer;
+                }
+                // continue after the last complete record, with its values as the delta base
+                try (Reader reader = Reader.open(path)) {
+                    if (reader.channels != CHANNEL_COUNT) {
+                        throw new IOException("Recording has an older format, record to a new file: " + path);
+                    }
+                    while (reader.next()) {
+                        // skip to the end
+                    }
+                    return new Writer(channel, reader.position, reader.values);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Appends one record.
+         *
+         * @param values The {@link #CHANNEL_COUNT} channel values of the sample.
+         * @throws IOException If the file cannot be extended.
+         */
+        public void append(long[] values) throws IOException {
+            int length = encode(values, previous, scratch, 0);
+
+            // room for the record and an end marker, which hides any torn record left by a killed recorder
+            if (region == null || position + 2 + length > regionStart + REGION_SIZE) map(position);
+            int offset = (int) (position - regionStart);
+            for (int i = 0; i < length; i++) region.put(offset + 1 + i, scratch[i]);
+            region.put(offset + 1 + length, (byte) 0);
+            region.put(offset, (byte) length); // written last, so a torn record reads as the end of data
+            position += 1 + length;
+
+            if (++unforced >= FORCE_EVERY) {
+                region.force();
+                unforced = 0;
+            }
+        }
+
+        /**
+         * Returns the size of the recorded data in bytes.
+         *
+         * @return The size, header included.
+         */
+        public long size() {
+            return position;
+        }
+
+        /**
+         * Flushes the mapped region and trims the zero-filled tail.
+         *
+         * @throws IOException If the file cannot be truncated.
+         */
+        @Override
+        public void close() throws IOException {
+            if (region != null) region.force();
+            region = null;
+            channel.truncate(position);
+            channel.close();
+        }
+
+        private void map(long start) throws IOException {
+            if (region != null) region.force();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+            regionStart = start;
+        }
+    }
+
+    /**
+     * Decodes records from a read-only mapping of the file.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int limit;
+        private final long[] values = new long[CHANNEL_COUNT];
+        private final int channels;
+        private int position = HEADER_SIZE;
+
+        private Reader(FileChannel channel, MappedByteBuffer buffer, int channels) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.channels = channels;
+            this.limit = buffer.limit();
+        }
+
+        /**
+         * Opens a recording for reading.
+         *
+         * @param path The recording file.
+         * @return The reader, positioned before the first record.
+         * @throws IOException If the file cannot be read or is not a recording.
+         */
+        public static Reader open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) throw new IOException("Not a recording: " + path);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                byte[] magic = new byte[MAGIC.length];
+                buffer.get(magic);
+                int version = buffer.getInt();
+                int channels = buffer.getInt();
+                if (!Arrays.equals(magic, MAGIC) || version != VERSION || channels < MIN_CHANNEL_COUNT
+                        || channels > CHANNEL_COUNT) {
+                    throw new IOException("Not a recording: " + path);
+                }
+                return new Reader(channel, buffer, channels);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Decodes the next record.
+         *
+         * @return False at the end of the data.
+         */
+        public boolean next() {
+            if (position >= limit) return false;
+            int length = buffer.get(position) & 0xFF;
+            if (length == 0 || position + 1 + length > limit) return false;
+
+            decode(buffer, position + 1, channels, values);
+            position += 1 + length;
+            return true;
+        }
+
+        /**
+         * Returns a channel of the current record.
+         *
+         * @param channel The channel, e.g. {@link #TIME}.
+         * @return The value.
+         */
+        public long get(int channel) {
+            return values[channel];
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package sysmon;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how often the collectors sample: at a fixed interval, or faster while the host is busy
+ * changing and slower while it is idle.
+ * <p>
+ * An adaptive policy watches every published snapshot. When CPU or memory usage jumps, or a disk or network
+ * rate changes by a lot, it drops to the minimum interval at once; once the metrics settled for a second it
+ * steps back up to the base interval. A jump is a fast moving average (one second) drifting away from a slow
+ * one (five seconds), both weighted by the time between samples, so a lone spike in a short sample, e.g. the
+ * monitor's own frame, does not keep the interval down. While the host stays idle (little CPU use and nothing
+ * changing), it doubles the interval every few intervals up to the maximum. Rates stay correct at any
+ * interval, since every rate is computed over the time that actually passed between two samples.
+ */
+public final class SamplingPolicy {
+
+    // Changes that count as fast: CPU and memory in percentage points, rates in bytes per second or share
+    private static final double CPU_JUMP = 8.0;
+    private static final double MEMORY_JUMP = 1.0;
+    private static final double RATE_JUMP = 1024 * 1024;
+    private static final double RATE_SHARE = 0.5;
+    private static final double IDLE_CPU = 10.0;
+    private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double FAST_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double SLOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int IDLE_INTERVALS = 3;
+
+    private static final int CPU = 0;
+    private static final int MEMORY = 1;
+    private static final int DISK = 2;
+    private static final int NET_IN = 3;
+    private static final int NET_OUT = 4;
+    private static final int SIGNAL_COUNT = 5;
+
+    private final long baseMillis;
+    private final long minMillis;
+    private final long maxMillis;
+    private final boolean adaptive;
+    private volatile long intervalMillis;
+
+    // Fast and slow moving averages of every signal, and when the metrics last changed fast or stopped being idle
+    private final double[] fast = new double[SIGNAL_COUNT];
+    private final double[] slow = new double[SIGNAL_COUNT];
+    private final double[] current = new double[SIGNAL_COUNT];
+    private boolean primed = false;
+    private long observedAt;
+    private long changedAt;
+    private long quietSince;
+
+    private SamplingPolicy(long baseMillis, long minMillis, long maxMillis, boolean adaptive) {
+        this.baseMillis = baseMillis;
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.adaptive = adaptive;
+        this.intervalMillis = baseMillis;
+    }
+
+    /**
+     * Creates a policy that always samples at the same interval.
+     *
+     * @param intervalMillis The interval in milliseconds.
+     * @return The policy.
+     */
+    public static SamplingPolicy fixed(long intervalMillis) {
+        return new SamplingPolicy(intervalMillis, intervalMillis, intervalMillis, false);
+    }
+
+    /**
+     * Creates a policy that adapts the interval to how fast the metrics change.
+     *
+     * @param baseMillis The interval while the host is busy but steady.
+     * @param minMillis  The interval while the metrics change fast, e.g. 100.
+     * @param maxMillis  The interval the policy backs off to while the host is idle.
+     * @return The policy.
+     */
+    public static SamplingPolicy adaptive(long baseMillis, long minMillis, long maxMillis) {
+        return new SamplingPolicy(baseMillis, Math.min(minMillis, baseMillis), Math.max(maxMillis, baseMillis), true);
+    }
+
+    /**
+     * Returns the current interval.
+     *
+     * @return The interval in milliseconds.
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Looks at a freshly published snapshot and adjusts the interval.
+     *
+     * @param snapshot The snapshot.
+     * @param nowNanos The time from {@link System#nanoTime()}.
+     * @return True if the interval got shorter, so samplers waiting on the old one should wake up.
+     */
+    synchronized boolean observe(SystemSnapshot snapshot, long nowNanos) {
+        if (!adaptive) return false;
+        current[CPU] = snapshot.getCpuLoad();
+        current[MEMORY] = snapshot.getMemoryUsage();
+        current[DISK] = snapshot.getIoStats();
+        current[NET_IN] = snapshot.getNetInRate();
+        current[NET_OUT] = snapshot.getNetOutRate();
+        if (!primed) {
+            System.arraycopy(current, 0, fast, 0, SIGNAL_COUNT);
+            System.arraycopy(current, 0, slow, 0, SIGNAL_COUNT);
+            primed = true;
+            changedAt = nowNanos;
+            quietSince = nowNanos;
+        } else {
+            double elapsed = Math.max(0, nowNanos - observedAt);
+            double fastWeight = 1 - Math.exp(-elapsed / FAST_NANOS);
+            double slowWeight = 1 - Math.exp(-elapsed / SLOW_NANOS);
+            for (int i = 0; i < SIGNAL_COUNT; i++) {
+                fast[i] += fastWeight * (current[i] - fast[i]);
+                slow[i] += slowWeight * (current[i] - slow[i]);
+            }
+        }
+        observedAt = nowNanos;
+        boolean jumped = Math.abs(fast[CPU] - slow[CPU]) >= CPU_JUMP
+                || Math.abs(fast[MEMORY] - slow[MEMORY]) >= MEMORY_JUMP
+                || rateJumped(fast[DISK], slow[DISK]) || rateJumped(fast[NET_IN], slow[NET_IN])
+                || rateJumped(fast[NET_OUT], slow[NET_OUT]);
+        if (jumped) {
+            changedAt = nowNanos;
+            quietSince = nowNanos;
+        }
+
+        long interval = intervalMillis;
+        long next;
+        if (jumped) {
+            next = minMillis;
+        } else if (interval < baseMillis) {
+            // step back up once the burst settled, doubling per settled second
+            next = nowNanos - changedAt >= SETTLE_NANOS ? Math.min(baseMillis, interval * 2) : interval;
+            if (next != interval) changedAt = nowNanos;
+        } else if (slow[CPU] < IDLE_CPU) {
+            boolean idleLongEnough = nowNanos - quietSince >= IDLE_INTERVALS * TimeUnit.MILLISECONDS.toNanos(interval);
+            next = idleLongEnough ? Math.min(maxMillis, interval * 2) : interval;
+            if (next != interval) quietSince = nowNanos;
+        } else {
+            quietSince = nowNanos;
+            next = baseMillis;
+        }
+        intervalMillis = next;
+        return next < interval;
+    }
+
+    private static boolean rateJumped(double fast, double slow) {
+        double delta = Math.abs(fast - slow);
+        return delta >= RATE_JUMP && delta >= RATE_SHARE * Math.max(fast, slow);
+    }
+}
@@ -0,0 +1,94 @@
+package sysmon;
+
+/**
+ * Saturation signals of one sample: how much work waits on the CPU, memory and I/O rather than how busy they are.
+ * <p>
+ * Pressure stall information is kept per resource ({@link #CPU}, {@link #MEMORY}, {@link #IO}) with the kernel's
+ * avg10/avg60 averages and the share of time stalled since the previous sample, computed from the `total` counters.
+ * "some" is the share of time at least one task was stalled, "full" the share all non-idle tasks were. Paging,
+ * the run queue and the load averages are plain fields.
+ */
+public final class SaturationStats {
+
+    public static final int CPU = 0;
+    public static final int MEMORY = 1;
+    public static final int IO = 2;
+    public static final int RESOURCE_COUNT = 3;
+
+    public static final int SOME_AVG10 = 0;
+    public static final int SOME_AVG60 = 1;
+    public static final int FULL_AVG10 = 2;
+    public static final int FULL_AVG60 = 3;
+    public static final int SOME_STALL = 4;
+    public static final int FULL_STALL = 5;
+    public static final int PRESSURE_FIELD_COUNT = 6;
+
+    public static final int MAJOR_FAULTS = 0;
+    public static final int SWAP_IN = 1;
+    public static final int SWAP_OUT = 2;
+    public static final int RUN_QUEUE = 3;
+    public static final int LOAD_1 = 4;
+    public static final int LOAD_5 = 5;
+    public static final int LOAD_15 = 6;
+    public static final int FIELD_COUNT = 7;
+
+    private static final String[] RESOURCE_LABELS = {"cpu", "memory", "io"};
+
+    private final double[] pressure = new double[RESOURCE_COUNT * PRESSURE_FIELD_COUNT];
+    private final double[] values = new double[FIELD_COUNT];
+    private boolean pressureAvailable = false;
+
+    /**
+     * Returns a pressure field of a resource.
+     *
+     * @param resource The resource, e.g. {@link #MEMORY}.
+     * @param field    The field, e.g. {@link #SOME_AVG10}.
+     * @return The share of time in percent.
+     */
+    public double getPressure(int resource, int field) {
+        return pressure[resource * PRESSURE_FIELD_COUNT + field];
+    }
+
+    /**
+     * Returns a paging, run queue or load field.
+     *
+     * @param field The field, e.g. {@link #MAJOR_FAULTS}.
+     * @return Faults and swapped pages per second, runnable tasks, or the load average.
+     */
+    public double get(int field) {
+        return values[field];
+    }
+
+    /**
+     * Returns whether the kernel reports pressure stall information (Linux 4.20 and newer, unless disabled).
+     *
+     * @return True if the pressure fields are valid.
+     */
+    public boolean isPressureAvailable() {
+        return pressureAvailable;
+    }
+
+    /**
+     * Returns the name of a resource as used in `/proc/pressure`.
+     *
+     * @param resource The resource.
+     * @return The name, e.g. "memory".
+     */
+    public static String resourceLabel(int resource) {
+        return RESOURCE_LABELS[resource];
+    }
+
+    // ========================= Fill Functions ========================= //
+
+    void setPressure(int resource, int field, double value) {
+        pressure[resource * PRESSURE_FIELD_COUNT + field] = value;
+    }
+
+    void set(int field, double value) {
+        values[field] = value;
+    }
+
+    void setPressureAvailable(boolean pressureAvailable) {
+        this.pressureAvailable = pressureAvailable;
+    }
+}
@@ -0,0 +1,212 @@
+package sysmon;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Measures what the monitor itself costs the host: render time per frame, heap bytes allocated and
+ * GC pauses between two ticks, and the CPU time of the whole process.
+ * <p>
+ * Driven by the render loop, which calls {@link #tick()} once per frame; collector latencies are tracked
+ * by the {@link CollectorScheduler}. Allocation comes from the HotSpot {@code ThreadMXBean}: the process
+ * total where the runtime provides it (JDK 21+), otherwise the sum over live threads, which misses what a
+ * thread allocated between its last tick and its exit. GC pauses are averaged per collection from the
+ * {@code GarbageCollectorMXBean} counters, skipping the beans that count concurrent cycles.
+ */
+public final class SelfMonitor {
+
+    private static final int STARTUP_TICKS = 3;
+
+    private final Histogram frameNanos = new Histogram();
+    private final Histogram allocatedBytes = new Histogram();
+    private final Histogram gcPauseNanos = new Histogram();
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Method totalAllocated;
+    private final com.sun.management.OperatingSystemMXBean os;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final long startNanos = System.nanoTime();
+
+    // Previous tick, for the deltas
+    private long[] threadIds = new long[0];
+    private long[] threadBytes = new long[0];
+    private long lastAllocated = -1;
+    private long lastGcCount = 0;
+    private long lastGcMillis = 0;
+    private long lastCpuNanos = 0;
+    private long lastTickNanos = 0;
+    private long gcCount = 0;
+    private double cpuPercent = 0;
+    private double recentCpuPercent = 0;
+    private int cpuTicks = 0;
+
+    public SelfMonitor() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+        if (threads != null && threads.isThreadAllocatedMemorySupported()) threads.setThreadAllocatedMemoryEnabled(true);
+        Method method;
+        try {
+            method = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        totalAllocated = method;
+        java.lang.management.OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        os = osBean instanceof com.sun.management.OperatingSystemMXBean
+                ? (com.sun.management.OperatingSystemMXBean) osBean : null;
+        for (GarbageCollectorMXBean gc : collectors) {
+            if (!isPausing(gc)) continue;
+            lastGcCount += Math.max(0, gc.getCollectionCount());
+            lastGcMillis += Math.max(0, gc.getCollectionTime());
+        }
+    }
+
+    /**
+     * Records how long drawing and flushing one frame took.
+     *
+     * @param nanos The frame time in nanoseconds.
+     */
+    public void recordFrame(long nanos) {
+        frameNanos.record(nanos);
+    }
+
+    /**
+     * Samples allocation, GC and CPU time since the previous tick.
+     */
+    public void tick() {
+        long now = System.nanoTime();
+
+        long allocated = allocatedBytes();
+        if (allocated >= 0 && lastAllocated >= 0) allocatedBytes.record(allocated - lastAllocated);
+        lastAllocated = allocated;
+
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            if (!isPausing(gc)) continue;
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        long pauses = count - lastGcCount;
+        if (pauses > 0) {
+            long average = (millis - lastGcMillis) * 1_000_000 / pauses;
+            for (long i = 0; i < pauses; i++) gcPauseNanos.record(average);
+            gcCount += pauses;
+        }
+        lastGcCount = count;
+        lastGcMillis = millis;
+
+        long cpuNanos = os != null ? os.getProcessCpuTime() : -1;
+        if (cpuNanos >= 0 && lastTickNanos != 0 && now > lastTickNanos) {
+            cpuPercent = (cpuNanos - lastCpuNanos) * 100.0 / (now - lastTickNanos);
+            // smoothed over roughly the last 20 ticks, seeded after the first few that still pay for startup
+            cpuTicks++;
+            if (cpuTicks == STARTUP_TICKS) recentCpuPercent = cpuPercent;
+            else if (cpuTicks > STARTUP_TICKS) recentCpuPercent += (cpuPercent - recentCpuPercent) / 20;
+        }
+        lastCpuNanos = cpuNanos;
+        lastTickNanos = now;
+    }
+
+    public Histogram getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Returns the heap bytes allocated by the whole process between two ticks.
+     *
+     * @return The histogram, empty when the runtime cannot measure allocation.
+     */
+    public Histogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public Histogram getGcPauseNanos() {
+        return gcPauseNanos;
+    }
+
+    /**
+     * Returns the number of GC pauses since the monitor started.
+     *
+     * @return The pause count.
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * Returns the CPU time used by the process between the last two ticks, as a share of one core.
+     *
+     * @return The percentage.
+     */
+    public double getCpuPercent() {
+        return cpuPercent;
+    }
+
+    /**
+     * Returns the CPU use of the process smoothed over roughly the last 20 ticks, which leaves JVM startup
+     * and warm-up behind within a minute; this is what an overhead budget is checked against.
+     *
+     * @return The percentage of one core.
+     */
+    public double getRecentCpuPercent() {
+        return recentCpuPercent;
+    }
+
+    /**
+     * Returns the CPU time used by the process since the monitor started, as a share of one core.
+     *
+     * @return The percentage, or 0 when the runtime does not report process CPU time.
+     */
+    public double getAverageCpuPercent() {
+        long elapsed = System.nanoTime() - startNanos;
+        long cpuNanos = os != null ? os.getProcessCpuTime() : -1;
+        return cpuNanos < 0 || elapsed <= 0 ? 0 : cpuNanos * 100.0 / elapsed;
+    }
+
+    // ========================= Helper Functions ========================= //
+
+    /**
+     * Returns the bytes allocated by the process so far, or -1 if the runtime cannot tell.
+     */
+    private long allocatedBytes() {
+        if (threads == null || !threads.isThreadAllocatedMemoryEnabled()) return -1;
+        if (totalAllocated != null) {
+            try {
+                return (Long) totalAllocated.invoke(threads);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return -1;
+            }
+        }
+
+        // Sum the growth of every live thread; threads are matched by id as they come and go
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        long grown = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] < 0) continue;
+            long before = 0;
+            for (int j = 0; j < threadIds.length; j++) {
+                int k = (i + j) % threadIds.length; // threads are usually listed in the same order
+                if (threadIds[k] == ids[i]) {
+                    before = threadBytes[k];
+                    break;
+                }
+            }
+            grown += Math.max(0, bytes[i] - before);
+        }
+        threadIds = ids;
+        threadBytes = bytes;
+        return lastAllocated < 0 ? 0 : lastAllocated + grown;
+    }
+
+    /**
+     * Tells whether a collector bean counts stop-the-world pauses rather than concurrent cycles.
+     */
+    private static boolean isPausing(GarbageCollectorMXBean gc) {
+        String name = gc.getName();
+        return !name.contains("Concurrent") && !name.contains("Cycles");
+    }
+}
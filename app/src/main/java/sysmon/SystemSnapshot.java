@@ -0,0 +1,227 @@
+package sysmon;
+
+/**
+ * Immutable view of the latest values published by the collectors.
+ * <p>
+ * Collectors publish by swapping in a copy with their own fields replaced, so the renderer can read
+ * a consistent snapshot from a volatile reference without taking any lock. The collectors create new stats
+ * objects for every sample and never write to a published one, so a reader may keep them for as long as it
+ * likes, however fast the collectors sample.
+ */
+public final class SystemSnapshot {
+
+    private static final SystemSnapshot EMPTY = new SystemSnapshot(0.0, null, MemoryStats.EMPTY, 0.0, 0L, 0.0, null,
+            0.0, 0.0, null, null, null, null, null, null);
+
+    private final double cpuLoad;
+    private final CpuBreakdown cpuBreakdown;
+    private final MemoryStats memStats;
+    private final double memoryUsage;
+    private final long totalMemory;
+    private final double ioStats;
+    private final DeviceRates diskRates;
+    private final double netInRate;
+    private final double netOutRate;
+    private final DeviceRates netRates;
+    private final ProcessTable processes;
+    private final CgroupTable cgroups;
+    private final SaturationStats saturation;
+    private final TcpStats tcp;
+    private final JvmTable jvms;
+
+    private SystemSnapshot(double cpuLoad, CpuBreakdown cpuBreakdown, MemoryStats memStats, double memoryUsage,
+                           long totalMemory, double ioStats, DeviceRates diskRates, double netInRate,
+                           double netOutRate, DeviceRates netRates, ProcessTable processes, CgroupTable cgroups,
+                           SaturationStats saturation, TcpStats tcp, JvmTable jvms) {
+        this.cpuLoad = cpuLoad;
+        this.cpuBreakdown = cpuBreakdown;
+        this.memStats = memStats;
+        this.memoryUsage = memoryUsage;
+        this.totalMemory = totalMemory;
+        this.ioStats = ioStats;
+        this.diskRates = diskRates;
+        this.netInRate = netInRate;
+        this.netOutRate = netOutRate;
+        this.netRates = netRates;
+        this.processes = processes;
+        this.cgroups = cgroups;
+        this.saturation = saturation;
+        this.tcp = tcp;
+        this.jvms = jvms;
+    }
+
+    /**
+     * Returns the snapshot used before any collector has published.
+     *
+     * @return A snapshot with all values zeroed.
+     */
+    public static SystemSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a copy with the CPU usage replaced.
+     *
+     * @param cpuLoad      The CPU usage as a percentage.
+     * @param cpuBreakdown The per-core breakdown, or null when the platform does not provide one.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withCpuLoad(double cpuLoad, CpuBreakdown cpuBreakdown) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the memory statistics replaced.
+     *
+     * @param memStats    The memory statistics in pages.
+     * @param memoryUsage The percentage of memory used.
+     * @param totalMemory The total physical memory in bytes.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withMemory(MemoryStats memStats, double memoryUsage, long totalMemory) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the disk rates replaced.
+     *
+     * @param diskRates The per-device disk rates; their read and write totals become the disk I/O rate.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withDiskRates(DeviceRates diskRates) {
+        double ioStats = diskRates.getTotal(DeviceRates.READ_BYTES) + diskRates.getTotal(DeviceRates.WRITE_BYTES);
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the network rates replaced.
+     *
+     * @param netRates The per-interface network rates; their totals become the input and output rates.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withNetRates(DeviceRates netRates) {
+        double netInRate = netRates.getTotal(DeviceRates.RX_BYTES);
+        double netOutRate = netRates.getTotal(DeviceRates.TX_BYTES);
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the process table replaced.
+     *
+     * @param processes The top processes, or null when the platform does not provide them.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withProcesses(ProcessTable processes) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the cgroup table replaced.
+     *
+     * @param cgroups The busiest cgroups, or null when the host has no cgroup v2 hierarchy.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withCgroups(CgroupTable cgroups) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the saturation signals replaced.
+     *
+     * @param saturation The pressure, paging and run queue stats, or null when the platform does not provide them.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withSaturation(SaturationStats saturation) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the TCP/IP stack health replaced.
+     *
+     * @param tcp The counter rates, connection states and socket totals, or null when the platform does not
+     *            provide them.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withTcp(TcpStats tcp) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    /**
+     * Returns a copy with the local JVM table replaced.
+     *
+     * @param jvms The JVMs read from their performance data files, or null when none were scanned.
+     * @return The updated snapshot.
+     */
+    public SystemSnapshot withJvms(JvmTable jvms) {
+        return new SystemSnapshot(cpuLoad, cpuBreakdown, memStats, memoryUsage, totalMemory, ioStats, diskRates,
+                netInRate, netOutRate, netRates, processes, cgroups, saturation, tcp, jvms);
+    }
+
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    public CpuBreakdown getCpuBreakdown() {
+        return cpuBreakdown;
+    }
+
+    public MemoryStats getMemStats() {
+        return memStats;
+    }
+
+    public double getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public long getTotalMemory() {
+        return totalMemory;
+    }
+
+    public double getIoStats() {
+        return ioStats;
+    }
+
+    public DeviceRates getDiskRates() {
+        return diskRates;
+    }
+
+    public double getNetInRate() {
+        return netInRate;
+    }
+
+    public double getNetOutRate() {
+        return netOutRate;
+    }
+
+    public DeviceRates getNetRates() {
+        return netRates;
+    }
+
+    public ProcessTable getProcesses() {
+        return processes;
+    }
+
+    public CgroupTable getCgroups() {
+        return cgroups;
+    }
+
+    public SaturationStats getSaturation() {
+        return saturation;
+    }
+
+    public TcpStats getTcp() {
+        return tcp;
+    }
+
+    public JvmTable getJvms() {
+        return jvms;
+    }
+}
@@ -0,0 +1,236 @@
+package sysmon;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Linux backend that samples the health of the TCP/IP stack straight from procfs.
+ * <p>
+ * Only `/proc/net/{snmp,netstat,sockstat}` and the TCP socket tables are opened, once, and re-read from offset 0
+ * on every tick into a reused buffer of its own (the socket tables a chunk at a time). A scan of large socket
+ * tables takes a few milliseconds, so it is kept apart from {@link ProcfsCollector}, whose other sources share
+ * one buffer and lock.
+ */
+public final class TcpCollector {
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private static final byte[] SOCKSTAT_SOCKETS = ascii("sockets:");
+    private static final byte[] SOCKSTAT_TCP = ascii("TCP:");
+    private static final String[] SOCKET_TABLES = {"net/tcp", "net/tcp6"};
+
+    // Table and column of every TcpStats rate in `/proc/net/snmp` or `/proc/net/netstat`
+    private static final byte[][] COUNTER_TABLES = {ascii("Tcp:"), ascii("Tcp:"), ascii("Tcp:"), ascii("Tcp:"),
+            ascii("Tcp:"), ascii("Tcp:"), ascii("Tcp:"), ascii("Tcp:"), ascii("TcpExt:"), ascii("TcpExt:"),
+            ascii("TcpExt:"), ascii("Udp:"), ascii("Udp:")};
+    private static final String[] COUNTER_COLUMNS = {"ActiveOpens", "PassiveOpens", "AttemptFails", "EstabResets",
+            "InSegs", "OutSegs", "RetransSegs", "OutRsts", "ListenOverflows", "ListenDrops", "TCPTimeouts",
+            "InErrors", "RcvbufErrors"};
+    private static final int UNRESOLVED = -2;
+
+    // Socket tables holding more sockets than this are not scanned for connection states
+    private static final int MAX_SCANNED_SOCKETS = 20_000;
+
+    private final FileChannel snmpChannel;
+    private final FileChannel netstatChannel;
+    private final FileChannel sockstatChannel;
+    private final FileChannel[] socketTableChannels = new FileChannel[SOCKET_TABLES.length];
+    private final HostFacts hostFacts;
+
+    // Reused read buffer, grown only if a file outgrows it
+    private final ByteTokenizer tok = new ByteTokenizer(16 * 1024);
+
+    // TCP and UDP counters as a single pseudo device, the column of every counter once looked up (-1 when the
+    // kernel does not have it)
+    private final RateEngine tcpRates = new RateEngine(unitScales(TcpStats.RATE_COUNT));
+    private final int[] counterColumns = new int[TcpStats.RATE_COUNT];
+
+    /**
+     * Opens the TCP/IP files below a root directory; the ones the kernel does not have are skipped.
+     *
+     * @param hostFacts The host facts, providing the page size.
+     * @param procRoot  `/proc`, or a directory with recorded copies of the files below `net`.
+     */
+    TcpCollector(HostFacts hostFacts, Path procRoot) {
+        this.snmpChannel = ProcfsCollector.openOptional(procRoot.resolve("net/snmp"));
+        this.netstatChannel = ProcfsCollector.openOptional(procRoot.resolve("net/netstat"));
+        this.sockstatChannel = ProcfsCollector.openOptional(procRoot.resolve("net/sockstat"));
+        for (int t = 0; t < SOCKET_TABLES.length; t++) {
+            socketTableChannels[t] = ProcfsCollector.openOptional(procRoot.resolve(SOCKET_TABLES[t]));
+        }
+        this.hostFacts = hostFacts;
+        Arrays.fill(counterColumns, UNRESOLVED);
+    }
+
+    /**
+     * Opens the TCP/IP backend if the host exposes its procfs files.
+     *
+     * @param hostFacts The host facts, providing the page size.
+     * @return A collector, or null if procfs is not available (e.g. on macOS).
+     */
+    public static TcpCollector openIfAvailable(HostFacts hostFacts) {
+        if (!Files.isReadable(PROC.resolve("net/snmp")) && !Files.isReadable(PROC.resolve("net/sockstat"))) {
+            return null;
+        }
+        return new TcpCollector(hostFacts, PROC);
+    }
+
+    // ========================= Sampling Functions ========================= //
+
+    /**
+     * Samples the health of the TCP/IP stack: retransmits, listen queue overflows and drops, resets and UDP
+     * receive errors from `/proc/net/snmp` and `/proc/net/netstat`, the socket totals from `/proc/net/sockstat`,
+     * and the TCP connections by state from `/proc/net/tcp` and `tcp6`. The socket tables are read a chunk at
+     * a time and only their state column is looked at; they are skipped when they hold more than
+     * {@link #MAX_SCANNED_SOCKETS} sockets.
+     *
+     * @return The stats, with rates since the previous call; the first call reports zero rates.
+     * @throws IOException If a file cannot be read.
+     */
+    public synchronized TcpStats sample() throws IOException {
+        TcpStats stats = new TcpStats();
+
+        tcpRates.begin();
+        int slot = tcpRates.device("tcp");
+        if (snmpChannel != null) readCounters(snmpChannel, slot);
+        if (netstatChannel != null) readCounters(netstatChannel, slot);
+        DeviceRates rates = tcpRates.commit(System.nanoTime());
+        for (int c = 0; c < TcpStats.RATE_COUNT; c++) stats.setRate(c, rates.get(slot, c));
+
+        // sockstat: "sockets: used 16" and "TCP: inuse 4 orphan 0 tw 1 alloc 4 mem 0", memory in pages
+        if (sockstatChannel != null) {
+            tok.read(sockstatChannel);
+            for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+                if (tok.startsWith(pos, SOCKSTAT_SOCKETS)) {
+                    stats.setTotal(TcpStats.SOCKETS_USED, tok.parseLong(tok.skipSpaces(tok.skipToken(
+                            tok.skipSpaces(pos + SOCKSTAT_SOCKETS.length)))));
+                } else if (tok.startsWith(pos, SOCKSTAT_TCP)) {
+                    readTcpSockstat(stats, pos + SOCKSTAT_TCP.length);
+                }
+            }
+        }
+
+        boolean scan = stats.getTotal(TcpStats.TCP_IN_USE) + stats.getTotal(TcpStats.TCP_TIME_WAIT) <= MAX_SCANNED_SOCKETS;
+        int scanned = 0;
+        stats.clearConnections();
+        for (int t = 0; scan && t < socketTableChannels.length; t++) {
+            if (socketTableChannels[t] == null) {
+                scan = t > 0; // tcp6 is missing without IPv6
+                continue;
+            }
+            for (boolean more = tok.readChunk(socketTableChannels[t], true); more && scan;
+                 more = tok.readChunk(socketTableChannels[t], false)) {
+                // "  sl  local_address rem_address   st tx_queue:rx_queue ...", the header line has no hex state
+                for (int pos = 0; pos < tok.limit(); pos = tok.nextLine(pos)) {
+                    int field = tok.skipToken(tok.skipSpaces(pos));
+                    field = tok.skipToken(tok.skipSpaces(field));
+                    field = tok.skipToken(tok.skipSpaces(field));
+                    int state = parseState(tok.skipSpaces(field));
+                    if (state < 0) continue;
+                    stats.addConnection(state);
+                    if (++scanned > MAX_SCANNED_SOCKETS) scan = false;
+                }
+            }
+        }
+        stats.setStatesAvailable(scan);
+        return stats;
+    }
+
+    // ========================= Buffer Helper Functions ========================= //
+
+    /**
+     * Reads the TcpStats counters found in a `/proc/net/snmp`-style file into the TCP rate engine. Every table is
+     * a line of column names followed by a line of values, both starting with the table name; the column of a
+     * counter is looked up in the names the first time and from then on only the values are walked.
+     *
+     * @param channel The file to read.
+     * @param slot    The slot of the TCP pseudo device.
+     * @throws IOException If the file cannot be read.
+     */
+    private void readCounters(FileChannel channel, int slot) throws IOException {
+        tok.read(channel);
+        for (int names = 0; names < tok.limit(); ) {
+            int values = tok.nextLine(names);
+            if (values >= tok.limit()) break;
+            for (int c = 0; c < TcpStats.RATE_COUNT; c++) {
+                byte[] table = COUNTER_TABLES[c];
+                if (!tok.startsWith(names, table) || !tok.startsWith(values, table)) continue;
+                if (counterColumns[c] == UNRESOLVED) counterColumns[c] = findColumn(names + table.length, COUNTER_COLUMNS[c]);
+                if (counterColumns[c] < 0) continue;
+                int pos = tok.skipSpaces(values + table.length);
+                for (int i = 0; i < counterColumns[c]; i++) pos = tok.skipSpaces(tok.skipToken(pos));
+                tcpRates.counter(slot, c, tok.parseLong(pos));
+            }
+            names = tok.nextLine(values);
+        }
+    }
+
+    /**
+     * Finds a column in a line of column names.
+     *
+     * @param pos  The position after the table name.
+     * @param name The column name.
+     * @return The index of the column, or -1 if the line does not have it.
+     */
+    private int findColumn(int pos, String name) {
+        pos = tok.skipSpaces(pos);
+        for (int column = 0; pos < tok.limit() && tok.bytes()[pos] != '\n'; column++) {
+            int end = tok.skipToken(pos);
+            if (tok.equals(pos, end, name)) return column;
+            pos = tok.skipSpaces(end);
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the TCP line of `/proc/net/sockstat`, keyword and value pairs such as "inuse 4 orphan 0 tw 1".
+     *
+     * @param stats The stats to fill.
+     * @param pos   The position after "TCP:".
+     */
+    private void readTcpSockstat(TcpStats stats, int pos) {
+        for (pos = tok.skipSpaces(pos); pos < tok.limit() && tok.bytes()[pos] != '\n'; ) {
+            int keyEnd = tok.skipToken(pos);
+            int value = tok.skipSpaces(keyEnd);
+            if (tok.equals(pos, keyEnd, "inuse")) stats.setTotal(TcpStats.TCP_IN_USE, tok.parseLong(value));
+            else if (tok.equals(pos, keyEnd, "orphan")) stats.setTotal(TcpStats.TCP_ORPHANS, tok.parseLong(value));
+            else if (tok.equals(pos, keyEnd, "tw")) stats.setTotal(TcpStats.TCP_TIME_WAIT, tok.parseLong(value));
+            else if (tok.equals(pos, keyEnd, "mem")) {
+                stats.setTotal(TcpStats.TCP_MEMORY, tok.parseLong(value) * hostFacts.getPageSize());
+            }
+            pos = tok.skipSpaces(tok.skipToken(value));
+        }
+    }
+
+    /**
+     * Parses the two hex digits of a socket table's `st` column.
+     *
+     * @param pos The position of the column.
+     * @return The TcpStats state, or -1 for anything else, e.g. the header line.
+     */
+    private int parseState(int pos) {
+        if (pos + 2 > tok.limit()) return -1;
+        int high = Character.digit(tok.bytes()[pos], 16);
+        int low = Character.digit(tok.bytes()[pos + 1], 16);
+        if (high < 0 || low < 0) return -1;
+        int state = high * 16 + low;
+        return state > 0 && state < TcpStats.STATE_COUNT ? state : -1;
+    }
+
+    // ========================= Static Helper Functions ========================= //
+
+    private static double[] unitScales(int count) {
+        double[] scales = new double[count];
+        Arrays.fill(scales, 1);
+        return scales;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
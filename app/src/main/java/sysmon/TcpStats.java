@@ -0,0 +1,125 @@
+package sysmon;
+
+/**
+ * Health of the TCP/IP stack in one sample: the rates of the counters that reveal trouble while the byte rates
+ * still look fine, the number of TCP connections in every state, and the socket totals.
+ * <p>
+ * Rates come from `/proc/net/snmp` and `/proc/net/netstat`, connection states from the socket tables
+ * `/proc/net/tcp` and `tcp6`, and the socket totals from `/proc/net/sockstat`.
+ */
+public final class TcpStats {
+
+    // Rates per second
+    public static final int ACTIVE_OPENS = 0;
+    public static final int PASSIVE_OPENS = 1;
+    public static final int ATTEMPT_FAILS = 2;
+    public static final int ESTAB_RESETS = 3;
+    public static final int IN_SEGS = 4;
+    public static final int OUT_SEGS = 5;
+    public static final int RETRANS_SEGS = 6;
+    public static final int OUT_RSTS = 7;
+    public static final int LISTEN_OVERFLOWS = 8;
+    public static final int LISTEN_DROPS = 9;
+    public static final int TIMEOUTS = 10;
+    public static final int UDP_IN_ERRORS = 11;
+    public static final int UDP_RCVBUF_ERRORS = 12;
+    public static final int RATE_COUNT = 13;
+
+    // Connection states, numbered like the `st` column of the socket tables
+    public static final int ESTABLISHED = 1;
+    public static final int SYN_SENT = 2;
+    public static final int SYN_RECV = 3;
+    public static final int FIN_WAIT1 = 4;
+    public static final int FIN_WAIT2 = 5;
+    public static final int TIME_WAIT = 6;
+    public static final int CLOSE = 7;
+    public static final int CLOSE_WAIT = 8;
+    public static final int LAST_ACK = 9;
+    public static final int LISTEN = 10;
+    public static final int CLOSING = 11;
+    public static final int STATE_COUNT = 12;
+
+    // Socket totals; memory is in bytes
+    public static final int SOCKETS_USED = 0;
+    public static final int TCP_IN_USE = 1;
+    public static final int TCP_ORPHANS = 2;
+    public static final int TCP_TIME_WAIT = 3;
+    public static final int TCP_MEMORY = 4;
+    public static final int TOTAL_COUNT = 5;
+
+    private final double[] rates = new double[RATE_COUNT];
+    private final int[] connections = new int[STATE_COUNT];
+    private final long[] totals = new long[TOTAL_COUNT];
+    private boolean statesAvailable = false;
+
+    /**
+     * Returns a counter rate.
+     *
+     * @param field The counter, e.g. {@link #RETRANS_SEGS}.
+     * @return The rate per second.
+     */
+    public double getRate(int field) {
+        return rates[field];
+    }
+
+    /**
+     * Returns the share of sent segments that were retransmissions.
+     *
+     * @return The share in percent.
+     */
+    public double getRetransmitPercent() {
+        return rates[OUT_SEGS] > 0 ? Math.min(100, rates[RETRANS_SEGS] * 100 / rates[OUT_SEGS]) : 0;
+    }
+
+    /**
+     * Returns the number of TCP connections in a state, over IPv4 and IPv6.
+     *
+     * @param state The state, e.g. {@link #CLOSE_WAIT}.
+     * @return The connection count.
+     */
+    public int getConnections(int state) {
+        return connections[state];
+    }
+
+    /**
+     * Returns whether the connection states were counted; the socket tables are skipped when they are missing
+     * or hold too many sockets to scan every sample.
+     *
+     * @return True if {@link #getConnections} is valid.
+     */
+    public boolean isStatesAvailable() {
+        return statesAvailable;
+    }
+
+    /**
+     * Returns a socket total.
+     *
+     * @param field The total, e.g. {@link #TCP_ORPHANS}.
+     * @return The count, or bytes for {@link #TCP_MEMORY}.
+     */
+    public long getTotal(int field) {
+        return totals[field];
+    }
+
+    // ========================= Fill Functions ========================= //
+
+    void setRate(int field, double rate) {
+        rates[field] = rate;
+    }
+
+    void clearConnections() {
+        for (int s = 0; s < STATE_COUNT; s++) connections[s] = 0;
+    }
+
+    void addConnection(int state) {
+        connections[state]++;
+    }
+
+    void setStatesAvailable(boolean statesAvailable) {
+        this.statesAvailable = statesAvailable;
+    }
+
+    void setTotal(int field, long value) {
+        totals[field] = value;
+    }
+}
@@ -0,0 +1,63 @@
+package sysmon;
+
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+import com.googlecode.lanterna.screen.Screen;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the terminal's keys on a thread of its own and hands them to the render loop.
+ * <p>
+ * The thread blocks in {@link Screen#readInput()}, so a key is queued the moment it arrives. The render loop
+ * waits on the queue until its next deadline instead of sleeping, which wakes it up for a key at once:
+ * Ctrl+C quits and a view switch redraws without waiting for the next frame.
+ */
+public final class TerminalInput {
+
+    private final BlockingQueue<KeyStroke> keys = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private TerminalInput(Screen screen) {
+        this.thread = new Thread(() -> read(screen), "terminal-input");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts reading the keys of a screen. From then on, only this reader may take input from the screen.
+     *
+     * @param screen The started screen.
+     * @return The running reader.
+     */
+    public static TerminalInput start(Screen screen) {
+        TerminalInput input = new TerminalInput(screen);
+        input.thread.start();
+        return input;
+    }
+
+    /**
+     * Waits for the next key.
+     *
+     * @param timeoutNanos How long to wait at most, 0 to only take a key that already arrived.
+     * @return The key, or null if none arrived in time.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public KeyStroke poll(long timeoutNanos) throws InterruptedException {
+        return timeoutNanos > 0 ? keys.poll(timeoutNanos, TimeUnit.NANOSECONDS) : keys.poll();
+    }
+
+    private void read(Screen screen) {
+        try {
+            KeyStroke key;
+            do {
+                key = screen.readInput();
+                keys.add(key);
+            } while (key.getKeyType() != KeyType.EOF);
+        } catch (IOException e) {
+            // the terminal was closed
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package sysmon;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-rate deadlines on {@link System#nanoTime()}, for loops that must not drift by the time their work takes.
+ * <p>
+ * Every tick is due one period after the previous deadline rather than after the work finished, so a loop
+ * that sleeps until {@link #nanosUntilNext()} keeps its rate however long each iteration took. When the loop
+ * fell behind by more than a period, the missed ticks are skipped instead of run back to back. The period may
+ * change between ticks, e.g. for adaptive sampling.
+ */
+public final class Ticker {
+
+    private long periodNanos;
+    private long next;
+
+    /**
+     * Creates a ticker whose first tick is due immediately.
+     *
+     * @param periodMillis The period in milliseconds.
+     */
+    public Ticker(long periodMillis) {
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.next = System.nanoTime();
+    }
+
+    /**
+     * Changes the period from the next deadline on; a shorter period also pulls the pending deadline in.
+     *
+     * @param periodMillis The new period in milliseconds.
+     */
+    public void setPeriodMillis(long periodMillis) {
+        long period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        if (period < periodNanos) next = Math.min(next, next - periodNanos + period);
+        periodNanos = period;
+    }
+
+    public long getPeriodMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+    }
+
+    /**
+     * Returns how long until the next tick is due.
+     *
+     * @return The time in nanoseconds, 0 if the tick is due.
+     */
+    public long nanosUntilNext() {
+        return Math.max(0, next - System.nanoTime());
+    }
+
+    public boolean isDue() {
+        return next - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Moves to the next deadline, skipping the ones that already passed.
+     */
+    public void advance() {
+        next += periodNanos;
+        long behind = System.nanoTime() - next;
+        if (behind > 0) next += (behind / periodNanos + 1) * periodNanos;
+    }
+
+    /**
+     * Sleeps until the next tick is due and moves past it.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        long wait = nanosUntilNext();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+        advance();
+    }
+}
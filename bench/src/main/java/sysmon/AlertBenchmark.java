@@ -0,0 +1,67 @@
+package sysmon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating one sample against a set of alert rules: a mix of thresholds with hysteresis, sustained
+ * conditions and EWMA deviations over totals and single devices, with the clock advancing a second per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertBenchmark {
+
+    private static final String[] RULES = {"cpu > %d clear 50 for 30s", "memory > %d", "cpu_iowait ewma 4",
+            "mem_free < %dM for 1m", "disk_write:sda > %dM for 10s", "net_rx:eth0 ewma 3 alpha 0.05",
+            "disk_util > %d"};
+
+    @Param({"100", "1000"})
+    public int ruleCount;
+
+    private AlertEngine engine;
+    private SystemSnapshot snapshot;
+    private long now = 1_700_000_000_000L;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<AlertRule> rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(AlertRule.parse("rule" + i + " " + String.format(RULES[i % RULES.length], 50 + i % 50)));
+        }
+        engine = new AlertEngine(rules, 4096, null, null, false);
+        ProcfsCollector procfs = new ProcfsCollector(Fixtures.linuxHost(), Fixtures.linuxProc());
+        MemoryStats memStats = new MemoryStats();
+        procfs.readMemoryStats(memStats);
+        CpuBreakdown breakdown = procfs.sampleCpu();
+        snapshot = SystemSnapshot.empty()
+                .withCpuLoad(breakdown.getTotal(CpuBreakdown.BUSY), breakdown)
+                .withMemory(memStats, 60.0, Fixtures.linuxHost().getTotalMemory())
+                .withDiskRates(procfs.sampleDisk())
+                .withNetRates(procfs.sampleNetwork());
+    }
+
+    @Benchmark
+    public AlertEngine evaluate() {
+        now += 1000;
+        engine.evaluate(snapshot, now);
+        return engine;
+    }
+}
@@ -0,0 +1,139 @@
+package sysmon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Recorded command and procfs outputs bundled with the benchmarks, so they run offline on any box.
+ * <p>
+ * The Linux fixtures are a 16-core host with NVMe, SATA and device-mapper disks plus a handful of container
+ * interfaces under some I/O pressure and with 1500 TCP sockets, the cgroup files of one busy container and the
+ * performance data file of a JVM collecting garbage; the macOS fixtures are `vm_stat`, `netstat -ib` and `iostat -d -w 1` output of a laptop.
+ */
+final class Fixtures {
+
+    // Facts of the host the Linux fixtures were shaped after
+    static final List<String> LINUX_INTERFACES = List.of("eth0", "eth1", "docker0");
+    static final List<String> LINUX_DISKS = List.of("nvme0n1", "nvme1n1", "sda", "dm-0");
+    static final String[] MACOS_DISKS = {"disk0", "disk4", "disk6"};
+
+    private static final String[] LINUX_FILES = {"stat", "meminfo", "net/dev", "diskstats", "pressure/cpu",
+            "pressure/memory", "pressure/io", "vmstat", "loadavg", "net/snmp", "net/netstat", "net/sockstat", "net/tcp",
+            "net/tcp6"};
+    private static final String[] CGROUP_FILES = {"cpu.stat", "memory.stat", "io.stat"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the facts of the fixture host.
+     *
+     * @return The host facts.
+     */
+    static HostFacts linuxHost() {
+        return HostFacts.of(65_842_304L * 1024, 4096, 16, LINUX_INTERFACES, LINUX_DISKS);
+    }
+
+    /**
+     * Copies the Linux fixtures into a temporary directory laid out like `/proc`.
+     *
+     * @return The directory, deleted when the JVM exits.
+     */
+    static Path linuxProc() {
+        try {
+            Path root = Files.createTempDirectory("sysmon-proc");
+            root.toFile().deleteOnExit();
+            for (String name : LINUX_FILES) {
+                Path file = root.resolve(name);
+                Files.createDirectories(file.getParent());
+                file.getParent().toFile().deleteOnExit();
+                Files.writeString(file, read("linux/" + name));
+                file.toFile().deleteOnExit();
+            }
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds a cgroup v2 hierarchy in a temporary directory with one limited container scope per count below
+     * `system.slice`, each with copies of the container fixtures.
+     *
+     * @param containers The number of containers.
+     * @return The root directory, deleted when the JVM exits.
+     */
+    static Path linuxCgroups(int containers) {
+        try {
+            Path root = Files.createTempDirectory("sysmon-cgroup");
+            root.toFile().deleteOnExit();
+            write(root.resolve("cgroup.controllers"), "cpuset cpu io memory pids\n");
+            Path slice = root.resolve("system.slice");
+            for (int i = 0; i < containers; i++) {
+                Path scope = slice.resolve(String.format("docker-%064x.scope", i + 1));
+                for (String name : CGROUP_FILES) write(scope.resolve(name), read("linux/cgroup/" + name));
+                write(scope.resolve("memory.current"), "1503238553\n");
+                write(scope.resolve("memory.max"), "2147483648\n");
+                write(scope.resolve("cpu.max"), "200000 100000\n");
+            }
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lays out a temporary directory like `/tmp` with one `hsperfdata_<user>` directory holding a copy of the JVM
+     * fixture per count, named after made-up pids.
+     *
+     * @param jvms The number of JVMs.
+     * @return The directory, deleted when the JVM exits.
+     */
+    static Path linuxJvms(int jvms) {
+        try {
+            Path root = Files.createTempDirectory("sysmon-tmp");
+            root.toFile().deleteOnExit();
+            Path dir = Files.createDirectory(root.resolve("hsperfdata_bench"));
+            dir.toFile().deleteOnExit();
+            byte[] data = readBytes("linux/hsperfdata");
+            for (int i = 0; i < jvms; i++) {
+                Path file = Files.write(dir.resolve(String.valueOf(1000 + i)), data);
+                file.toFile().deleteOnExit();
+            }
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a fixture.
+     *
+     * @param name The path below `fixtures/`, e.g. "macos/vm_stat.txt".
+     * @return The content.
+     */
+    static String read(String name) {
+        return new String(readBytes(name), StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readBytes(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) throw new IllegalArgumentException("No fixture " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        file.getParent().toFile().deleteOnExit();
+        Files.writeString(file, content);
+        file.toFile().deleteOnExit();
+    }
+}
@@ -0,0 +1,36 @@
+package sysmon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of formatting a size, cycling through values from bytes to terabytes as a frame does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final long[] SIZES = {0, 512, 81_920, 3_221_225, 536_870_912, 17_179_869_184L,
+            68_719_476_736L, 3_298_534_883_328L};
+
+    private int next = 0;
+
+    @Benchmark
+    public String formatSize() {
+        next = (next + 1) & (SIZES.length - 1);
+        return LanternaSystemMonitor.formatSize(SIZES[next]);
+    }
+}
@@ -0,0 +1,65 @@
+package sysmon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of feeding one sample into a history, advancing the clock by a second per sample so the 10s, 1min and
+ * 10min roll-ups are closed at their real share of calls, and of feeding and reading the percentile windows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private final MetricHistory history = new MetricHistory();
+    private final QuantileWindows[] quantiles = LanternaSystemMonitor.newQuantiles();
+    private long now = 1_700_000_000_000L;
+    private double value = 0;
+
+    @Setup
+    public void setUp() {
+        // fill every window, so reads merge full panes
+        for (int i = 0; i < 6 * 3600; i++) updateQuantiles();
+    }
+
+    @Benchmark
+    public MetricHistory updateHistory() {
+        now += 1000;
+        value = value >= 100 ? 0 : value + 0.7;
+        LanternaSystemMonitor.updateHistory(history, now, value);
+        return history;
+    }
+
+    @Benchmark
+    public QuantileWindows[] updateQuantiles() {
+        now += 1000;
+        value = value >= 100 ? 0 : value + 0.7;
+        LanternaSystemMonitor.updateQuantiles(quantiles, now, value, value, value * 1e6, value * 1e4, value * 1e3);
+        return quantiles;
+    }
+
+    @Benchmark
+    public double readQuantiles() {
+        // what one frame of the stats panel reads: four quantiles of every bar metric over the longest window
+        double sum = 0;
+        for (QuantileWindows windows : quantiles) {
+            QuantileSketch sketch = windows.get(MetricHistory.TIER_10M);
+            sum += sketch.getQuantile(0.5) + sketch.getQuantile(0.95) + sketch.getQuantile(0.99) + sketch.getMax();
+        }
+        return sum;
+    }
+}
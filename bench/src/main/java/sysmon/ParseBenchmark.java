@@ -0,0 +1,137 @@
+package sysmon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing cost of one sample of every stats source: the procfs files including pressure, vmstat, loadavg, the network counters and socket tables, a cgroup v2 hierarchy of 100
+ * containers and the performance data of 20 JVMs on Linux and the `vm_stat`, `netstat -ib` and `iostat` output on macOS. Procfs benchmarks include the read from the (page-cached) fixture file; the
+ * command benchmarks read from an in-memory stream, since forking the command dominates on a real host anyway.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    private ProcfsCollector procfs;
+    private TcpCollector tcp;
+    private CgroupScanner cgroups;
+    private JvmScanner jvms;
+    private final MemoryStats memStats = new MemoryStats();
+    private final RateEngine netstatRates = new RateEngine(1, 1, 1, 1, 1, 1, 1, 1);
+    private final DeviceRates iostatRates = new DeviceRates(DeviceRates.DISK_FIELD_COUNT, Fixtures.MACOS_DISKS.length);
+    private final ByteTokenizer tok = new ByteTokenizer(256);
+    private final ByteTokenizer vmStatLine = new ByteTokenizer(64);
+    private ByteArrayInputStream vmStat;
+    private ByteArrayInputStream netstat;
+    private ByteArrayInputStream iostat;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        procfs = new ProcfsCollector(Fixtures.linuxHost(), Fixtures.linuxProc());
+        tcp = new TcpCollector(Fixtures.linuxHost(), Fixtures.linuxProc());
+        cgroups = new CgroupScanner(Fixtures.linuxCgroups(100), "/", 5);
+        jvms = new JvmScanner(List.of(Fixtures.linuxJvms(20)), 5, pid -> true);
+        String vmStatText = Fixtures.read("macos/vm_stat.txt");
+        vmStat = stream(vmStatText);
+        vmStatLine.read(stream(vmStatText.lines().filter(l -> l.startsWith("Pages active:")).findFirst().orElseThrow()));
+        netstat = stream(Fixtures.read("macos/netstat_ib.txt"));
+        iostat = stream(Fixtures.read("macos/iostat.txt"));
+    }
+
+    @Benchmark
+    public CpuBreakdown procStat() throws IOException {
+        return procfs.sampleCpu();
+    }
+
+    @Benchmark
+    public MemoryStats procMeminfo() throws IOException {
+        procfs.readMemoryStats(memStats);
+        return memStats;
+    }
+
+    @Benchmark
+    public DeviceRates procNetDev() throws IOException {
+        return procfs.sampleNetwork();
+    }
+
+    @Benchmark
+    public DeviceRates procDiskstats() throws IOException {
+        return procfs.sampleDisk();
+    }
+
+    @Benchmark
+    public SaturationStats procSaturation() throws IOException {
+        return procfs.sampleSaturation();
+    }
+
+    @Benchmark
+    public TcpStats procTcp() throws IOException {
+        return tcp.sample();
+    }
+
+    @Benchmark
+    public CgroupTable cgroups() {
+        return cgroups.scan();
+    }
+
+    @Benchmark
+    public JvmTable jvms() {
+        return jvms.scan();
+    }
+
+    @Benchmark
+    public long parseVMStatValue() {
+        return LanternaSystemMonitor.parseVMStatValue(vmStatLine, "Pages active:".length());
+    }
+
+    @Benchmark
+    public MemoryStats vmStat() throws IOException {
+        vmStat.reset();
+        tok.read(vmStat);
+        LanternaSystemMonitor.readVMStats(tok, memStats);
+        return memStats;
+    }
+
+    @Benchmark
+    public DeviceRates netstat() throws IOException {
+        netstatRates.begin();
+        netstat.reset();
+        tok.read(netstat);
+        LanternaSystemMonitor.readNetstat(tok, netstatRates);
+        now += 1_000_000_000L;
+        return netstatRates.commit(now);
+    }
+
+    @Benchmark
+    public DeviceRates iostat() throws IOException {
+        iostat.reset();
+        while (tok.readLine(iostat)) {
+            LanternaSystemMonitor.parseIostatLine(tok, Fixtures.MACOS_DISKS, iostatRates);
+        }
+        return iostatRates;
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,238 @@
+package sysmon;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Regression guard for the byte-level parsers of the forking sources: runs `vm_stat`, `netstat -ib` and
+ * `iostat` output through both {@link ByteTokenizer} parsers in {@link LanternaSystemMonitor} and the
+ * String.split parsers they replaced, and fails on the first sample where the two disagree. The old netstat
+ * parser also reads the error columns, like the current one does since the network health view.
+ * <p>
+ * The inputs are the macOS fixtures, first as recorded and then mutated: random numbers of random width in
+ * place of the recorded ones, and extra spaces and tabs between fields. A netstat sample the old parser throws
+ * on (e.g. an overflowing counter) is skipped, since the new one keeps the last good counters instead.
+ * <p>
+ * Usage: `java -cp bench/target/benchmarks.jar sysmon.ParserFuzz [samples] [seed]`, 10000 samples of every
+ * source with seed 1 by default. Exits with status 1 on a mismatch, printing the input.
+ */
+public final class ParserFuzz {
+
+    private final Random random;
+    private int comparisons = 0;
+    private int skipped = 0;
+
+    private ParserFuzz(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        ParserFuzz fuzz = new ParserFuzz(seed);
+        fuzz.vmStat(Fixtures.read("macos/vm_stat.txt"), samples);
+        fuzz.iostat(Fixtures.read("macos/iostat.txt"), samples);
+        fuzz.netstat(Fixtures.read("macos/netstat_ib.txt"), samples);
+        System.out.println("OK, " + fuzz.comparisons + " comparisons, " + fuzz.skipped
+                + " netstat samples skipped where the old parser threw");
+    }
+
+    // ========================= Sources ========================= //
+
+    private void vmStat(String fixture, int samples) {
+        for (int k = 0; k < samples; k++) {
+            String input = k == 0 ? fixture : mutate(fixture, false);
+            Map<String, Long> expected = new HashMap<>();
+            oldReadVMStats(input, expected);
+            MemoryStats actual = new MemoryStats();
+            LanternaSystemMonitor.readVMStats(tokenizer(input), actual);
+            for (int f = 0; f < MemoryStats.FIELD_COUNT; f++) {
+                String label = MemoryStats.fieldLabel(f);
+                check(expected.getOrDefault(label, 0L) == actual.get(f), "vm_stat " + label, input);
+            }
+        }
+    }
+
+    private void iostat(String fixture, int samples) {
+        DeviceRates actual = new DeviceRates(DeviceRates.DISK_FIELD_COUNT, Fixtures.MACOS_DISKS.length);
+        for (int k = 0; k < samples; k++) {
+            String input = k == 0 ? fixture : mutate(fixture, true);
+            for (String line : input.split("\n")) {
+                DeviceRates expected = oldParseIostatLine(line, Fixtures.MACOS_DISKS);
+                boolean parsed = LanternaSystemMonitor.parseIostatLine(tokenizer(line), Fixtures.MACOS_DISKS, actual);
+                check(parsed == (expected != null), "iostat line detection", line);
+                if (expected != null) check(same(expected, actual), "iostat values", line);
+            }
+        }
+    }
+
+    private void netstat(String fixture, int samples) {
+        for (int k = 0; k < samples; k++) {
+            // two samples, so the counters turn into rates
+            String[] inputs = {k == 0 ? fixture : mutate(fixture, false), mutate(fixture, false)};
+            RateEngine expectedRates = new RateEngine(1, 1, 1, 1, 1, 1, 1, 1);
+            RateEngine actualRates = new RateEngine(1, 1, 1, 1, 1, 1, 1, 1);
+            long now = 0;
+            for (String input : inputs) {
+                now += 1_000_000_000L;
+                expectedRates.begin();
+                try {
+                    oldReadNetstat(input, expectedRates);
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    break;
+                }
+                DeviceRates expected = expectedRates.commit(now);
+                actualRates.begin();
+                LanternaSystemMonitor.readNetstat(tokenizer(input), actualRates);
+                check(same(expected, actualRates.commit(now)), "netstat", input);
+            }
+        }
+    }
+
+    // ========================= Previous Parsers ========================= //
+
+    private static void oldReadVMStats(String output, Map<String, Long> stats) {
+        try (BufferedReader reader = new BufferedReader(new StringReader(output))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("Pages free:")) {
+                    stats.put("free", oldParseVMStatValue(line));
+                } else if (line.contains("Pages active:")) {
+                    stats.put("active", oldParseVMStatValue(line));
+                } else if (line.contains("Pages inactive:")) {
+                    stats.put("inactive", oldParseVMStatValue(line));
+                } else if (line.contains("Pages wired down:")) {
+                    stats.put("wired", oldParseVMStatValue(line));
+                } else if (line.contains("Pages occupied by compressor:")) {
+                    stats.put("compressed", oldParseVMStatValue(line));
+                } else if (line.contains("File-backed pages:")) {
+                    stats.put("filebacked", oldParseVMStatValue(line));
+                } else if (line.contains("Anonymous pages:")) {
+                    stats.put("anonymous", oldParseVMStatValue(line));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long oldParseVMStatValue(String line) {
+        try {
+            return Long.parseLong(line.split(":")[1].trim().replace(".", ""));
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
+    private static DeviceRates oldParseIostatLine(String line, String[] disks) {
+        line = line.trim();
+        if (line.isEmpty()) return null;
+        String[] parts = line.split("\\s+");
+        if (parts.length < 3 || !Character.isDigit(parts[0].charAt(0))) return null; // repeated headers
+        int count = Math.min(disks.length, parts.length / 3);
+        DeviceRates rates = new DeviceRates(DeviceRates.DISK_FIELD_COUNT, count);
+        for (int d = 0; d < count; d++) {
+            rates.setName(d, disks[d]);
+            rates.set(d, DeviceRates.READ_OPS, Double.parseDouble(parts[3 * d + 1]));
+            rates.set(d, DeviceRates.READ_BYTES, Double.parseDouble(parts[3 * d + 2]) * 1024 * 1024);
+        }
+        rates.sumTotals();
+        return rates;
+    }
+
+    private static void oldReadNetstat(String output, RateEngine rates) {
+        String[] lines = output.split("\n");
+        for (int i = 1; i < lines.length; i++) { // first line is the header
+            String[] parts = lines[i].trim().split("\\s+");
+            if (parts.length < 10 || !parts[2].startsWith("<Link#") || parts[0].startsWith("lo")) continue;
+            int first = parts.length >= 11 ? 4 : 3;
+            int slot = rates.device(parts[0]);
+            rates.counter(slot, DeviceRates.RX_PACKETS, Long.parseLong(parts[first]));
+            rates.counter(slot, DeviceRates.RX_ERRORS, Long.parseLong(parts[first + 1]));
+            rates.counter(slot, DeviceRates.RX_BYTES, Long.parseLong(parts[first + 2]));
+            rates.counter(slot, DeviceRates.TX_PACKETS, Long.parseLong(parts[first + 3]));
+            rates.counter(slot, DeviceRates.TX_ERRORS, Long.parseLong(parts[first + 4]));
+            rates.counter(slot, DeviceRates.TX_BYTES, Long.parseLong(parts[first + 5]));
+        }
+    }
+
+    // ========================= Helpers ========================= //
+
+    /**
+     * Replaces about half of the numbers with random ones and widens about one in eight spaces. Numbers glued to
+     * a name, like the 0 of "lo0" or the 11 of "Link#11", are left alone.
+     *
+     * @param decimals Whether numbers with a fraction get a random two-digit fraction, as in iostat output.
+     */
+    private String mutate(String text, boolean decimals) {
+        StringBuilder sb = new StringBuilder(text.length() + 64);
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            char before = i > 0 ? text.charAt(i - 1) : ' ';
+            if (Character.isDigit(c) && !Character.isLetterOrDigit(before) && before != '#' && before != '-') {
+                int j = i;
+                while (j < text.length() && (Character.isDigit(text.charAt(j)) || text.charAt(j) == '.')) j++;
+                String number = text.substring(i, j);
+                boolean field = j == text.length() || text.charAt(j) == ' ' || text.charAt(j) == '\n';
+                if (field && random.nextBoolean()) {
+                    if (decimals && number.contains(".") && !number.endsWith(".")) {
+                        number = random.nextInt(100_000) + String.format(".%02d", random.nextInt(100));
+                    } else {
+                        long bound = random.nextBoolean() ? 1000 : 1_000_000_000_000L;
+                        number = Math.floorMod(random.nextLong(), bound) + (number.endsWith(".") ? "." : "");
+                    }
+                }
+                sb.append(number);
+                i = j;
+            } else if (c == ' ' && random.nextInt(8) == 0) {
+                sb.append(random.nextBoolean() ? "  " : " \t");
+                i++;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static ByteTokenizer tokenizer(String text) {
+        ByteTokenizer tok = new ByteTokenizer(16);
+        try {
+            tok.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tok;
+    }
+
+    private static boolean same(DeviceRates expected, DeviceRates actual) {
+        if (expected.getDeviceCount() != actual.getDeviceCount()) return false;
+        for (int d = 0; d < expected.getDeviceCount(); d++) {
+            int a = actual.indexOf(expected.getName(d));
+            if (a < 0) return false;
+            for (int f = 0; f < expected.getFieldCount(); f++) {
+                if (Double.compare(expected.get(d, f), actual.get(a, f)) != 0) return false;
+            }
+        }
+        for (int f = 0; f < expected.getFieldCount(); f++) {
+            if (Double.compare(expected.getTotal(f), actual.getTotal(f)) != 0) return false;
+        }
+        return true;
+    }
+
+    private void check(boolean same, String what, String input) {
+        comparisons++;
+        if (same) return;
+        System.out.println("Mismatch in " + what + " on input:\n" + input);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,97 @@
+package sysmon;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering the UI into a virtual 120x35 Lanterna terminal, fed from the Linux fixtures.
+ * <p>
+ * {@link #frame()} alternates between two snapshots, so every widget redraws and the frame buffer forwards
+ * the changed cells as in a live tick; {@link #repaint()} is the full repaint after a resize.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    private TerminalScreen screen;
+    private FrameBuffer fb;
+    private SelfMonitor self;
+    private final SystemSnapshot[] snapshots = new SystemSnapshot[2];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        screen = new TerminalScreen(new DefaultVirtualTerminal(new TerminalSize(120, 35)));
+        screen.startScreen();
+        fb = new FrameBuffer(screen, TextColor.ANSI.BLACK);
+        self = new SelfMonitor();
+
+        HostFacts host = Fixtures.linuxHost();
+        ProcfsCollector procfs = new ProcfsCollector(host, Fixtures.linuxProc());
+        CpuBreakdown breakdown = procfs.sampleCpu();
+        MemoryStats memStats = new MemoryStats();
+        procfs.readMemoryStats(memStats);
+        double memoryUsage = LanternaSystemMonitor.calculateMemoryUsage(memStats);
+        for (int i = 0; i < snapshots.length; i++) {
+            double scale = i + 1;
+            snapshots[i] = SystemSnapshot.empty()
+                    .withCpuLoad(Math.min(100, breakdown.getTotal(CpuBreakdown.BUSY) * scale), breakdown)
+                    .withMemory(memStats, memoryUsage, host.getTotalMemory())
+                    .withDiskRates(DeviceRates.ofTotals(21e6 * scale, 4e6 * scale, 180 * scale, 95 * scale, 12 * scale))
+                    .withNetRates(DeviceRates.ofTotals(830e3 * scale, 95e3 * scale, 640 * scale, 410 * scale));
+        }
+
+        // an hour of history, so every chart column has data
+        long now = System.currentTimeMillis() - 3_600_000;
+        for (int s = 0; s < 3600; s++) {
+            double wave = 50 + 45 * Math.sin(s / 60.0);
+            LanternaSystemMonitor.updateHistories(now + s * 1000L, wave, 60, wave * 1e6, wave * 2e5, wave * 1e4,
+                    wave * 3e3);
+        }
+
+        LanternaSystemMonitor.drawChrome(fb);
+        fb.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        screen.stopScreen();
+    }
+
+    @Benchmark
+    public boolean frame() throws IOException {
+        next ^= 1;
+        LanternaSystemMonitor.drawFrame(fb, snapshots[next], null, self, 0, 0);
+        return fb.flush();
+    }
+
+    @Benchmark
+    public boolean repaint() throws IOException {
+        next ^= 1;
+        fb.reset();
+        LanternaSystemMonitor.drawChrome(fb);
+        LanternaSystemMonitor.drawFrame(fb, snapshots[next], null, self, 0, 0);
+        return fb.flush();
+    }
+}